@@ -0,0 +1,131 @@
+package ru.zinin.benchmarks;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import ru.zinin.catalogue.CatalogueServiceApplication;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// catalogue-service с отдельной базой, заполненной одинаковым набором товаров перед каждым прогоном;
+// базу можно переопределить через SPRING_DATASOURCE_URL, но таблица t_product в ней будет перезаписана;
+// идентификаторы начинаются с 1 и идут с шагом последовательности
+final class CatalogueContext {
+
+    static final int PRODUCTS_COUNT = 10_000;
+
+    // токен, который принимает BenchmarkBeans.jwtDecoder, для запросов по HTTP
+    static final String BENCHMARK_TOKEN = "benchmark";
+
+    private static final String DATASOURCE_URL = Objects.requireNonNullElse(
+            System.getenv("SPRING_DATASOURCE_URL"), "jdbc:tc:postgresql:16:///catalogue?TC_DAEMON=true");
+
+    // по умолчанию - учётные данные базы, которую создаёт Testcontainers
+    private static final String DATASOURCE_USERNAME = Objects.requireNonNullElse(
+            System.getenv("SPRING_DATASOURCE_USERNAME"), "test");
+
+    private static final String DATASOURCE_PASSWORD = Objects.requireNonNullElse(
+            System.getenv("SPRING_DATASOURCE_PASSWORD"), "test");
+
+    private static final String INSERT_PRODUCTS = """
+            insert into catalogue.t_product(c_title, c_details)
+            select 'Товар №' || i, 'Описание товара №' || i
+            from generate_series(1, %d) i""";
+
+    private CatalogueContext() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return start("jpa", PRODUCTS_COUNT);
+    }
+
+    // persistence - значение catalogue.persistence: jpa или r2dbc, properties дополняют настройки сервиса
+    static ConfigurableApplicationContext start(String persistence, int productsCount, String... properties) {
+        List<String> contextProperties = new ArrayList<>(List.of(
+                "server.port=0",
+                "keycloak.uri=http://localhost:8082",
+                "spring.main.banner-mode=off",
+                "logging.level.root=warn"));
+        contextProperties.addAll(List.of(properties));
+
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(
+                CatalogueServiceApplication.class, BenchmarkBeans.class);
+        if (persistence.equals("r2dbc")) {
+            // адрес jdbc:tc понятен только JDBC-драйверу Testcontainers, R2DBC подключается к той же базе напрямую
+            String url = resolveJdbcUrl();
+            contextProperties.addAll(List.of(
+                    "spring.datasource.url=" + url,
+                    "spring.datasource.username=" + DATASOURCE_USERNAME,
+                    "spring.datasource.password=" + DATASOURCE_PASSWORD,
+                    "spring.r2dbc.url=r2dbc:" + url.substring("jdbc:".length()),
+                    "spring.r2dbc.username=" + DATASOURCE_USERNAME,
+                    "spring.r2dbc.password=" + DATASOURCE_PASSWORD));
+            builder.web(WebApplicationType.REACTIVE)
+                    .profiles("r2dbc");
+        } else {
+            contextProperties.add("spring.datasource.url=" + DATASOURCE_URL);
+            builder.web(WebApplicationType.SERVLET);
+        }
+        ConfigurableApplicationContext context = builder
+                .properties(contextProperties.toArray(String[]::new))
+                .run();
+
+        if (persistence.equals("r2dbc")) {
+            DatabaseClient databaseClient = context.getBean(DatabaseClient.class);
+            databaseClient.sql("truncate catalogue.t_product restart identity").then()
+                    .then(databaseClient.sql(INSERT_PRODUCTS.formatted(productsCount)).then())
+                    .then(databaseClient.sql("analyze catalogue.t_product").then())
+                    .block();
+        } else {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            jdbcTemplate.execute("truncate catalogue.t_product restart identity");
+            jdbcTemplate.update(INSERT_PRODUCTS.formatted(productsCount));
+            jdbcTemplate.execute("analyze catalogue.t_product");
+        }
+        return context;
+    }
+
+    private static String resolveJdbcUrl() {
+        try (Connection connection = DriverManager.getConnection(DATASOURCE_URL, DATASOURCE_USERNAME,
+                DATASOURCE_PASSWORD)) {
+            return connection.getMetaData().getURL().split("\\?")[0];
+        } catch (SQLException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    static class BenchmarkBeans {
+
+        // запросы MockMvc подписываются через SecurityMockMvcRequestPostProcessors.jwt() и токены не декодируют,
+        // запросам по HTTP достаточно одного фиксированного токена со всеми нужными областями
+        @Bean
+        public JwtDecoder jwtDecoder() {
+            return token -> {
+                if (!BENCHMARK_TOKEN.equals(token)) {
+                    throw new JwtException("Only the benchmark token is supported");
+                }
+                Instant now = Instant.now();
+                return Jwt.withTokenValue(token)
+                        .header("alg", "none")
+                        .subject("benchmark")
+                        .claim("scope", "view_catalogue edit_catalogue")
+                        .issuedAt(now)
+                        .expiresAt(now.plus(Duration.ofHours(1)))
+                        .build();
+            };
+        }
+    }
+}
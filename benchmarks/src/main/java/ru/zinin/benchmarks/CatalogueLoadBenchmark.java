@@ -0,0 +1,101 @@
+package ru.zinin.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// JPA на Spring MVC против R2DBC на WebFlux при числе одновременных запросов, намного большем пула соединений:
+// 256 потоков JMH, по 10 соединений с базой в обоих режимах. Медленный запрос - короткий фильтр без триграмм,
+// который ничего не находит и проходит по первичному ключу всё окно из 10 тысяч товаров
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class CatalogueLoadBenchmark {
+
+    static final int PRODUCTS_COUNT = 50_000;
+
+    static final int POOL_SIZE = 10;
+
+    @Param({"jpa", "r2dbc"})
+    String persistence;
+
+    ConfigurableApplicationContext context;
+
+    HttpClient httpClient;
+
+    HttpRequest findProduct;
+
+    HttpRequest findAllProductsSlowly;
+
+    @Setup
+    public void setUp() {
+        this.context = CatalogueContext.start(this.persistence, PRODUCTS_COUNT,
+                "spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "spring.datasource.hikari.connection-timeout=" + Duration.ofMinutes(1).toMillis(),
+                "spring.r2dbc.pool.initial-size=" + POOL_SIZE,
+                "spring.r2dbc.pool.max-size=" + POOL_SIZE,
+                "spring.r2dbc.pool.max-acquire-time=1m",
+                // кэши есть только у варианта на JPA, а сравнивается доступ к базе
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                "catalogue.cache.products.spec=maximumSize=0",
+                // сравниваются режимы доступа к базе, а не ограничение нагрузки на входе
+                "catalogue.concurrency-limits.view-catalogue.initial-limit=10000",
+                "catalogue.concurrency-limits.view-catalogue.min-limit=10000",
+                "catalogue.concurrency-limits.view-catalogue.max-limit=10000");
+
+        int port = ((WebServerApplicationContext) this.context).getWebServer().getPort();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        this.findProduct = request(port, "/catalogue-api/products/1");
+        this.findAllProductsSlowly = request(port, "/catalogue-api/products?filter=%D1%8A%D1%8A");
+    }
+
+    private static HttpRequest request(int port, String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + CatalogueContext.BENCHMARK_TOKEN)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.httpClient.close();
+        this.context.close();
+    }
+
+    // быстрые запросы конкурируют за соединения с медленными
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(192)
+    public int findProduct() throws IOException, InterruptedException {
+        return this.send(this.findProduct);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(64)
+    public int findAllProductsSlowly() throws IOException, InterruptedException {
+        return this.send(this.findAllProductsSlowly);
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        int status = this.httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200) {
+            throw new IllegalStateException("Unexpected response status " + status);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,184 @@
+package ru.zinin.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.HttpSessionOAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.web.client.RestClient;
+import ru.zinin.manager.ManagerApplication;
+import ru.zinin.manager.client.RestClientProductsRestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// пропускная способность manager-app, когда каталог отвечает с задержкой: за вызов отправляется 1000 одновременных
+// запросов страницы товара. На платформенных потоках их обрабатывает пул Tomcat из 200 потоков, остальные ждут
+// в очереди; на виртуальных потоках (профиль virtual-threads) все 1000 ждут каталог одновременно
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class ManagerThroughputBenchmark {
+
+    static final int CONCURRENT_REQUESTS = 1000;
+
+    // задержка выбрана так, чтобы потолок пула Tomcat (200 / 2 с = 100 запросов в секунду) был ниже предела
+    // по процессору даже на одном ядре, иначе обе конфигурации упираются в процессор и не различаются
+    static final Duration CATALOGUE_DELAY = Duration.ofSeconds(2);
+
+    static final String PRODUCT = """
+            {"id": 1, "title": "Товар", "details": "Описание товара"}""";
+
+    @Param({"false", "true"})
+    boolean virtualThreads;
+
+    HttpServer catalogue;
+
+    ConfigurableApplicationContext context;
+
+    ExecutorService executor;
+
+    HttpClient httpClient;
+
+    HttpRequest findProductPage;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.catalogue = HttpServer.create(new InetSocketAddress("localhost", 0), CONCURRENT_REQUESTS);
+        this.catalogue.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.catalogue.createContext("/catalogue-api/products/", exchange -> {
+            try {
+                Thread.sleep(CATALOGUE_DELAY);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = PRODUCT.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+        this.catalogue.start();
+
+        this.context = new SpringApplicationBuilder(ManagerApplication.class, BenchmarkBeans.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=warn",
+                        "spring.threads.virtual.enabled=" + this.virtualThreads,
+                        "selmag.services.catalogue.uri=http://localhost:" + this.catalogue.getAddress().getPort(),
+                        // каталог в зависимостях бенчмарков приносит автоконфигурацию доступа к базе
+                        "spring.autoconfigure.exclude="
+                        + "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration,"
+                        + "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration,"
+                        + "org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration,"
+                        + "org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration")
+                .run();
+
+        int port = ((WebServerApplicationContext) this.context).getWebServer().getPort();
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(this.executor)
+                .build();
+        this.findProductPage = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/catalogue/products/1"))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.httpClient.close();
+        this.executor.close();
+        this.context.close();
+        this.catalogue.stop(0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_REQUESTS)
+    public void findProductPage() throws Exception {
+        var responses = this.executor.invokeAll(IntStream.range(0, CONCURRENT_REQUESTS)
+                .mapToObj(i -> (Callable<Integer>) () -> this.httpClient.send(this.findProductPage,
+                        HttpResponse.BodyHandlers.discarding()).statusCode())
+                .toList());
+        for (Future<Integer> response : responses) {
+            if (response.get() != 200) {
+                throw new IllegalStateException("Unexpected response status " + response.get());
+            }
+        }
+    }
+
+    static class BenchmarkBeans {
+
+        // вход через Keycloak не выполняется, но без регистрации клиента не собрать конфигурацию manager-app
+        @Bean
+        public ClientRegistrationRepository clientRegistrationRepository() {
+            return new InMemoryClientRegistrationRepository(ClientRegistration.withRegistrationId("keycloak")
+                    .clientId("manager-app")
+                    .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                    .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+                    .authorizationUri("http://localhost:8082/realms/selmag/protocol/openid-connect/auth")
+                    .tokenUri("http://localhost:8082/realms/selmag/protocol/openid-connect/token")
+                    .build());
+        }
+
+        @Bean
+        public OAuth2AuthorizedClientRepository authorizedClientRepository() {
+            return new HttpSessionOAuth2AuthorizedClientRepository();
+        }
+
+        // каталог-заглушка токен не проверяет; HTTP/1.1 - отдельное соединение на каждый одновременный запрос
+        @Bean
+        @Primary
+        public RestClientProductsRestClient benchmarkProductsRestClient(
+                @Value("${selmag.services.catalogue.uri}") String catalogueBaseUrl) {
+            return new RestClientProductsRestClient(RestClient.builder()
+                    .baseUrl(catalogueBaseUrl)
+                    .requestFactory(new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_1_1)
+                            .build()))
+                    .build());
+        }
+
+        @Bean
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        public SecurityFilterChain productPageSecurityFilterChain(HttpSecurity http) throws Exception {
+            return http
+                    .securityMatcher("/catalogue/products/*")
+                    .authorizeHttpRequests(authorizeHttpRequest -> authorizeHttpRequest.anyRequest().permitAll())
+                    .build();
+        }
+    }
+}
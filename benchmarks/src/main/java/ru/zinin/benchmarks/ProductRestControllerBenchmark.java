@@ -0,0 +1,67 @@
+package ru.zinin.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProductRestControllerBenchmark {
+
+    ConfigurableApplicationContext context;
+
+    MockMvc mockMvc;
+
+    RequestBuilder getProduct;
+
+    RequestBuilder getProductNotModified;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.context = CatalogueContext.start();
+        // весь путь запроса: фильтры безопасности, DispatcherServlet, кэш товаров и сериализация ответа
+        this.mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) this.context)
+                .apply(springSecurity())
+                .build();
+
+        Integer productId = this.context.getBean(JdbcTemplate.class)
+                .queryForObject("select min(id) from catalogue.t_product", Integer.class);
+        this.getProduct = MockMvcRequestBuilders.get("/catalogue-api/products/{productId}", productId)
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        String eTag = this.mockMvc.perform(this.getProduct).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        this.getProductNotModified = MockMvcRequestBuilders.get("/catalogue-api/products/{productId}", productId)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public MvcResult getProduct() throws Exception {
+        return this.mockMvc.perform(this.getProduct).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getProductNotModified() throws Exception {
+        return this.mockMvc.perform(this.getProductNotModified).andReturn();
+    }
+}
@@ -0,0 +1,41 @@
+package ru.zinin.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.zinin.catalogue.entity.Product;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProductSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    int size;
+
+    ObjectMapper objectMapper;
+
+    List<Product> products;
+
+    @Setup
+    public void setUp() {
+        // настройки как у ObjectMapper, который создаёт Spring Boot
+        this.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        this.products = IntStream.rangeClosed(1, this.size)
+                .mapToObj(i -> new Product(i, "Товар №" + i, "Описание товара №" + i, 0))
+                .toList();
+    }
+
+    @Benchmark
+    public byte[] writeProducts() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(this.products);
+    }
+}
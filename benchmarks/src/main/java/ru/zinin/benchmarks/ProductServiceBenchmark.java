@@ -0,0 +1,44 @@
+package ru.zinin.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.zinin.catalogue.service.ProductService;
+import ru.zinin.catalogue.service.ProductsPage;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProductServiceBenchmark {
+
+    // без фильтра, фильтр по триграммному индексу и короткий фильтр без триграмм
+    @Param({"", "товар №12", "№1"})
+    String filter;
+
+    ConfigurableApplicationContext context;
+
+    ProductService productService;
+
+    @Setup
+    public void setUp() {
+        // иначе отфильтрованные страницы после первого вызова отдавал бы кэш запросов, а не база
+        this.context = CatalogueContext.start("jpa", CatalogueContext.PRODUCTS_COUNT,
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        this.productService = this.context.getBean(ProductService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public ProductsPage findAllProducts() {
+        return this.productService.findAllProducts(this.filter.isEmpty() ? null : this.filter, null, 50);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.zinin.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.zinin.catalogue.entity.ProductSuggestion;
+import ru.zinin.catalogue.service.ProductTitleIndex;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProductTitleIndexBenchmark {
+
+    // частый префикс, редкий префикс и префикс без совпадений
+    @Param({"т", "товар №12345", "шоколад"})
+    String prefix;
+
+    ProductTitleIndex productTitleIndex;
+
+    // индекс заполняется без базы: вне транзакции изменения применяются сразу, репозитории не нужны
+    @Setup
+    public void setUp() {
+        this.productTitleIndex = new ProductTitleIndex(null, null);
+        this.productTitleIndex.putAllAfterCommit(IntStream.rangeClosed(1, 1_000_000)
+                .mapToObj(id -> new ProductSuggestion(id, "Товар №" + id))
+                .toList());
+    }
+
+    @Benchmark
+    public List<ProductSuggestion> suggest() {
+        return this.productTitleIndex.suggest(this.prefix, 10);
+    }
+}
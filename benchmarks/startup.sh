@@ -0,0 +1,97 @@
+#!/usr/bin/env bash
+# Сравнение времени запуска сервисов: обычный jar, AOT, CDS-архив и native-образ.
+# Время берётся из строки журнала "Started ... (process running for N)", то есть включает запуск JVM.
+#
+# Сборка артефактов (native - отдельно, образ остаётся в target после следующей сборки):
+#   mvn -Pnative package -DskipTests
+#   mvn -Paot,cds package -DskipTests
+# Запуск: benchmarks/startup.sh [сервис...], число запусков задаётся RUNS, профили Spring - PROFILES.
+# Нужна та же инфраструктура, что и для обычного запуска с профилем standalone.
+set -uo pipefail
+
+cd "$(dirname "$0")/.." || exit 1
+
+RUNS=${RUNS:-5}
+PROFILES=${PROFILES:-standalone}
+TIMEOUT=${TIMEOUT:-120}
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+LOG=$(mktemp)
+trap 'rm -f "$LOG"' EXIT
+
+if [ $# -gt 0 ]; then
+  SERVICES=("$@")
+else
+  SERVICES=(catalogue-service feedback-service manager-app customer-app)
+fi
+
+# запускает сервис в заданном режиме и печатает время запуска в секундах или ничего при ошибке
+startup_time() {
+  local service=$1 mode=$2 pid
+  local target=$service/target
+  local jar=$target/$service-1.0-SNAPSHOT
+  local start_class
+  start_class=$(sed -n 's:.*<start-class>\(.*\)</start-class>.*:\1:p' "$service/pom.xml")
+
+  case $mode in
+    jar) "$JAVA" -Dspring.profiles.active="$PROFILES" -jar "$jar-exec.jar" >"$LOG" 2>&1 & ;;
+    aot) "$JAVA" -Dspring.aot.enabled=true -Dspring.profiles.active="$PROFILES" -jar "$jar-exec.jar" >"$LOG" 2>&1 & ;;
+    cds*)
+      # путь к классам должен совпадать с путём при обучении, поэтому запуск из того же каталога
+      (cd "$target/cds" && exec "$JAVA" -XX:SharedArchiveFile=application.jsa \
+        -Dspring.aot.enabled="$([ "$mode" = cds+aot ] && echo true || echo false)" \
+        -Dspring.profiles.active="$PROFILES" \
+        -classpath "../$service-1.0-SNAPSHOT.jar:$(cat classpath)" "$start_class") >"$LOG" 2>&1 & ;;
+    native) "$target/$service" -Dspring.profiles.active="$PROFILES" >"$LOG" 2>&1 & ;;
+  esac
+  pid=$!
+
+  for _ in $(seq $((TIMEOUT * 10))); do
+    if grep -q "process running for" "$LOG" || ! kill -0 "$pid" 2>/dev/null; then
+      break
+    fi
+    sleep 0.1
+  done
+  kill "$pid" 2>/dev/null
+  wait "$pid" 2>/dev/null
+
+  sed -n 's/.*(process running for \([0-9.]*\)).*/\1/p' "$LOG" | head -n 1
+}
+
+# режимы, для которых есть собранные артефакты
+modes() {
+  local service=$1
+  local target=$service/target
+  [ -f "$target/$service-1.0-SNAPSHOT-exec.jar" ] && echo jar
+  [ -d "$target/spring-aot/main" ] && echo aot
+  if [ -f "$target/cds/application.jsa" ]; then
+    # архив обучен на AOT-запуске, если jar собран с профилем aot
+    [ -d "$target/spring-aot/main" ] && echo cds+aot || echo cds
+  fi
+  [ -x "$target/$service" ] && echo native
+}
+
+printf '%-18s %-8s %8s %8s %8s\n' service mode min avg max
+for service in "${SERVICES[@]}"; do
+  for mode in $(modes "$service"); do
+    times=()
+    for _ in $(seq "$RUNS"); do
+      time=$(startup_time "$service" "$mode")
+      if [ -z "$time" ]; then
+        echo "$service ($mode) не запустился, журнал:" >&2
+        tail -n 20 "$LOG" >&2
+        times=()
+        break
+      fi
+      times+=("$time")
+    done
+    if [ ${#times[@]} -eq 0 ]; then
+      printf '%-18s %-8s %8s %8s %8s\n' "$service" "$mode" - - -
+      continue
+    fi
+    printf '%s\n' "${times[@]}" | awk -v service="$service" -v mode="$mode" '
+      NR == 1 || $1 < min { min = $1 }
+      NR == 1 || $1 > max { max = $1 }
+      { sum += $1 }
+      END { printf "%-18s %-8s %8.3f %8.3f %8.3f\n", service, mode, min, sum / NR, max }'
+  done
+done
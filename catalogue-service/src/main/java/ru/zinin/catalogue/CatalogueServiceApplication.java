@@ -7,8 +7,14 @@ import io.swagger.v3.oas.annotations.security.OAuthScope;
 import io.swagger.v3.oas.annotations.security.SecurityScheme;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import ru.zinin.catalogue.config.CatalogueRuntimeHints;
 
-@SpringBootApplication
+// в сборке с профилем Maven r2dbc автоконфигурация R2DBC отключила бы DataSource и в режиме JPA,
+// поэтому пул R2DBC создаётся только в профиле r2dbc (R2dbcBeans)
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@ImportRuntimeHints(CatalogueRuntimeHints.class)
 @SecurityScheme(
         name = "keycloak",
         type = SecuritySchemeType.OAUTH2,
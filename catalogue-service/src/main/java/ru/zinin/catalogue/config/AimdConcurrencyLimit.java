@@ -0,0 +1,81 @@
+package ru.zinin.catalogue.config;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// предел одновременных запросов по схеме AIMD: растёт на единицу, пока запросы укладываются в latencyThreshold
+// и предел используется хотя бы наполовину, и уменьшается в backoffRatio раз при медленном или неуспешном запросе.
+// Запросы, которые выполнялись одновременно с уменьшением, замедлены той же перегрузкой, и предел из-за них
+// повторно не уменьшается
+public class AimdConcurrencyLimit {
+
+    static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // дробный предел хранится битами double: обновляется сравнением с обменом, без блокировки на каждом запросе
+    private final AtomicLong limit;
+
+    // сколько ещё завершившихся запросов не уменьшают предел после последнего уменьшения
+    private final AtomicInteger backoffWindow = new AtomicInteger();
+
+    public AimdConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limit = new AtomicLong(Double.doubleToLongBits(Math.clamp(initialLimit, minLimit, maxLimit)));
+    }
+
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = this.inFlight.get();
+            if (current >= this.getLimit()) {
+                return false;
+            }
+        } while (!this.inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // inFlight учитывается до освобождения, иначе последний запрос предела никогда не считался бы его использованием
+    public void release(long latencyNanos, boolean failed) {
+        // окно читается до освобождения: запрос, уже не учтённый в inFlight, не может израсходовать окно,
+        // открытое без него
+        int window = this.backoffWindow.getAndUpdate(remaining -> remaining > 0 ? remaining - 1 : remaining);
+        int current = this.inFlight.getAndDecrement();
+        boolean backoff = failed || latencyNanos > this.latencyThresholdNanos;
+        // окно - остальные запросы, выполнявшиеся в момент уменьшения; открывает его только один из потоков
+        if (backoff && (window > 0 || !this.backoffWindow.compareAndSet(0, current - 1))) {
+            return;
+        }
+        this.limit.updateAndGet(bits -> {
+            double limit = Double.longBitsToDouble(bits);
+            if (backoff) {
+                limit = Math.max(this.minLimit, limit * BACKOFF_RATIO);
+            } else if (current * 2 >= (int) limit) {
+                limit = Math.min(this.maxLimit, limit + 1);
+            }
+            return Double.doubleToLongBits(limit);
+        });
+    }
+
+    // запрос, результат которого не говорит о нагрузке, например асинхронный поток
+    public void release() {
+        this.inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(this.limit.get());
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+}
@@ -0,0 +1,89 @@
+package ru.zinin.catalogue.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.repository.ProductRepository;
+
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+@Configuration
+@EnableCaching
+public class CacheBeans {
+
+    public static final String PRODUCTS_CACHE = "products";
+
+    @Bean
+    public VersionedProductCache productsCache(
+            @Value("${catalogue.cache.products.spec:maximumSize=10000,expireAfterWrite=10m}") String productsCacheSpec) {
+        return new VersionedProductCache(PRODUCTS_CACHE, productsCacheSpec);
+    }
+
+    @Bean
+    public CacheManager cacheManager(VersionedProductCache productsCache) {
+        var cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(productsCache));
+        cacheManager.initializeCaches();
+        // изменения кэша применяются только после фиксации транзакции, откат оставляет кэш нетронутым
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    // регионы кэша второго уровня Hibernate
+    @Bean(destroyMethod = "close")
+    public javax.cache.CacheManager hibernateCacheManager(
+            @Value("${catalogue.cache.hibernate.products.maximum-size:10000}") long productsMaximumSize,
+            @Value("${catalogue.cache.hibernate.filter-queries.maximum-size:1000}") long filterQueriesMaximumSize,
+            @Value("${catalogue.cache.hibernate.expire-after-write:10m}") Duration expireAfterWrite) {
+        var cachingProvider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // провайдер возвращает один менеджер на URI, а у каждого контекста приложения регионы должны быть свои
+        var cacheManager = cachingProvider.getCacheManager(URI.create("catalogue-" + UUID.randomUUID()),
+                CacheBeans.class.getClassLoader());
+        cacheManager.createCache(Product.class.getName(), boundedRegion(productsMaximumSize, expireAfterWrite));
+        cacheManager.createCache(ProductRepository.FILTER_QUERY_CACHE_REGION,
+                boundedRegion(filterQueriesMaximumSize, expireAfterWrite));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                boundedRegion(filterQueriesMaximumSize, expireAfterWrite));
+        // метки изменения таблиц вытеснять нельзя: без метки закэшированный результат запроса считается актуальным
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheHibernatePropertiesCustomizer(
+            javax.cache.CacheManager hibernateCacheManager) {
+        return properties -> {
+            // spring.jpa.properties.hibernate.cache.* позволяют отключить кэш, например в тестах
+            properties.putIfAbsent(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.putIfAbsent(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            // статистика Hibernate публикуется как метрики hibernate.second.level.cache.* и hibernate.cache.query.*
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> boundedRegion(long maximumSize, Duration expireAfterWrite) {
+        var configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+        return configuration;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.zinin.catalogue.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+// один и тот же токен приходит с каждым запросом клиента: подпись проверяется один раз,
+// дальше проверенный токен берётся из кэша по хэшу до наступления exp
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+
+    private final Cache<String, Jwt> validatedTokens;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maximumSize) {
+        this.delegate = delegate;
+        this.validatedTokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ExpiresAt())
+                .build();
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String tokenHash = hash(token);
+        Jwt jwt = this.validatedTokens.getIfPresent(tokenHash);
+        if (jwt == null) {
+            jwt = this.delegate.decode(token);
+            // токен без exp проверяется при каждом запросе
+            if (jwt.getExpiresAt() != null) {
+                this.validatedTokens.put(tokenHash, jwt);
+            }
+        }
+        return jwt;
+    }
+
+    // в кэше хранится хэш, а не сам токен
+    static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static final class ExpiresAt implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            return Math.max(0, TimeUnit.MILLISECONDS.toNanos(
+                    jwt.getExpiresAt().toEpochMilli() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return this.expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
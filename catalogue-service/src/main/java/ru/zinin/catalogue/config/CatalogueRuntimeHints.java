@@ -0,0 +1,84 @@
+package ru.zinin.catalogue.config;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.StringToClassMapItem;
+import io.swagger.v3.oas.annotations.headers.Header;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.OAuthFlow;
+import io.swagger.v3.oas.annotations.security.OAuthFlows;
+import io.swagger.v3.oas.annotations.security.OAuthScope;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.security.SecurityScheme;
+import net.ttddyy.dsproxy.proxy.ProxyJdbcObject;
+import org.springframework.aop.SpringProxy;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.core.DecoratingProxy;
+import org.springframework.data.projection.TargetAware;
+import ru.zinin.catalogue.controller.payload.NewProductPayload;
+import ru.zinin.catalogue.controller.payload.ProductBatchResult;
+import ru.zinin.catalogue.controller.payload.ProductImportError;
+import ru.zinin.catalogue.controller.payload.ProductImportReport;
+import ru.zinin.catalogue.controller.payload.UpdateProductPayload;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductChange;
+import ru.zinin.catalogue.entity.ProductExport;
+import ru.zinin.catalogue.entity.ProductSearchResult;
+import ru.zinin.catalogue.entity.ProductSuggestion;
+import ru.zinin.catalogue.entity.ProductSummary;
+import ru.zinin.catalogue.service.ProductSummariesPage;
+import ru.zinin.catalogue.service.ProductsByIds;
+import ru.zinin.catalogue.service.ProductsPage;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+// подсказки для native-image: то, что читается рефлексией и не выводится AOT из определений бинов
+public class CatalogueRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // методы Lombok и поля сущностей Hibernate
+        for (var entity : new Class<?>[]{Product.class, ProductChange.class}) {
+            hints.reflection().registerType(entity, MemberCategory.DECLARED_FIELDS,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+
+        // записи и сущности, которые сериализует Jackson, в том числе вне методов контроллеров
+        this.bindingRegistrar.registerReflectionHints(hints.reflection(),
+                Product.class, ProductExport.class, ProductSuggestion.class, ProductsPage.class,
+                ProductSummariesPage.class, ProductsByIds.class, NewProductPayload.class,
+                UpdateProductPayload.class, ProductBatchResult.class, ProductImportError.class,
+                ProductImportReport.class);
+
+        // интерфейсные проекции Spring Data реализуются прокси
+        for (var projection : new Class<?>[]{ProductSummary.class, ProductSearchResult.class}) {
+            hints.reflection().registerType(projection, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.proxies().registerJdkProxy(projection, TargetAware.class, SpringProxy.class, DecoratingProxy.class);
+        }
+
+        // datasource-proxy оборачивает объекты JDBC в прокси, а EXPLAIN медленного запроса повторяет вызовы
+        // установки параметров через рефлексию
+        for (var jdbcType : new Class<?>[]{Connection.class, Statement.class, PreparedStatement.class,
+                CallableStatement.class}) {
+            hints.proxies().registerJdkProxy(ProxyJdbcObject.class, jdbcType);
+        }
+        hints.reflection().registerType(PreparedStatement.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        // атрибуты аннотаций springdoc читаются при построении /v3/api-docs
+        for (var annotation : new Class<?>[]{SecurityScheme.class, OAuthFlows.class, OAuthFlow.class,
+                OAuthScope.class, Operation.class, SecurityRequirement.class, RequestBody.class, Content.class,
+                Schema.class, StringToClassMapItem.class, ApiResponse.class, Header.class}) {
+            hints.reflection().registerType(annotation, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+    }
+}
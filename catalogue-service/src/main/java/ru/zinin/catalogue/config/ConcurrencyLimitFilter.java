@@ -0,0 +1,148 @@
+package ru.zinin.catalogue.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// чтение и запись ограничиваются отдельно: всплеск чтения отбрасывается, не занимая места записей менеджеров
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    public static final String CONCURRENCY_LIMIT = "catalogue.concurrency.limit";
+
+    public static final String CONCURRENCY_IN_FLIGHT = "catalogue.concurrency.in_flight";
+
+    public static final String CONCURRENCY_REJECTED = "catalogue.concurrency.rejected";
+
+    static final String VIEW_CATALOGUE_SCOPE = "view_catalogue";
+
+    static final String EDIT_CATALOGUE_SCOPE = "edit_catalogue";
+
+    private final RequestMatcher editCatalogueRequests;
+
+    private final RequestMatcher unsampledRequests;
+
+    private final Limit viewCatalogue;
+
+    private final Limit editCatalogue;
+
+    private final String retryAfter;
+
+    public ConcurrencyLimitFilter(RequestMatcher editCatalogueRequests, RequestMatcher unsampledRequests,
+                                  AimdConcurrencyLimit viewCatalogueLimit, AimdConcurrencyLimit editCatalogueLimit,
+                                  long retryAfterSeconds, MeterRegistry meterRegistry) {
+        this.editCatalogueRequests = editCatalogueRequests;
+        this.unsampledRequests = unsampledRequests;
+        this.viewCatalogue = new Limit(VIEW_CATALOGUE_SCOPE, viewCatalogueLimit, meterRegistry);
+        this.editCatalogue = new Limit(EDIT_CATALOGUE_SCOPE, editCatalogueLimit, meterRegistry);
+        this.retryAfter = Long.toString(retryAfterSeconds);
+    }
+
+    // метрики нужны как раз во время перегрузки
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        // фильтр стоит после проверки доступа, поэтому запрос, совпавший с маршрутом записи, выполняется с областью
+        // edit_catalogue, а остальные пропущенные запросы к каталогу - с областью view_catalogue
+        Limit limit = this.editCatalogueRequests.matches(request) ? this.editCatalogue : this.viewCatalogue;
+        if (!limit.concurrencyLimit.tryAcquire()) {
+            limit.rejected.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, this.retryAfter);
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+        } finally {
+            // потоковый ответ занимает место до своего завершения, но, как и импорт с выгрузкой, длится столько,
+            // сколько данных отдаётся, поэтому о нагрузке не говорит
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingAsyncListener(limit.concurrencyLimit));
+            } else if (this.unsampledRequests.matches(request)) {
+                limit.concurrencyLimit.release();
+            } else {
+                limit.concurrencyLimit.release(System.nanoTime() - startedAt, failed);
+            }
+        }
+    }
+
+    // после onTimeout и onError контейнер всё равно вызывает onComplete, место освобождается один раз
+    private static final class ReleasingAsyncListener implements AsyncListener {
+
+        private final AimdConcurrencyLimit concurrencyLimit;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingAsyncListener(AimdConcurrencyLimit concurrencyLimit) {
+            this.concurrencyLimit = concurrencyLimit;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            this.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            this.release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            this.release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // при повторном startAsync контейнер забывает прежних слушателей, поэтому слушатель добавляется заново
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release() {
+            if (this.released.compareAndSet(false, true)) {
+                this.concurrencyLimit.release();
+            }
+        }
+    }
+
+    private static final class Limit {
+
+        private final AimdConcurrencyLimit concurrencyLimit;
+
+        private final Counter rejected;
+
+        private Limit(String scope, AimdConcurrencyLimit concurrencyLimit, MeterRegistry meterRegistry) {
+            this.concurrencyLimit = concurrencyLimit;
+            Gauge.builder(CONCURRENCY_LIMIT, concurrencyLimit, AimdConcurrencyLimit::getLimit)
+                    .tag("scope", scope)
+                    .register(meterRegistry);
+            Gauge.builder(CONCURRENCY_IN_FLIGHT, concurrencyLimit, AimdConcurrencyLimit::getInFlight)
+                    .tag("scope", scope)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder(CONCURRENCY_REJECTED)
+                    .tag("scope", scope)
+                    .register(meterRegistry);
+        }
+    }
+}
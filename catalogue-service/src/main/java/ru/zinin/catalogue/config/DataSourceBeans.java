@@ -0,0 +1,117 @@
+package ru.zinin.catalogue.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(prefix = "catalogue.datasource.replica", name = "url")
+public class DataSourceBeans {
+
+    // миграции выполняются только на основной базе
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("catalogue-primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("catalogue.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(
+            @Value("${catalogue.datasource.replica.url}") String url,
+            @Value("${catalogue.datasource.replica.username:${spring.datasource.username:}}") String username,
+            @Value("${catalogue.datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("catalogue-replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    // соединение берётся при первом запросе к базе, когда признак readOnly транзакции уже известен
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource) {
+        ReadOnlyRoutingDataSource routingDataSource = new ReadOnlyRoutingDataSource();
+        routingDataSource.setTargetDataSources(Map.of(
+                ReadOnlyRoutingDataSource.PRIMARY, primaryDataSource,
+                ReadOnlyRoutingDataSource.REPLICA, replicaDataSource));
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    // повторяет настройку из JpaBaseConfiguration, меняется только JpaDialect
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties jpaProperties) {
+        var jpaVendorAdapter = new HibernateJpaVendorAdapter() {
+
+            private final HibernateJpaDialect jpaDialect = new ReadOnlyRoutingJpaDialect();
+
+            @Override
+            public HibernateJpaDialect getJpaDialect() {
+                return this.jpaDialect;
+            }
+        };
+        jpaVendorAdapter.setShowSql(jpaProperties.isShowSql());
+        if (jpaProperties.getDatabase() != null) {
+            jpaVendorAdapter.setDatabase(jpaProperties.getDatabase());
+        }
+        if (jpaProperties.getDatabasePlatform() != null) {
+            jpaVendorAdapter.setDatabasePlatform(jpaProperties.getDatabasePlatform());
+        }
+        jpaVendorAdapter.setGenerateDdl(jpaProperties.isGenerateDdl());
+        return jpaVendorAdapter;
+    }
+
+    // применяется к applicationTaskExecutor, в котором Spring MVC выполняет StreamingResponseBody
+    @Bean
+    public TaskDecorator readYourWritesTaskDecorator() {
+        return ReadOnlyRoutingDataSource::propagatePrimaryRequired;
+    }
+
+    @Bean
+    public WebMvcConfigurer readYourWritesWebMvcConfigurer(
+            @Value("${catalogue.datasource.replica.read-your-writes-window:5s}") Duration readYourWritesWindow) {
+        // окно должно перекрывать типичное отставание реплики
+        ReadYourWritesInterceptor interceptor = new ReadYourWritesInterceptor(Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .maximumSize(100_000)
+                .build());
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor);
+            }
+        };
+    }
+}
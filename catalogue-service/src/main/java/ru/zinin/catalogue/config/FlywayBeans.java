@@ -0,0 +1,22 @@
+package ru.zinin.catalogue.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FlywayBeans {
+
+    // читается при запуске, а не условием на бин: в сборке с AOT spring.flyway.enabled фиксируется при сборке,
+    // а обучающий запуск CDS (профиль cds-training) не должен менять базу
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(
+            @Value("${catalogue.flyway.migrate-on-startup:true}") boolean migrateOnStartup) {
+        return flyway -> {
+            if (migrateOnStartup) {
+                flyway.migrate();
+            }
+        };
+    }
+}
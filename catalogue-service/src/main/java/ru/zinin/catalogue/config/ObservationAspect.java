@@ -0,0 +1,82 @@
+package ru.zinin.catalogue.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import ru.zinin.catalogue.controller.BadRequestException;
+
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+// наблюдения за каждым вызовом ProductService и ProductRepository: таймеры с гистограммами и спаны трассировки
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ObservationAspect {
+
+    public static final String SERVICE_OBSERVATION = "catalogue.product.service";
+
+    public static final String REPOSITORY_OBSERVATION = "catalogue.product.repository";
+
+    private final ObservationRegistry observationRegistry;
+
+    @Around("execution(* ru.zinin.catalogue.service.ProductService.*(..))")
+    public Object observeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return this.observe(SERVICE_OBSERVATION, joinPoint);
+    }
+
+    @Around("execution(* ru.zinin.catalogue.repository.ProductRepository.*(..))")
+    public Object observeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return this.observe(REPOSITORY_OBSERVATION, joinPoint);
+    }
+
+    private Object observe(String name, ProceedingJoinPoint joinPoint) throws Throwable {
+        String operation = joinPoint.getSignature().getName();
+        Observation observation = Observation.createNotStarted(name, this.observationRegistry)
+                .contextualName(name + "." + operation)
+                .lowCardinalityKeyValue("operation", operation)
+                .lowCardinalityKeyValue("filter", filter(joinPoint))
+                .start();
+        try (Observation.Scope ignored = observation.openScope()) {
+            Object result = joinPoint.proceed();
+            observation.lowCardinalityKeyValue("outcome",
+                    result instanceof Optional<?> optional && optional.isEmpty() ? "not_found" : "success");
+            return result;
+        } catch (Throwable exception) {
+            observation.lowCardinalityKeyValue("outcome", outcome(exception));
+            observation.error(exception);
+            throw exception;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    // у всех наблюдений одного имени должен быть одинаковый набор тегов, поэтому у методов без фильтра "absent"
+    private static String filter(ProceedingJoinPoint joinPoint) {
+        String[] parameterNames = ((MethodSignature) joinPoint.getSignature()).getParameterNames();
+        Object[] args = joinPoint.getArgs();
+        for (int i = 0; parameterNames != null && i < parameterNames.length; i++) {
+            if (parameterNames[i].equals("filter")) {
+                return args[i] instanceof String filter && !filter.isBlank() ? "present" : "absent";
+            }
+        }
+        return "absent";
+    }
+
+    private static String outcome(Throwable exception) {
+        if (exception instanceof NoSuchElementException) {
+            return "not_found";
+        } else if (exception instanceof OptimisticLockingFailureException) {
+            return "conflict";
+        } else if (exception instanceof BadRequestException) {
+            return "bad_request";
+        }
+        return "error";
+    }
+}
@@ -0,0 +1,57 @@
+package ru.zinin.catalogue.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Cache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.repository.ProductRepository;
+
+import java.util.function.Consumer;
+
+@Component
+@ConditionalOnProperty(name = "catalogue.persistence", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ProductSecondLevelCache {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    // UPDATE ... RETURNING Hibernate выполняет как выборку, а удаление - в пространстве PRODUCT_DELETE_SPACE,
+    // поэтому в обоих случаях сам он товар из кэша второго уровня не сбрасывает
+    public void evictModifiedProduct(Integer productId) {
+        this.evictNowAndAfterCompletion(cache -> {
+            cache.evictEntityData(Product.class, productId);
+            cache.evictQueryRegion(ProductRepository.FILTER_QUERY_CACHE_REGION);
+        });
+    }
+
+    // импорт пишет в t_product через JDBC в обход Hibernate
+    public void evictAllProducts() {
+        this.evictNowAndAfterCompletion(cache -> {
+            cache.evictEntityData(Product.class);
+            cache.evictQueryRegion(ProductRepository.FILTER_QUERY_CACHE_REGION);
+        });
+    }
+
+    // изменение, выполненное другим экземпляром сервиса, уже зафиксировано
+    public void evictChangedProduct(Integer productId) {
+        Cache cache = this.entityManagerFactory.getCache().unwrap(Cache.class);
+        cache.evictEntityData(Product.class, productId);
+        cache.evictQueryRegion(ProductRepository.FILTER_QUERY_CACHE_REGION);
+    }
+
+    private void evictNowAndAfterCompletion(Consumer<Cache> eviction) {
+        Cache cache = this.entityManagerFactory.getCache().unwrap(Cache.class);
+        eviction.accept(cache);
+        // повторно после завершения: до фиксации другой запрос мог положить в кэш прежнюю строку
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                eviction.accept(cache);
+            }
+        });
+    }
+}
@@ -0,0 +1,57 @@
+package ru.zinin.catalogue.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+@Configuration
+public class QueryLogBeans {
+
+    // оборачивается источник данных, через который работают Hibernate и JdbcTemplate;
+    // EXPLAIN выполняется на исходном, чтобы не попадать в таймеры и журнал повторно,
+    // а при разделении на основную базу и реплику - на той из них, куда ушёл запрос
+    @Bean
+    public static BeanPostProcessor slowQueryDataSourcePostProcessor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${catalogue.datasource.slow-query.threshold:500ms}") Duration threshold,
+            @Value("${catalogue.datasource.slow-query.explain-sample-rate:0}") double explainSampleRate) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+                    return ProxyDataSourceBuilder.create("catalogue", dataSource)
+                            .listener(new SlowQueryListener(meterRegistry.getObject(), threshold,
+                                    explainSampleRate, explainDataSource(dataSource)))
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static Supplier<DataSource> explainDataSource(DataSource dataSource) {
+        if (dataSource instanceof LazyConnectionDataSourceProxy proxy
+            && proxy.getTargetDataSource() instanceof ReadOnlyRoutingDataSource routingDataSource) {
+            return routingDataSource::currentTargetDataSource;
+        }
+        return () -> dataSource;
+    }
+
+    // запрос, который не свернулся в общий отпечаток, не должен неограниченно множить гистограммы
+    @Bean
+    public MeterFilter slowQueryTimerCardinalityLimit(
+            @Value("${catalogue.datasource.slow-query.max-fingerprints:200}") int maxFingerprints) {
+        return MeterFilter.maximumAllowableTags(SlowQueryListener.QUERY_TIMER, "query", maxFingerprints,
+                MeterFilter.deny());
+    }
+}
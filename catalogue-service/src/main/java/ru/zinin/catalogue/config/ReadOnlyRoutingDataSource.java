@@ -0,0 +1,55 @@
+package ru.zinin.catalogue.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+
+// транзакции только для чтения уходят на реплику, всё остальное и чтения сразу после записи - на основную базу
+public class ReadOnlyRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    public static final String REPLICA = "replica";
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    public static void requirePrimary() {
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+    }
+
+    public static void reset() {
+        PRIMARY_REQUIRED.remove();
+    }
+
+    public static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+
+    // потоковые ответы пишутся в потоке асинхронного исполнителя, признак переносится туда из потока запроса
+    public static Runnable propagatePrimaryRequired(Runnable task) {
+        if (!isPrimaryRequired()) {
+            return task;
+        }
+        return () -> {
+            requirePrimary();
+            try {
+                task.run();
+            } finally {
+                reset();
+            }
+        };
+    }
+
+    // база, на которую ушло бы соединение, взятое в текущем потоке
+    public DataSource currentTargetDataSource() {
+        return this.determineTargetDataSource();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !isPrimaryRequired()
+                ? REPLICA
+                : PRIMARY;
+    }
+}
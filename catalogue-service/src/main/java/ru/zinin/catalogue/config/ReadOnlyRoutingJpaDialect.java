@@ -0,0 +1,31 @@
+package ru.zinin.catalogue.config;
+
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.sql.SQLException;
+
+// строка, прочитанная с отстающей реплики, не должна попасть в общий кэш второго уровня и пережить там
+// окно чтения своих записей, поэтому транзакции на реплике работают мимо кэша
+public class ReadOnlyRoutingJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        // CacheMode.GET не подходит: Hibernate 6.4 кладёт в кэш результат запроса, не найденный в кэше,
+        // даже когда запись запрещена. Режим задаётся свойствами JPA: find() читает их, а не Session.getCacheMode();
+        // при open-in-view сессия переживает несколько транзакций, поэтому свойства задаются в начале каждой
+        boolean replica = definition.isReadOnly() && !ReadOnlyRoutingDataSource.isPrimaryRequired();
+        entityManager.setProperty(AvailableSettings.JAKARTA_SHARED_CACHE_RETRIEVE_MODE,
+                replica ? CacheRetrieveMode.BYPASS : CacheRetrieveMode.USE);
+        entityManager.setProperty(AvailableSettings.JAKARTA_SHARED_CACHE_STORE_MODE,
+                replica ? CacheStoreMode.BYPASS : CacheStoreMode.USE);
+        return transactionData;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.zinin.catalogue.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.security.Principal;
+import java.util.Set;
+
+// клиент, недавно изменявший данные, читает с основной базы, пока реплика не догонит его запись
+@RequiredArgsConstructor
+public class ReadYourWritesInterceptor implements AsyncHandlerInterceptor {
+
+    private static final Set<String> SAFE_METHODS = Set.of(
+            HttpMethod.GET.name(), HttpMethod.HEAD.name(), HttpMethod.OPTIONS.name());
+
+    private final Cache<String, Boolean> recentWriters;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            // запись отмечается до её выполнения: ответ может дойти до клиента раньше, чем завершится afterCompletion
+            if (isUnsafe(request)) {
+                this.recentWriters.put(principal.getName(), Boolean.TRUE);
+            }
+            if (this.recentWriters.getIfPresent(principal.getName()) != null) {
+                ReadOnlyRoutingDataSource.requirePrimary();
+            }
+        }
+        return true;
+    }
+
+    // поток запроса возвращается в пул, а ответ дописывается в другом потоке
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        ReadOnlyRoutingDataSource.reset();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception exception) {
+        // окно отсчитывается заново от конца записи: долгий импорт не должен пережить собственное окно
+        Principal principal = request.getUserPrincipal();
+        if (principal != null && isUnsafe(request)) {
+            this.recentWriters.put(principal.getName(), Boolean.TRUE);
+        }
+        ReadOnlyRoutingDataSource.reset();
+    }
+
+    private static boolean isUnsafe(HttpServletRequest request) {
+        return !SAFE_METHODS.contains(request.getMethod());
+    }
+}
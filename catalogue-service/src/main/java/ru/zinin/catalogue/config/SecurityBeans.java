@@ -1,5 +1,13 @@
 package ru.zinin.catalogue.config;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -7,22 +15,102 @@ import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.CsrfConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import java.net.URL;
+import java.time.Duration;
+
+import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
 
 @Configuration
 public class SecurityBeans {
 
+    // по этому же списку ConcurrencyLimitFilter относит запрос к пределу записей
+    static final RequestMatcher EDIT_CATALOGUE_REQUESTS = new OrRequestMatcher(
+            antMatcher(HttpMethod.POST, "/catalogue-api/products"),
+            antMatcher(HttpMethod.POST, "/catalogue-api/products/batch"),
+            antMatcher(HttpMethod.POST, "/catalogue-api/products/import"),
+            antMatcher(HttpMethod.PATCH, "/catalogue-api/products/{productId:\\d+}"),
+            antMatcher(HttpMethod.DELETE, "/catalogue-api/products/{productId:\\d+}"));
+
+    static final RequestMatcher UNSAMPLED_REQUESTS = new OrRequestMatcher(
+            antMatcher(HttpMethod.POST, "/catalogue-api/products/import"),
+            antMatcher(HttpMethod.GET, "/catalogue-api/products/export"),
+            antMatcher(HttpMethod.GET, "/catalogue-api/products/stream"));
+
+    // Keycloak по умолчанию публикует ключи по этому пути относительно issuer-uri
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty("spring.security.oauth2.resourceserver.jwt.issuer-uri")
+    public BackgroundJwkSetSource jwkSetSource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:"
+                   + "${spring.security.oauth2.resourceserver.jwt.issuer-uri}/protocol/openid-connect/certs}")
+            URL jwkSetUri,
+            @Value("${catalogue.security.jwt.jwk-set-refresh-interval:5m}") Duration refreshInterval,
+            @Value("${catalogue.security.jwt.jwk-set-min-refresh-interval:30s}") Duration minRefreshInterval,
+            @Value("${catalogue.security.jwt.jwk-set-timeout:5s}") Duration timeout,
+            @Value("${catalogue.security.jwt.fail-fast:false}") boolean failFast) throws Exception {
+        var jwkSetSource = new BackgroundJwkSetSource(jwkSetUri, refreshInterval, minRefreshInterval, timeout);
+        jwkSetSource.start(failFast);
+        return jwkSetSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty("spring.security.oauth2.resourceserver.jwt.issuer-uri")
+    public JwtDecoder jwtDecoder(
+            BackgroundJwkSetSource jwkSetSource,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri,
+            @Value("${catalogue.security.jwt.cache-maximum-size:10000}") long cacheMaximumSize) {
+        var jwtProcessor = new DefaultJWTProcessor<SecurityContext>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSetSource));
+        // утверждения проверяет валидатор Spring Security
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        var jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+        jwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return new CachingJwtDecoder(jwtDecoder, cacheMaximumSize);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public AimdConcurrencyLimit viewCatalogueConcurrencyLimit(
+            @Value("${catalogue.concurrency-limits.view-catalogue.initial-limit:100}") int initialLimit,
+            @Value("${catalogue.concurrency-limits.view-catalogue.min-limit:10}") int minLimit,
+            @Value("${catalogue.concurrency-limits.view-catalogue.max-limit:400}") int maxLimit,
+            @Value("${catalogue.concurrency-limits.view-catalogue.latency-threshold:1s}") Duration latencyThreshold) {
+        return new AimdConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyThreshold);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public AimdConcurrencyLimit editCatalogueConcurrencyLimit(
+            @Value("${catalogue.concurrency-limits.edit-catalogue.initial-limit:20}") int initialLimit,
+            @Value("${catalogue.concurrency-limits.edit-catalogue.min-limit:5}") int minLimit,
+            @Value("${catalogue.concurrency-limits.edit-catalogue.max-limit:100}") int maxLimit,
+            @Value("${catalogue.concurrency-limits.edit-catalogue.latency-threshold:2s}") Duration latencyThreshold) {
+        return new AimdConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyThreshold);
+    }
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public SecurityFilterChain securityFilterChain(
+            HttpSecurity http,
+            AimdConcurrencyLimit viewCatalogueConcurrencyLimit,
+            AimdConcurrencyLimit editCatalogueConcurrencyLimit,
+            @Value("${catalogue.concurrency-limits.retry-after:1s}") Duration retryAfter,
+            MeterRegistry meterRegistry) throws Exception {
         return http
                 .authorizeHttpRequests(authorizeHttpRequest -> authorizeHttpRequest
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui.html", "/swagger-ui/**").permitAll()
-                        .requestMatchers(HttpMethod.POST,"/catalogue-api/products")
-                        .hasAuthority("SCOPE_edit_catalogue")
-                        .requestMatchers(HttpMethod.PATCH, "/catalogue-api/products/{productId:\\d+}")
-                        .hasAuthority("SCOPE_edit_catalogue")
-                        .requestMatchers(HttpMethod.DELETE, "/catalogue-api/products/{productId:\\d+}")
-                        .hasAuthority("SCOPE_edit_catalogue")
+                        .requestMatchers(HttpMethod.GET, "/actuator/prometheus").hasAuthority("SCOPE_metrics")
+                        .requestMatchers(HttpMethod.POST, "/catalogue-api/products/by-ids")
+                        .hasAuthority("SCOPE_view_catalogue")
+                        .requestMatchers(EDIT_CATALOGUE_REQUESTS).hasAuthority("SCOPE_edit_catalogue")
                         .requestMatchers(HttpMethod.GET).hasAuthority("SCOPE_view_catalogue")
                         .anyRequest().denyAll())
                 .csrf(CsrfConfigurer::disable)
@@ -30,6 +118,10 @@ public class SecurityBeans {
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .oauth2ResourceServer(oauth2ResourceServer -> oauth2ResourceServer
                         .jwt(Customizer.withDefaults()))
+                // неаутентифицированные и запрещённые запросы отклоняются раньше и места в пределах не занимают
+                .addFilterAfter(new ConcurrencyLimitFilter(EDIT_CATALOGUE_REQUESTS, UNSAMPLED_REQUESTS,
+                        viewCatalogueConcurrencyLimit, editCatalogueConcurrencyLimit, retryAfter.toSeconds(),
+                        meterRegistry), AuthorizationFilter.class)
                 .build();
     }
 }
@@ -0,0 +1,193 @@
+package ru.zinin.catalogue.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// каждый запрос к базе измеряется таймером с тегом query - текстом запроса без значений,
+// запросы дольше порога пишутся в журнал с параметрами, а часть из них - ещё и с планом выполнения
+@Slf4j
+public class SlowQueryListener implements QueryExecutionListener {
+
+    public static final String QUERY_TIMER = "catalogue.db.query";
+
+    static final String EXPLAIN = "explain (analyze, buffers) ";
+
+    static final int MAX_PARAMETER_LENGTH = 200;
+
+    static final int MAX_LOGGED_BATCH_SIZE = 10;
+
+    private static final String STARTED_AT = "startedAt";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final MeterRegistry meterRegistry;
+
+    private final long thresholdNanos;
+
+    private final double explainSampleRate;
+
+    // при чтении с реплики план снимается на ней же: на основной базе он может оказаться другим
+    private final Supplier<DataSource> explainDataSource;
+
+    private final Executor explainExecutor;
+
+    // нормализация текста дороже поиска в кэше, а набор запросов приложения ограничен
+    private final Cache<String, Timer> timers = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    public SlowQueryListener(MeterRegistry meterRegistry, Duration threshold, double explainSampleRate,
+                             Supplier<DataSource> explainDataSource) {
+        this(meterRegistry, threshold, explainSampleRate, explainDataSource, explainExecutor());
+    }
+
+    SlowQueryListener(MeterRegistry meterRegistry, Duration threshold, double explainSampleRate,
+                      Supplier<DataSource> explainDataSource, Executor explainExecutor) {
+        this.meterRegistry = meterRegistry;
+        this.thresholdNanos = threshold.toNanos();
+        this.explainSampleRate = explainSampleRate;
+        this.explainDataSource = explainDataSource;
+        this.explainExecutor = explainExecutor;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.addCustomValue(STARTED_AT, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long startedAt = execInfo.getCustomValue(STARTED_AT, Long.class);
+        long elapsedNanos = startedAt == null
+                ? TimeUnit.MILLISECONDS.toNanos(execInfo.getElapsedTime())
+                : System.nanoTime() - startedAt;
+        for (QueryInfo queryInfo : queryInfoList) {
+            this.timers.get(queryInfo.getQuery(), this::timer).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+        if (elapsedNanos < this.thresholdNanos) {
+            return;
+        }
+
+        for (QueryInfo queryInfo : queryInfoList) {
+            log.warn("Slow query took {} ms: {}\n\tparameters: {}", TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    queryInfo.getQuery(), parameters(queryInfo.getParametersList()));
+        }
+        if (!execInfo.isBatch() && queryInfoList.size() == 1 && isSelect(queryInfoList.get(0).getQuery())
+            && ThreadLocalRandom.current().nextDouble() < this.explainSampleRate) {
+            String query = queryInfoList.get(0).getQuery();
+            List<List<ParameterSetOperation>> parametersList = queryInfoList.get(0).getParametersList();
+            // список параметров очищается вместе с PreparedStatement, поэтому копируется до передачи в другой поток
+            List<ParameterSetOperation> parameters = parametersList.isEmpty()
+                    ? List.of()
+                    : List.copyOf(parametersList.get(0));
+            // источник выбирается в потоке запроса, пока его транзакция ещё определяет маршрут
+            DataSource dataSource = this.explainDataSource.get();
+            this.explainExecutor.execute(() -> explain(dataSource, query, parameters));
+        }
+    }
+
+    // EXPLAIN ANALYZE выполняет запрос повторно, поэтому отдельным соединением вне транзакции запроса
+    // и только для чтения: изменяющий запрос завершится ошибкой, а не изменит данные второй раз
+    private static void explain(DataSource dataSource, String query, List<ParameterSetOperation> parameters) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false);
+            var plan = new StringBuilder();
+            try (PreparedStatement statement = connection.prepareStatement(EXPLAIN + query)) {
+                for (ParameterSetOperation parameter : parameters) {
+                    parameter.getMethod().invoke(statement, parameter.getArgs());
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        plan.append("\n\t").append(resultSet.getString(1));
+                    }
+                }
+            } finally {
+                connection.rollback();
+            }
+            log.warn("Plan of slow query {}:{}", query, plan);
+        } catch (Exception exception) {
+            log.warn("Could not explain slow query {}", query, exception);
+        }
+    }
+
+    private Timer timer(String query) {
+        return Timer.builder(QUERY_TIMER)
+                .tag("query", fingerprint(query))
+                .register(this.meterRegistry);
+    }
+
+    // значения и списки параметров разной длины не должны порождать отдельные метрики
+    static String fingerprint(String query) {
+        String fingerprint = STRING_LITERAL.matcher(query).replaceAll("?");
+        fingerprint = NUMBER_LITERAL.matcher(fingerprint).replaceAll("?");
+        fingerprint = PARAMETER_LIST.matcher(fingerprint).replaceAll("(?)");
+        return WHITESPACE.matcher(fingerprint).replaceAll(" ").strip();
+    }
+
+    private static boolean isSelect(String query) {
+        String statement = query.stripLeading().toLowerCase(Locale.ROOT);
+        return statement.startsWith("select") || statement.startsWith("with");
+    }
+
+    private static String parameters(List<List<ParameterSetOperation>> parametersList) {
+        String parameters = parametersList.stream()
+                .limit(MAX_LOGGED_BATCH_SIZE)
+                .map(operations -> operations.stream()
+                        .map(SlowQueryListener::parameter)
+                        .collect(Collectors.joining(", ", "[", "]")))
+                .collect(Collectors.joining(", "));
+        return parametersList.size() > MAX_LOGGED_BATCH_SIZE
+                ? parameters + " and %d more".formatted(parametersList.size() - MAX_LOGGED_BATCH_SIZE)
+                : parameters;
+    }
+
+    private static String parameter(ParameterSetOperation operation) {
+        Object[] args = operation.getArgs();
+        if (ParameterSetOperation.isSetNullParameterOperation(operation) || args.length < 2 || args[1] == null) {
+            return "null";
+        }
+        String value = String.valueOf(args[1]);
+        return value.length() > MAX_PARAMETER_LENGTH
+                ? value.substring(0, MAX_PARAMETER_LENGTH) + "..."
+                : value;
+    }
+
+    // планы снимаются по одному, а при очереди из уже ожидающих выборки новые отбрасываются
+    private static Executor explainExecutor() {
+        var executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new ArrayBlockingQueue<>(8),
+                Thread.ofPlatform().name("slow-query-explain").daemon().factory(),
+                new ThreadPoolExecutor.DiscardPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.zinin.catalogue.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.zinin.catalogue.entity.Product;
+
+// чтение, начатое до изменения товара, может положить в кэш прежнюю версию уже после сброса записи,
+// поэтому сброшенная запись запоминает версию, ниже которой товар в кэш больше не кладётся
+public class VersionedProductCache extends CaffeineCache {
+
+    // для удалённого товара - Integer.MAX_VALUE; живут столько же, сколько записи кэша
+    private final Cache<Object, Integer> evictedVersions;
+
+    public VersionedProductCache(String name, String spec) {
+        // статистика нужна для метрик cache.gets и cache.evictions
+        super(name, Caffeine.from(spec).recordStats().build(), false);
+        this.evictedVersions = Caffeine.from(spec).build();
+    }
+
+    @Override
+    public void put(Object key, @Nullable Object value) {
+        if (value instanceof Product product && product.getVersion() != null) {
+            this.getNativeCache().asMap().compute(key,
+                    (cacheKey, cached) -> this.isStale(cacheKey, product, cached) ? cached : product);
+        } else {
+            super.put(key, value);
+        }
+    }
+
+    // как и операции через TransactionAwareCacheManagerProxy, выполняется только после фиксации транзакции
+    public void evictAfterCommit(Object key, int version) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(key, version);
+                }
+            });
+        } else {
+            this.evict(key, version);
+        }
+    }
+
+    public void evict(Object key, int version) {
+        // версия запоминается до сброса записи: put, выполняемый одновременно, либо увидит её, либо будет сброшен
+        this.evictedVersions.asMap().merge(key, version, Math::max);
+        this.evict(key);
+    }
+
+    // полная очистка (загрузка товаров из файла) забывает и версии: чтение, пересёкшееся с загрузкой,
+    // может вернуть в кэш прежнюю строку до истечения expireAfterWrite
+    @Override
+    public void clear() {
+        super.clear();
+        this.evictedVersions.invalidateAll();
+    }
+
+    private boolean isStale(Object key, Product product, @Nullable Object cached) {
+        Integer evictedVersion = this.evictedVersions.getIfPresent(key);
+        if (evictedVersion != null && product.getVersion() < evictedVersion) {
+            return true;
+        }
+        return cached instanceof Product cachedProduct && cachedProduct.getVersion() != null
+                && product.getVersion() < cachedProduct.getVersion();
+    }
+}
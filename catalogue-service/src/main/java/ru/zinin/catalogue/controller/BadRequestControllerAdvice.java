@@ -9,7 +9,9 @@ import org.springframework.validation.BindException;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
 
+import java.util.List;
 import java.util.Locale;
 
 @ControllerAdvice
@@ -20,12 +22,34 @@ public class BadRequestControllerAdvice {
 
     @ExceptionHandler(BindException.class)
     public ResponseEntity<ProblemDetail> handleBindException(BindException exception, Locale locale) {
+        return this.badRequest(exception.getAllErrors(), locale);
+    }
+
+    // WebFlux сообщает об ошибках проверки тела запроса своим исключением
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<ProblemDetail> handleWebExchangeBindException(WebExchangeBindException exception,
+                                                                        Locale locale) {
+        return this.badRequest(exception.getAllErrors(), locale);
+    }
+
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<ProblemDetail> handleBadRequestException(BadRequestException exception, Locale locale) {
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(
+                HttpStatus.BAD_REQUEST, this.messageSource.getMessage(exception.getMessage(), new Object[0],
+                        exception.getMessage(), locale)
+        );
+
+        return ResponseEntity.badRequest()
+                .body(problemDetail);
+    }
+
+    private ResponseEntity<ProblemDetail> badRequest(List<ObjectError> errors, Locale locale) {
         ProblemDetail problemDetail = ProblemDetail
                 .forStatusAndDetail(HttpStatus.BAD_REQUEST,
                         this.messageSource.getMessage("errors.400.title", new Object[0],
                                 "errors.400.title", locale));
         problemDetail.setProperty("errors",
-                exception.getAllErrors().stream()
+                errors.stream()
                         .map(ObjectError::getDefaultMessage)
                         .toList());
 
@@ -0,0 +1,9 @@
+package ru.zinin.catalogue.controller;
+
+// ошибка в параметрах запроса: сообщение - код ошибки, клиент получает 400 с его переводом
+public class BadRequestException extends RuntimeException {
+
+    public BadRequestException(String errorCode) {
+        super(errorCode);
+    }
+}
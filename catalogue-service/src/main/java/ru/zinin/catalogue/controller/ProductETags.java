@@ -0,0 +1,76 @@
+package ru.zinin.catalogue.controller;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductSummary;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+final class ProductETags {
+
+    private ProductETags() {
+    }
+
+    static String of(Product product) {
+        return "\"%d\"".formatted(version(product));
+    }
+
+    // ETag списка меняется при изменении состава списка или версии любого товара из него
+    static String of(List<Product> products) {
+        return of(products, Product::getId, ProductETags::version, null);
+    }
+
+    // краткое и полное представления одного и того же списка не должны совпадать по ETag
+    static String ofSummaries(List<ProductSummary> products) {
+        return of(products, ProductSummary::getId, ProductSummary::getVersion, "summary");
+    }
+
+    private static <T> String of(List<T> products, ToIntFunction<T> id, ToIntFunction<T> version, String view) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (view != null) {
+                digest.update(view.getBytes(StandardCharsets.UTF_8));
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 2);
+            for (T product : products) {
+                digest.update(buffer.clear()
+                        .putInt(id.applyAsInt(product))
+                        .putInt(version.applyAsInt(product))
+                        .array());
+            }
+            return "\"%s\"".formatted(Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(digest.digest()));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    // у ещё не сохранённого товара версии нет
+    private static int version(Product product) {
+        return product.getVersion() == null ? 0 : product.getVersion();
+    }
+
+    // null означает, что версию проверять не нужно: заголовок не передан или равен "*"
+    static Integer versionOf(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.strip().equals("*")) {
+            return null;
+        }
+
+        // If-Match сравнивается строго: слабые и нечисловые ETag ни с чем не совпадают
+        String eTag = ifMatch.strip();
+        if (eTag.length() > 2 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+            try {
+                return Integer.valueOf(eTag.substring(1, eTag.length() - 1));
+            } catch (NumberFormatException exception) {
+                // не наш ETag, ниже будет выброшено исключение с кодом ошибки
+            }
+        }
+        throw new OptimisticLockingFailureException("catalogue.errors.product.version_mismatch");
+    }
+}
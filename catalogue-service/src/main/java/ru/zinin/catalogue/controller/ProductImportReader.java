@@ -0,0 +1,255 @@
+package ru.zinin.catalogue.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// читает загружаемый файл по одной записи, не держа в памяти больше одной строки
+final class ProductImportReader extends Spliterators.AbstractSpliterator<ProductImportReader.Row> {
+
+    // длиннее любого допустимого значения: проверка размера такую строку всё равно отклонит
+    static final int MAX_VALUE_LENGTH = 1001;
+
+    // столбцов сверх этого числа в записи не бывает, а без ограничения строка из одних запятых заняла бы память
+    static final int MAX_CSV_COLUMNS = 64;
+
+    // с запасом на экранирование символов в JSON
+    static final int MAX_NDJSON_LINE_LENGTH = 8 * 1024;
+
+    record Row(long line, Integer id, String title, String details, String error) {
+
+        // пустая строка файла, пропускается
+        static final Row BLANK = new Row(0, null, null, null, null);
+    }
+
+    private final Reader reader;
+
+    private final ObjectMapper objectMapper;
+
+    private int idColumn = -1;
+
+    private int titleColumn = -1;
+
+    private int detailsColumn = -1;
+
+    private long line = 1;
+
+    // в последней прочитанной записи CSV больше MAX_CSV_COLUMNS значений, лишние отброшены
+    private boolean tooManyColumns;
+
+    private ProductImportReader(Reader reader, ObjectMapper objectMapper) {
+        super(Long.MAX_VALUE, ORDERED | NONNULL);
+        this.reader = reader;
+        this.objectMapper = objectMapper;
+    }
+
+    // первая строка CSV - названия столбцов: title обязателен, id и details - нет
+    static Stream<Row> csv(Reader reader) throws IOException {
+        var importReader = new ProductImportReader(reader, null);
+        List<String> header = importReader.readCsvRecord();
+        if (importReader.tooManyColumns) {
+            throw new BadRequestException("catalogue.errors.products.import_row_has_too_many_columns");
+        }
+        for (int i = 0; header != null && i < header.size(); i++) {
+            String column = header.get(i) == null ? "" : header.get(i).replace("\uFEFF", "").strip()
+                    .toLowerCase(Locale.ROOT);
+            switch (column) {
+                case "id" -> importReader.idColumn = i;
+                case "title" -> importReader.titleColumn = i;
+                case "details" -> importReader.detailsColumn = i;
+                default -> {
+                }
+            }
+        }
+        if (importReader.titleColumn < 0) {
+            throw new BadRequestException("catalogue.errors.products.import_header_is_invalid");
+        }
+        return StreamSupport.stream(importReader, false);
+    }
+
+    static Stream<Row> ndjson(Reader reader, ObjectMapper objectMapper) {
+        return StreamSupport.stream(new ProductImportReader(reader, objectMapper), false);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Row> action) {
+        try {
+            Row row;
+            do {
+                row = this.objectMapper == null ? this.readCsvRow() : this.readNdjsonRow();
+                if (row == null) {
+                    return false;
+                }
+            } while (row == Row.BLANK);
+            action.accept(row);
+            return true;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private Row readCsvRow() throws IOException {
+        long recordLine = this.line;
+        List<String> values = this.readCsvRecord();
+        if (values == null) {
+            return null;
+        }
+        if (values.size() == 1 && values.getFirst() == null) {
+            return Row.BLANK;
+        }
+        if (this.tooManyColumns) {
+            return new Row(recordLine, null, null, null, "catalogue.errors.products.import_row_has_too_many_columns");
+        }
+
+        String id = column(values, this.idColumn);
+        Integer productId;
+        try {
+            productId = id == null || id.isBlank() ? null : Integer.valueOf(id.strip());
+        } catch (NumberFormatException exception) {
+            productId = -1;
+        }
+        if (productId != null && productId <= 0) {
+            return new Row(recordLine, null, null, null, "catalogue.errors.products.import_id_is_invalid");
+        }
+        return new Row(recordLine, productId, column(values, this.titleColumn), column(values, this.detailsColumn),
+                null);
+    }
+
+    private Row readNdjsonRow() throws IOException {
+        long recordLine = this.line;
+        StringBuilder value = new StringBuilder();
+        int c = this.reader.read();
+        if (c == -1) {
+            return null;
+        }
+        boolean truncated = false;
+        while (c != -1 && c != '\n') {
+            if (c != '\r') {
+                if (value.length() < MAX_NDJSON_LINE_LENGTH) {
+                    value.append((char) c);
+                } else {
+                    truncated = true;
+                }
+            }
+            c = this.reader.read();
+        }
+        this.line++;
+
+        if (value.isEmpty() || value.toString().isBlank()) {
+            return Row.BLANK;
+        }
+        if (truncated) {
+            return new Row(recordLine, null, null, null, "catalogue.errors.products.import_row_is_invalid");
+        }
+        JsonNode node;
+        try {
+            node = this.objectMapper.readTree(value.toString());
+        } catch (JsonProcessingException exception) {
+            return new Row(recordLine, null, null, null, "catalogue.errors.products.import_row_is_invalid");
+        }
+        if (!node.isObject()) {
+            return new Row(recordLine, null, null, null, "catalogue.errors.products.import_row_is_invalid");
+        }
+
+        JsonNode id = node.path("id");
+        if (!id.isMissingNode() && !id.isNull()
+                && (!id.isIntegralNumber() || !id.canConvertToInt() || id.intValue() <= 0)) {
+            return new Row(recordLine, null, null, null, "catalogue.errors.products.import_id_is_invalid");
+        }
+        return new Row(recordLine, id.isIntegralNumber() ? id.intValue() : null,
+                text(node.path("title")), text(node.path("details")), null);
+    }
+
+    // RFC 4180: значения в кавычках могут содержать запятые, переводы строк и удвоенные кавычки
+    private List<String> readCsvRecord() throws IOException {
+        int c = this.reader.read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> values = new ArrayList<>();
+        this.tooManyColumns = false;
+        StringBuilder value = new StringBuilder();
+        boolean inQuotes = false;
+        boolean quoted = false;
+        while (true) {
+            if (inQuotes) {
+                if (c == -1) {
+                    this.addValue(values, value.toString());
+                    return values;
+                } else if (c == '"') {
+                    c = this.reader.read();
+                    if (c == '"') {
+                        append(value, '"');
+                        c = this.reader.read();
+                    } else {
+                        inQuotes = false;
+                    }
+                    continue;
+                } else if (c == '\n') {
+                    this.line++;
+                }
+                append(value, c);
+            } else if (c == -1 || c == '\n') {
+                this.addValue(values, csvValue(value, quoted));
+                if (c == '\n') {
+                    this.line++;
+                }
+                return values;
+            } else if (c == ',') {
+                this.addValue(values, csvValue(value, quoted));
+                value.setLength(0);
+                quoted = false;
+            } else if (c == '"' && value.isEmpty() && !quoted) {
+                inQuotes = true;
+                quoted = true;
+            } else if (c != '\r') {
+                append(value, c);
+            }
+            c = this.reader.read();
+        }
+    }
+
+    // запись дочитывается до конца, чтобы следующая началась с новой строки файла
+    private void addValue(List<String> values, String value) {
+        if (values.size() < MAX_CSV_COLUMNS) {
+            values.add(value);
+        } else {
+            this.tooManyColumns = true;
+        }
+    }
+
+    private static void append(StringBuilder value, int c) {
+        if (value.length() < MAX_VALUE_LENGTH) {
+            value.append((char) c);
+        }
+    }
+
+    // пустое значение без кавычек - отсутствующее, "" - пустая строка
+    private static String csvValue(StringBuilder value, boolean quoted) {
+        return value.isEmpty() && !quoted ? null : value.toString();
+    }
+
+    private static String column(List<String> values, int column) {
+        return column >= 0 && column < values.size() ? values.get(column) : null;
+    }
+
+    private static String text(JsonNode node) {
+        if (node.isMissingNode() || node.isNull()) {
+            return null;
+        }
+        String text = node.asText();
+        return text.length() > MAX_VALUE_LENGTH ? text.substring(0, MAX_VALUE_LENGTH) : text;
+    }
+}
@@ -3,7 +3,10 @@ package ru.zinin.catalogue.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.MessageSource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
@@ -16,9 +19,9 @@ import ru.zinin.catalogue.service.ProductService;
 
 import java.util.Locale;
 import java.util.NoSuchElementException;
-import java.util.Optional;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 @RequestMapping("catalogue-api/products/{productId:\\d+}")
 @Slf4j
@@ -27,20 +30,21 @@ public class ProductRestController {
     private final ProductService productService;
     private final MessageSource messageSource;
 
-    @ModelAttribute("product")
-    public Product getProduct(@PathVariable("productId") Integer productId) {
-        return this.productService.findProduct(productId).orElseThrow(
+    @GetMapping
+    public ResponseEntity<Product> findProduct(@PathVariable("productId") Integer productId) {
+        Product product = this.productService.findProduct(productId).orElseThrow(
                 () -> new NoSuchElementException("catalogue.errors.product.not_found")
         );
-    }
 
-    @GetMapping
-    public Product findProduct(@ModelAttribute("product") Product product) {
-        return product;
+        // при совпадении If-None-Match ответ 304 отдаётся без сериализации товара
+        return ResponseEntity.ok()
+                .eTag(ProductETags.of(product))
+                .body(product);
     }
 
     @PatchMapping
     public ResponseEntity<?> updateProduct(@PathVariable("productId") Integer productId,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                            @Valid @RequestBody UpdateProductPayload payload,
                                            BindingResult bindingResult) throws BindException {
         if (bindingResult.hasErrors()) {
@@ -50,15 +54,18 @@ public class ProductRestController {
                 throw new BindException(bindingResult);
             }
         } else {
-            this.productService.updateProduct(productId, payload.title(), payload.details());
+            Product product = this.productService.updateProduct(productId, payload.title(), payload.details(),
+                    ProductETags.versionOf(ifMatch));
             return ResponseEntity.noContent()
+                    .eTag(ProductETags.of(product))
                     .build();
         }
     }
 
     @DeleteMapping
-    public ResponseEntity<Void> deleteProduct(@PathVariable("productId") Integer productId) {
-        this.productService.deleteProduct(productId);
+    public ResponseEntity<Void> deleteProduct(@PathVariable("productId") Integer productId,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        this.productService.deleteProduct(productId, ProductETags.versionOf(ifMatch));
 
         return ResponseEntity.noContent()
                 .build();
@@ -74,4 +81,16 @@ public class ProductRestController {
         return ResponseEntity.status(HttpStatus.NOT_FOUND)
                 .body(problemDetail);
     }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ProblemDetail> handleOptimisticLockingFailureException(Locale locale) {
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(
+                HttpStatus.PRECONDITION_FAILED, this.messageSource.getMessage(
+                        "catalogue.errors.product.version_mismatch", new Object[0],
+                        "catalogue.errors.product.version_mismatch", locale)
+        );
+
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(problemDetail);
+    }
 }
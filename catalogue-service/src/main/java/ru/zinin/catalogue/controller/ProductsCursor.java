@@ -0,0 +1,32 @@
+package ru.zinin.catalogue.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+final class ProductsCursor {
+
+    private static final String PREFIX = "id:";
+
+    private ProductsCursor() {
+    }
+
+    static String encode(int productId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + productId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static int decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (value.startsWith(PREFIX)) {
+                int productId = Integer.parseInt(value.substring(PREFIX.length()));
+                if (productId >= 0) {
+                    return productId;
+                }
+            }
+        } catch (IllegalArgumentException exception) {
+            // некорректный base64 или число, ниже будет выброшено исключение с кодом ошибки
+        }
+        throw new BadRequestException("catalogue.errors.products.cursor_is_invalid");
+    }
+}
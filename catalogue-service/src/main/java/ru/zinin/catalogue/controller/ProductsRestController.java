@@ -1,5 +1,7 @@
 package ru.zinin.catalogue.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.StringToClassMapItem;
 import io.swagger.v3.oas.annotations.headers.Header;
@@ -7,34 +9,264 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.MessageSource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 import ru.zinin.catalogue.controller.payload.NewProductPayload;
+import ru.zinin.catalogue.controller.payload.ProductBatchResult;
+import ru.zinin.catalogue.controller.payload.ProductImportError;
+import ru.zinin.catalogue.controller.payload.ProductImportReport;
 import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductImportResult;
+import ru.zinin.catalogue.entity.ProductImportRow;
+import ru.zinin.catalogue.entity.ProductSearchResult;
+import ru.zinin.catalogue.entity.ProductSuggestion;
+import ru.zinin.catalogue.service.ProductChangeRelay;
 import ru.zinin.catalogue.service.ProductService;
+import ru.zinin.catalogue.service.ProductSummariesPage;
+import ru.zinin.catalogue.service.ProductsByIds;
+import ru.zinin.catalogue.service.ProductsPage;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("catalogue-api/products")
 @RequiredArgsConstructor
 public class ProductsRestController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static final String NEXT_UPDATED_SINCE_HEADER = "X-Next-Updated-Since";
+
+    static final String FULL_VIEW = "full";
+
+    // только id, название и начало описания
+    static final String SUMMARY_VIEW = "summary";
+
+    // запрос без after и limit раньше отдавал весь каталог, теперь - только первую страницу, остальные по курсору
+    static final int DEFAULT_PAGE_LIMIT = 50;
+
+    static final int MAX_PAGE_LIMIT = 500;
+
+    static final int MAX_IDS_COUNT = 1000;
+
+    static final int STREAM_FLUSH_SIZE = 500;
+
+    static final int MAX_BATCH_SIZE = 10_000;
+
+    static final String GZIP_ENCODING = "gzip";
+
+    static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
+    // запас на самую долгую изменяющую транзакцию, отставание реплики и расхождение часов сервиса и базы
+    static final Duration EXPORT_OVERLAP = Duration.ofMinutes(5);
+
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    // подробности приводятся только для первых отклонённых строк, чтобы отчёт не рос вместе с файлом
+    static final int MAX_IMPORT_ERRORS = 1000;
+
+    static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+
+    static final int MAX_SEARCH_PAGE_SIZE = 100;
+
+    static final int DEFAULT_SUGGEST_LIMIT = 10;
+
+    static final int MAX_SUGGEST_LIMIT = 50;
+
     private final ProductService productService;
+    private final ProductChangeRelay productChangeRelay;
+    private final MessageSource messageSource;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
 
     @GetMapping
     @Operation(security = @SecurityRequirement(name = "keycloak"))
-    public ResponseEntity<Iterable<Product>> findAllProducts(@RequestParam(value = "filter", required = false) String filter) {
+    public ResponseEntity<List<?>> findAllProducts(@RequestParam(value = "filter", required = false) String filter,
+                                                   @RequestParam(value = "after", required = false) String after,
+                                                   @RequestParam(value = "limit", required = false) Integer limit,
+                                                   @RequestParam(value = "view", required = false) String view) {
+        Integer afterId = after == null || after.isBlank() ? null : ProductsCursor.decode(after);
+        int pageLimit = limit == null ? DEFAULT_PAGE_LIMIT : Math.clamp(limit, 1, MAX_PAGE_LIMIT);
 
-        return ResponseEntity.ok()
+        if (view == null || view.isBlank() || view.equals(FULL_VIEW)) {
+            ProductsPage page = this.productService.findAllProducts(filter, afterId, pageLimit);
+            return productsPage(page.products(), ProductETags.of(page.products()), page.nextAfter());
+        } else if (view.equals(SUMMARY_VIEW)) {
+            ProductSummariesPage page = this.productService.findAllProductSummaries(filter, afterId, pageLimit);
+            return productsPage(page.products(), ProductETags.ofSummaries(page.products()), page.nextAfter());
+        } else {
+            throw new BadRequestException("catalogue.errors.products.view_is_invalid");
+        }
+    }
+
+    static ResponseEntity<List<?>> productsPage(List<?> products, String eTag, Integer nextAfter) {
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(this.productService.findAllProducts(filter));
+                .eTag(eTag);
+        if (nextAfter != null) {
+            responseBuilder.header(NEXT_CURSOR_HEADER, ProductsCursor.encode(nextAfter));
+        }
+        return responseBuilder.body(products);
+    }
+
+    // массив JSON или NDJSON пишется в ответ по мере чтения строк из базы, без сборки всего списка в памяти
+    @GetMapping(value = "stream", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(security = @SecurityRequirement(name = "keycloak"))
+    public ResponseEntity<StreamingResponseBody> streamProducts(
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        boolean ndjson = accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(outputStream -> {
+                    try (JsonGenerator generator = this.objectMapper.createGenerator(outputStream)) {
+                        if (ndjson) {
+                            generator.setRootValueSeparator(null);
+                            this.writeProducts(filter, generator, true);
+                        } else {
+                            generator.writeStartArray();
+                            this.writeProducts(filter, generator, false);
+                            generator.writeEndArray();
+                        }
+                    }
+                });
+    }
+
+    // выгрузка для поискового индекса. c_updated_at - время начала изменяющей транзакции: изменение, зафиксированное
+    // уже во время выгрузки, может в неё не попасть, хотя его время раньше её начала. Поэтому следующая
+    // инкрементальная выгрузка начинается с X-Next-Updated-Since - начала этой выгрузки за вычетом EXPORT_OVERLAP;
+    // товары, попавшие в обе выгрузки, потребитель получит повторно
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(security = @SecurityRequirement(name = "keycloak"))
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestParam(value = "updatedSince", required = false) Instant updatedSince,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (updatedSince != null && !this.productChangeRelay.retainsChangesSince(updatedSince)) {
+            throw new BadRequestException("catalogue.errors.products.export_updated_since_is_too_old");
+        }
+
+        boolean gzip = acceptEncoding != null && Arrays.stream(acceptEncoding.split(","))
+                .map(encoding -> encoding.split(";")[0].strip())
+                .anyMatch(GZIP_ENCODING::equalsIgnoreCase);
+
+        var responseBuilder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .header(NEXT_UPDATED_SINCE_HEADER, Instant.now().minus(EXPORT_OVERLAP).toString());
+        if (gzip) {
+            responseBuilder.header(HttpHeaders.CONTENT_ENCODING, GZIP_ENCODING);
+        }
+        return responseBuilder.body(outputStream -> {
+            try (OutputStream exportStream = gzip
+                    ? new GZIPOutputStream(outputStream, EXPORT_BUFFER_SIZE)
+                    : outputStream;
+                 JsonGenerator generator = this.objectMapper.createGenerator(exportStream)) {
+                generator.setRootValueSeparator(null);
+                this.productService.exportProducts(updatedSince, product -> {
+                    try {
+                        generator.writeObject(product);
+                        generator.writeRaw('\n');
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                });
+            }
+        });
+    }
+
+    @GetMapping("search")
+    @Operation(security = @SecurityRequirement(name = "keycloak"))
+    public List<ProductSearchResult> searchProducts(@RequestParam(value = "q", required = false) String query,
+                                                    @RequestParam(value = "page", defaultValue = "0") int page,
+                                                    @RequestParam(value = "size", required = false) Integer size) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("catalogue.errors.products.search_query_is_blank");
+        }
+
+        return this.productService.searchProducts(query, Math.max(page, 0),
+                size == null ? DEFAULT_SEARCH_PAGE_SIZE : Math.clamp(size, 1, MAX_SEARCH_PAGE_SIZE));
+    }
+
+    @GetMapping("suggest")
+    @Operation(security = @SecurityRequirement(name = "keycloak"))
+    public List<ProductSuggestion> suggestProducts(@RequestParam(value = "prefix", required = false) String prefix,
+                                                   @RequestParam(value = "limit", required = false) Integer limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+
+        return this.productService.suggestProducts(prefix,
+                limit == null ? DEFAULT_SUGGEST_LIMIT : Math.clamp(limit, 1, MAX_SUGGEST_LIMIT));
+    }
+
+    @GetMapping("by-ids")
+    @Operation(security = @SecurityRequirement(name = "keycloak"))
+    public ProductsByIds findProductsByIds(@RequestParam("ids") List<Integer> ids) {
+        return this.findProductsByIdsList(ids);
+    }
+
+    // для больших наборов идентификаторов, которые не помещаются в строку запроса
+    @PostMapping("by-ids")
+    @Operation(security = @SecurityRequirement(name = "keycloak"))
+    public ProductsByIds findProductsByIdsList(@RequestBody List<Integer> ids) {
+        if (ids.size() > MAX_IDS_COUNT) {
+            throw new BadRequestException("catalogue.errors.products.too_many_ids");
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new BadRequestException("catalogue.errors.products.ids_are_invalid");
+        }
+
+        return this.productService.findProductsByIds(ids);
+    }
+
+    @GetMapping(value = "changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamProductChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return this.productChangeRelay.subscribe(null);
+        }
+
+        try {
+            return this.productChangeRelay.subscribe(Long.parseLong(lastEventId.strip()));
+        } catch (NumberFormatException exception) {
+            throw new BadRequestException("catalogue.errors.products.last_event_id_is_invalid");
+        }
     }
 
     @PostMapping
@@ -86,7 +318,106 @@ public class ProductsRestController {
             return ResponseEntity.created(uriBuilder
                             .replacePath("/catalogue-api/products/{productId}")
                             .build(Map.of("productId", product.getId())))
+                    .eTag(ProductETags.of(product))
                     .body(product);
         }
     }
+
+    private void writeProducts(String filter, JsonGenerator generator, boolean lineDelimited) {
+        AtomicInteger written = new AtomicInteger();
+        this.productService.streamProducts(filter, product -> {
+            try {
+                generator.writeObject(product);
+                if (lineDelimited) {
+                    generator.writeRaw('\n');
+                }
+                // первый товар уходит клиенту сразу, дальше буфер сбрасывается порциями
+                if (written.incrementAndGet() % STREAM_FLUSH_SIZE == 1) {
+                    generator.flush();
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        });
+    }
+
+    // каждый элемент проверяется отдельно: некорректные не мешают сохранить остальные
+    @PostMapping("batch")
+    @Operation(security = @SecurityRequirement(name = "keycloak"))
+    public List<ProductBatchResult> createProducts(@RequestBody List<NewProductPayload> payloads, Locale locale) {
+        if (payloads.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("catalogue.errors.products.batch_is_too_large");
+        }
+
+        ProductBatchResult[] results = new ProductBatchResult[payloads.size()];
+        List<Integer> validIndexes = new ArrayList<>(payloads.size());
+        List<Product> products = new ArrayList<>(payloads.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            NewProductPayload payload = payloads.get(i);
+            List<String> errors = payload == null
+                    ? List.of(this.messageSource.getMessage("catalogue.products.create.errors.payload_is_null",
+                    new Object[0], "catalogue.products.create.errors.payload_is_null", locale))
+                    : this.validator.validate(payload).stream()
+                    .map(ConstraintViolation::getMessage)
+                    .toList();
+            if (errors.isEmpty()) {
+                validIndexes.add(i);
+                products.add(new Product(null, payload.title(), payload.details()));
+            } else {
+                results[i] = new ProductBatchResult(i, null, errors);
+            }
+        }
+
+        if (!products.isEmpty()) {
+            List<Product> createdProducts = this.productService.createProducts(products);
+            for (int i = 0; i < createdProducts.size(); i++) {
+                results[validIndexes.get(i)] = new ProductBatchResult(validIndexes.get(i), createdProducts.get(i), null);
+            }
+        }
+        return List.of(results);
+    }
+
+    // файл разбирается по мере чтения, в памяти оказывается не больше одной пачки строк
+    @PostMapping(value = "import", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(security = @SecurityRequirement(name = "keycloak"))
+    public ProductImportReport importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                              InputStream body, Locale locale) throws IOException {
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        var reader = new BufferedReader(new InputStreamReader(body, charset));
+        Stream<ProductImportReader.Row> rows = MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(contentType)
+                ? ProductImportReader.ndjson(reader, this.objectMapper)
+                : ProductImportReader.csv(reader);
+
+        List<ProductImportError> errors = new ArrayList<>();
+        AtomicLong rejected = new AtomicLong();
+        Stream<ProductImportRow> validRows = rows
+                .filter(row -> {
+                    List<String> rowErrors = this.importRowErrors(row, locale);
+                    if (rowErrors.isEmpty()) {
+                        return true;
+                    }
+                    if (rejected.getAndIncrement() < MAX_IMPORT_ERRORS) {
+                        errors.add(new ProductImportError(row.line(), rowErrors));
+                    }
+                    return false;
+                })
+                .map(row -> new ProductImportRow(row.line(), row.id(), row.title(), row.details()));
+        ProductImportResult result = this.productService.importProducts(validRows, MAX_IMPORT_ERRORS);
+
+        List<String> notFound = List.of(this.messageSource.getMessage("catalogue.errors.product.not_found",
+                new Object[0], "catalogue.errors.product.not_found", locale));
+        result.unknownProductLines().forEach(line -> errors.add(new ProductImportError(line, notFound)));
+        errors.sort(Comparator.comparingLong(ProductImportError::line));
+        return new ProductImportReport(result.created(), result.updated(), rejected.get() + result.unknownProducts(),
+                List.copyOf(errors.subList(0, Math.min(errors.size(), MAX_IMPORT_ERRORS))));
+    }
+
+    private List<String> importRowErrors(ProductImportReader.Row row, Locale locale) {
+        if (row.error() != null) {
+            return List.of(this.messageSource.getMessage(row.error(), new Object[0], row.error(), locale));
+        }
+        return this.validator.validate(new NewProductPayload(row.title(), row.details())).stream()
+                .map(ConstraintViolation::getMessage)
+                .toList();
+    }
 }
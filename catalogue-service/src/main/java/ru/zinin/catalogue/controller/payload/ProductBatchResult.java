@@ -0,0 +1,14 @@
+package ru.zinin.catalogue.controller.payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import ru.zinin.catalogue.entity.Product;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProductBatchResult(
+        int index,
+        Product product,
+        List<String> errors
+) {
+}
@@ -0,0 +1,9 @@
+package ru.zinin.catalogue.controller.payload;
+
+import java.util.List;
+
+public record ProductImportError(
+        long line,
+        List<String> errors
+) {
+}
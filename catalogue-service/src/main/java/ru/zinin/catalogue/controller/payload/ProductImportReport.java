@@ -0,0 +1,12 @@
+package ru.zinin.catalogue.controller.payload;
+
+import java.util.List;
+
+// errors содержит не больше ProductsRestController.MAX_IMPORT_ERRORS строк, rejected - число всех отклонённых
+public record ProductImportReport(
+        long created,
+        long updated,
+        long rejected,
+        List<ProductImportError> errors
+) {
+}
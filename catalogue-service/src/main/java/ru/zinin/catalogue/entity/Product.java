@@ -1,21 +1,30 @@
 package ru.zinin.catalogue.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
 @Table(schema = "catalogue", name = "t_product")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Product {
 
+    // pooled-оптимизатор выделяет идентификаторы блоками, поэтому вставки могут идти JDBC-пакетами
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_id_seq")
+    @SequenceGenerator(name = "product_id_seq", schema = "catalogue", sequenceName = "t_product_id_seq",
+            allocationSize = 50)
     private Integer id;
 
     @Column(name = "c_title")
@@ -26,4 +35,15 @@ public class Product {
     @Column(name = "c_details")
     @Size(max = 1000)
     private String details;
+
+    // версия строки, из неё строятся ETag для условных запросов
+    @Version
+    @Column(name = "c_version")
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Integer version;
+
+    public Product(Integer id, String title, String details) {
+        this(id, title, details, null);
+    }
 }
@@ -0,0 +1,47 @@
+package ru.zinin.catalogue.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(schema = "catalogue", name = "t_product_change")
+public class ProductChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @JsonIgnore
+    private Long id;
+
+    @Column(name = "c_product_id")
+    private Integer productId;
+
+    @Column(name = "c_type")
+    @Enumerated(EnumType.STRING)
+    private ProductChangeType type;
+
+    // состояние товара после изменения, у удалённого товара отсутствует
+    @Column(name = "c_title")
+    private String title;
+
+    @Column(name = "c_details")
+    private String details;
+
+    @Column(name = "c_version")
+    private Integer version;
+
+    @Column(name = "c_created_at")
+    private Instant createdAt;
+
+    // передаётся идентификатором события SSE, а не в теле
+    @Column(name = "c_position")
+    @JsonIgnore
+    private Long position;
+}
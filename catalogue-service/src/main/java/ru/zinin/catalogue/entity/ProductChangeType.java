@@ -0,0 +1,7 @@
+package ru.zinin.catalogue.entity;
+
+public enum ProductChangeType {
+    CREATED,
+    UPDATED,
+    DELETED
+}
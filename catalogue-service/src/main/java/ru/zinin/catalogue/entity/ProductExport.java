@@ -0,0 +1,19 @@
+package ru.zinin.catalogue.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+// строка выгрузки каталога: по updatedAt потребитель выбирает границу следующей инкрементальной выгрузки;
+// в инкрементальной выгрузке удалённый товар приходит строкой с deleted = true и временем удаления в updatedAt
+public record ProductExport(Integer id, String title, String details, Integer version, Instant updatedAt,
+                            @JsonInclude(JsonInclude.Include.NON_DEFAULT) boolean deleted) {
+
+    public ProductExport(Integer id, String title, String details, Integer version, Instant updatedAt) {
+        this(id, title, details, version, updatedAt, false);
+    }
+
+    public static ProductExport deleted(Integer id, Instant deletedAt) {
+        return new ProductExport(id, null, null, null, deletedAt, true);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.zinin.catalogue.entity;
+
+import java.util.List;
+
+// unknownProductLines содержит не больше строк, чем было запрошено, unknownProducts - их общее число
+public record ProductImportResult(long created, long updated, long unknownProducts, List<Long> unknownProductLines) {
+}
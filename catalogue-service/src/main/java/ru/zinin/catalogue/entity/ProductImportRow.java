@@ -0,0 +1,5 @@
+package ru.zinin.catalogue.entity;
+
+// id == null означает новый товар, иначе обновление существующего
+public record ProductImportRow(long line, Integer id, String title, String details) {
+}
@@ -0,0 +1,12 @@
+package ru.zinin.catalogue.entity;
+
+public interface ProductSearchResult {
+
+    Integer getId();
+
+    String getTitle();
+
+    String getDetails();
+
+    Double getRank();
+}
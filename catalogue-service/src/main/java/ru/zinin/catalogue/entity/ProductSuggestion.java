@@ -0,0 +1,4 @@
+package ru.zinin.catalogue.entity;
+
+public record ProductSuggestion(Integer id, String title) {
+}
@@ -0,0 +1,16 @@
+package ru.zinin.catalogue.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// краткое представление товара для списков: вместо полного описания только его начало
+public interface ProductSummary {
+
+    Integer getId();
+
+    String getTitle();
+
+    String getDetails();
+
+    @JsonIgnore
+    Integer getVersion();
+}
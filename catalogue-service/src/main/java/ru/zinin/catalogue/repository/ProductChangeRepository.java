@@ -0,0 +1,86 @@
+package ru.zinin.catalogue.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import ru.zinin.catalogue.entity.ProductChange;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ProductChangeRepository extends Repository<ProductChange, Long> {
+
+    // изменяющие запросы без указания таблицы сбрасывали бы кэш второго уровня товаров
+    String PRODUCT_CHANGE_TABLE = "catalogue.t_product_change";
+
+    String INSERT_CHANGE = """
+            insert into catalogue.t_product_change(c_product_id, c_type, c_title, c_details, c_version)
+            values (:productId, :type, :title, :details, :version)""";
+
+    String TRY_ADVISORY_LOCK = "select pg_try_advisory_xact_lock(:key)";
+
+    // строки, зафиксированные позже, получают бо́льшие позиции, поэтому чтение по позиции ничего не пропускает;
+    // nextval вычисляется после сортировки, иначе позиции раздаются в порядке обхода таблицы
+    String ASSIGN_POSITIONS = """
+            update catalogue.t_product_change change
+            set c_position = assigned.position
+            from (select id, nextval('catalogue.t_product_change_position_seq') as position
+                  from (select id from catalogue.t_product_change
+                        where c_position is null
+                        order by id
+                        limit :limit) unpublished
+                  order by id) assigned
+            where change.id = assigned.id""";
+
+    String DELETE_PUBLISHED_BEFORE = """
+            delete from catalogue.t_product_change
+            where c_position is not null and c_created_at < :before""";
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = PRODUCT_CHANGE_TABLE))
+    @Query(value = INSERT_CHANGE, nativeQuery = true)
+    void insertChange(@Param("productId") int productId,
+                      @Param("type") String type,
+                      @Param("title") String title,
+                      @Param("details") String details,
+                      @Param("version") Integer version);
+
+    // одна вставка на весь пакет созданных товаров
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = PRODUCT_CHANGE_TABLE))
+    @Query(value = """
+            insert into catalogue.t_product_change(c_product_id, c_type, c_title, c_details, c_version)
+            select id, 'CREATED', c_title, c_details, c_version
+            from catalogue.t_product
+            where id = any(:ids)
+            order by id""", nativeQuery = true)
+    void insertCreatedChanges(@Param("ids") Integer[] ids);
+
+    // ретранслятор должен быть один на все экземпляры сервиса, иначе позиции разных пачек перемешаются
+    @Query(value = TRY_ADVISORY_LOCK, nativeQuery = true)
+    boolean tryAdvisoryLock(@Param("key") long key);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = PRODUCT_CHANGE_TABLE))
+    @Query(value = ASSIGN_POSITIONS, nativeQuery = true)
+    int assignPositions(@Param("limit") int limit);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = PRODUCT_CHANGE_TABLE))
+    @Query(value = DELETE_PUBLISHED_BEFORE, nativeQuery = true)
+    int deletePublishedBefore(@Param("before") Instant before);
+
+    @Query(value = """
+            select * from catalogue.t_product_change
+            where c_position > :after
+            order by c_position
+            limit :limit""", nativeQuery = true)
+    List<ProductChange> findAllAfterPosition(@Param("after") long after, @Param("limit") int limit);
+
+    @Query(value = "select coalesce(max(c_position), 0) from catalogue.t_product_change", nativeQuery = true)
+    long findLastPosition();
+}
@@ -0,0 +1,73 @@
+package ru.zinin.catalogue.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.zinin.catalogue.entity.ProductExport;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Repository
+@ConditionalOnProperty(name = "catalogue.persistence", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ProductExportRepository {
+
+    static final String FIND_ALL_AFTER = """
+            select id, c_title, c_details, c_version, c_updated_at
+            from catalogue.t_product
+            where id > ?
+            order by id
+            limit ?""";
+
+    // порция начинается в индексе idx_product_updated_at_id сразу после последней выгруженной строки
+    static final String FIND_ALL_UPDATED_SINCE_AFTER = """
+            select id, c_title, c_details, c_version, c_updated_at
+            from catalogue.t_product
+            where (c_updated_at, id) > (?, ?)
+            order by c_updated_at, id
+            limit ?""";
+
+    // удаления берутся из журнала изменений, который хранится catalogue.products.changes.retention
+    static final String FIND_ALL_DELETED_SINCE_AFTER = """
+            select c_product_id, max(c_created_at) as c_deleted_at
+            from catalogue.t_product_change
+            where c_type = 'DELETED' and c_created_at >= ? and c_product_id > ?
+            group by c_product_id
+            order by c_product_id
+            limit ?""";
+
+    static final RowMapper<ProductExport> PRODUCT_EXPORT_ROW_MAPPER = (resultSet, rowNum) -> new ProductExport(
+            resultSet.getInt("id"),
+            resultSet.getString("c_title"),
+            resultSet.getString("c_details"),
+            resultSet.getInt("c_version"),
+            resultSet.getObject("c_updated_at", OffsetDateTime.class).toInstant());
+
+    static final RowMapper<ProductExport> DELETED_PRODUCT_EXPORT_ROW_MAPPER = (resultSet, rowNum) ->
+            ProductExport.deleted(resultSet.getInt("c_product_id"),
+                    resultSet.getObject("c_deleted_at", OffsetDateTime.class).toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // каждая порция читается в отдельной короткой транзакции, при наличии реплики - с неё;
+    // без updatedSince строки идут по id, иначе - по (c_updated_at, id) после позиции (updatedSince, after)
+    @Transactional(readOnly = true)
+    public List<ProductExport> findAllUpdatedSinceAfter(Instant updatedSince, int after, int limit) {
+        return updatedSince == null
+                ? this.jdbcTemplate.query(FIND_ALL_AFTER, PRODUCT_EXPORT_ROW_MAPPER, after, limit)
+                : this.jdbcTemplate.query(FIND_ALL_UPDATED_SINCE_AFTER, PRODUCT_EXPORT_ROW_MAPPER,
+                Timestamp.from(updatedSince), after, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ProductExport> findAllDeletedSinceAfter(Instant deletedSince, int after, int limit) {
+        return this.jdbcTemplate.query(FIND_ALL_DELETED_SINCE_AFTER, DELETED_PRODUCT_EXPORT_ROW_MAPPER,
+                Timestamp.from(deletedSince), after, limit);
+    }
+}
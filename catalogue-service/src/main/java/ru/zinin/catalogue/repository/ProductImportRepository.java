@@ -0,0 +1,162 @@
+package ru.zinin.catalogue.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.zinin.catalogue.entity.ProductImportResult;
+import ru.zinin.catalogue.entity.ProductImportRow;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// строки загружаются через COPY во временную таблицу и переносятся в t_product несколькими запросами
+@Repository
+@ConditionalOnProperty(name = "catalogue.persistence", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ProductImportRepository {
+
+    // совпадает с allocationSize генератора Product и шагом t_product_id_seq
+    static final int ID_ALLOCATION_SIZE = 50;
+
+    static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    static final String CREATE_STAGING_TABLE = """
+            create temporary table t_product_import(
+                c_line          bigint not null,
+                c_product_id    integer,
+                c_title         varchar(50) not null,
+                c_details       varchar(1000),
+                c_created       boolean not null default false
+            ) on commit drop""";
+
+    static final String COPY_TO_STAGING_TABLE = """
+            copy t_product_import (c_line, c_product_id, c_title, c_details) from stdin with (format csv)""";
+
+    static final String UNKNOWN_PRODUCTS_CONDITION = """
+            c_product_id is not null
+            and not exists(select 1 from catalogue.t_product p where p.id = i.c_product_id)""";
+
+    // из нескольких строк с одним id применяется последняя
+    static final String DELETE_SUPERSEDED_ROWS = """
+            delete from t_product_import i
+            using t_product_import later
+            where i.c_product_id = later.c_product_id and i.c_line < later.c_line""";
+
+    // идентификаторы выделяются блоками так же, как это делает pooled-оптимизатор Hibernate:
+    // значение последовательности - верхняя граница блока, а первое значение новой последовательности блок не задаёт
+    static final String ASSIGN_PRODUCT_IDS = """
+            update t_product_import i
+            set c_product_id = blocks.hi - %1$d + 1 + numbered.rn %% %1$d,
+                c_created = true
+            from (select c_line, row_number() over (order by c_line) - 1 as rn
+                  from t_product_import
+                  where c_product_id is null) numbered
+            join (select block, case when hi < %1$d then nextval('catalogue.t_product_id_seq') else hi end as hi
+                  from (select block, nextval('catalogue.t_product_id_seq') as hi
+                        from generate_series(0, (select (count(*) - 1) / %1$d
+                                                 from t_product_import
+                                                 where c_product_id is null)) block) allocated) blocks
+                on blocks.block = numbered.rn / %1$d
+            where i.c_line = numbered.c_line""".formatted(ID_ALLOCATION_SIZE);
+
+    static final String UPSERT_PRODUCTS = """
+            insert into catalogue.t_product as p (id, c_title, c_details)
+            select c_product_id, c_title, c_details
+            from t_product_import
+            order by c_product_id
+            on conflict (id) do update
+            set c_title = excluded.c_title,
+                c_details = excluded.c_details,
+                c_version = p.c_version + 1""";
+
+    // изменения попадают в outbox той же транзакции, что и товары
+    static final String INSERT_PRODUCT_CHANGES = """
+            insert into catalogue.t_product_change(c_product_id, c_type, c_title, c_details, c_version)
+            select p.id, case when i.c_created then 'CREATED' else 'UPDATED' end, p.c_title, p.c_details, p.c_version
+            from t_product_import i
+            join catalogue.t_product p on p.id = i.c_product_id
+            order by i.c_line""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // временная таблица удаляется при фиксации, поэтому вызывать можно только внутри транзакции
+    @Transactional(propagation = Propagation.MANDATORY)
+    public ProductImportResult importProducts(Stream<ProductImportRow> rows, int maxReportedLines) {
+        this.jdbcTemplate.execute(CREATE_STAGING_TABLE);
+        this.jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            copy(connection.unwrap(PGConnection.class), rows);
+            return null;
+        });
+        // у временных таблиц нет статистики, а от неё зависят планы следующих запросов
+        this.jdbcTemplate.execute("analyze t_product_import");
+
+        List<Long> unknownProductLines = this.jdbcTemplate.queryForList(
+                "select c_line from t_product_import i where " + UNKNOWN_PRODUCTS_CONDITION
+                + " order by c_line limit ?", Long.class, maxReportedLines);
+        int unknownProducts = this.jdbcTemplate.update(
+                "delete from t_product_import i where " + UNKNOWN_PRODUCTS_CONDITION);
+
+        this.jdbcTemplate.update(DELETE_SUPERSEDED_ROWS);
+        this.jdbcTemplate.update(ASSIGN_PRODUCT_IDS);
+        this.jdbcTemplate.update(UPSERT_PRODUCTS);
+        this.jdbcTemplate.update(INSERT_PRODUCT_CHANGES);
+
+        Map<String, Object> counts = this.jdbcTemplate.queryForMap("""
+                select count(*) filter (where c_created) as created,
+                       count(*) filter (where not c_created) as updated
+                from t_product_import""");
+        // если пачки загружаются в общей транзакции, следующая создаст таблицу заново
+        this.jdbcTemplate.execute("drop table t_product_import");
+        return new ProductImportResult(((Number) counts.get("created")).longValue(),
+                ((Number) counts.get("updated")).longValue(), unknownProducts, unknownProductLines);
+    }
+
+    private static void copy(PGConnection connection, Stream<ProductImportRow> rows) throws SQLException {
+        // в памяти держится только буфер COPY, строки уходят в базу по мере чтения входного потока
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new PGCopyOutputStream(connection, COPY_TO_STAGING_TABLE, COPY_BUFFER_SIZE),
+                StandardCharsets.UTF_8))) {
+            rows.forEach(row -> {
+                try {
+                    writer.write(Long.toString(row.line()));
+                    writer.write(',');
+                    if (row.id() != null) {
+                        writer.write(row.id().toString());
+                    }
+                    writer.write(',');
+                    writeCsvValue(writer, row.title());
+                    writer.write(',');
+                    writeCsvValue(writer, row.details());
+                    writer.write('\n');
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    // пустое значение без кавычек COPY воспринимает как null
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value != null) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
@@ -1,18 +1,211 @@
 package ru.zinin.catalogue.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductSearchResult;
+import ru.zinin.catalogue.entity.ProductSummary;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 
 public interface ProductRepository extends CrudRepository<Product, Integer> {
 
+    int STREAM_FETCH_SIZE = 500;
+
+    int SUMMARY_DETAILS_LENGTH = 200;
+
+    // пространство запросов сущности Product: по нему Hibernate сбрасывает закэшированные результаты запросов
+    String PRODUCT_TABLE = "catalogue.t_product";
+
+    // пространство удаления: не совпадает с пространством Product, поэтому Hibernate не сбрасывает после удаления
+    // весь регион товаров, а удалённый товар и фильтры сбрасывает ProductSecondLevelCache
+    String PRODUCT_DELETE_SPACE = "catalogue.t_product#delete";
+
+    String FILTER_QUERY_CACHE_REGION = "catalogue.products.filter";
+
+    // только столбцы сущности: select * тянул бы и поисковый вектор c_search, который Product не использует
+    String SELECT_PRODUCTS = "select id, c_title, c_details, c_version from catalogue.t_product\n";
+
+    String FIND_ALL_AFTER = SELECT_PRODUCTS + """
+            where id > :after
+            order by id
+            limit :limit""";
+
+    // фильтр содержит хотя бы одну триграмму, поэтому ilike обслуживается GIN-индексом idx_product_title_trgm
+    String FIND_ALL_BY_TITLE_LIKE_IGNORE_CASE_AFTER = SELECT_PRODUCTS + """
+            where c_title ilike :filter and id > :after
+            order by id
+            limit :limit""";
+
+    // по короткому фильтру триграммы не построить, поэтому он проверяется только в окне из scanSize товаров после
+    // after: без окна редкий фильтр проходил бы весь первичный ключ. Здесь определяется последний id окна
+    String FIND_SHORT_FILTER_SCAN_END = """
+            select id from catalogue.t_product
+            where id > :after
+            order by id
+            offset :scanSize - 1
+            limit 1""";
+
+    // идём по первичному ключу внутри окна и отбрасываем неподходящие строки до заполнения страницы
+    String FIND_ALL_BY_TITLE_CONTAINING_AFTER = SELECT_PRODUCTS + """
+            where id > :after and id <= :scanEnd and strpos(lower(c_title), lower(:filter)) > 0
+            order by id
+            limit :limit""";
+
+    // описание обрезается на стороне базы, поэтому клиенту не передаются полные тексты
+    String SELECT_SUMMARIES = "select id, c_title as title, left(c_details, " + SUMMARY_DETAILS_LENGTH
+            + ") as details, c_version as version from catalogue.t_product\n";
+
+    String FIND_ALL_SUMMARIES_AFTER = SELECT_SUMMARIES + """
+            where id > :after
+            order by id
+            limit :limit""";
+
+    String FIND_ALL_SUMMARIES_BY_TITLE_LIKE_IGNORE_CASE_AFTER = SELECT_SUMMARIES + """
+            where c_title ilike :filter and id > :after
+            order by id
+            limit :limit""";
+
+    String FIND_ALL_SUMMARIES_BY_TITLE_CONTAINING_AFTER = SELECT_SUMMARIES + """
+            where id > :after and id <= :scanEnd and strpos(lower(c_title), lower(:filter)) > 0
+            order by id
+            limit :limit""";
+
+    // полнотекстовый поиск по GIN-индексу idx_product_search, результаты упорядочены по релевантности
+    String SEARCH = """
+            select id, c_title as title, c_details as details,
+                   cast(ts_rank(c_search, websearch_to_tsquery('russian', :query)) as float8) as rank
+            from catalogue.t_product
+            where c_search @@ websearch_to_tsquery('russian', :query)
+            order by rank desc, id
+            limit :limit offset :offset""";
+
+    String FIND_BY_ID = SELECT_PRODUCTS + "where id = :id";
+
+    String FIND_ALL_BY_IDS = SELECT_PRODUCTS + "where id = any(:ids)";
+
+    String UPDATE_PRODUCT = """
+            update catalogue.t_product
+            set c_title = :title, c_details = :details, c_version = c_version + 1
+            where id = :id
+            returning c_version""";
+
+    String UPDATE_PRODUCT_IF_VERSION = """
+            update catalogue.t_product
+            set c_title = :title, c_details = :details, c_version = c_version + 1
+            where id = :id and c_version = :version
+            returning c_version""";
+
+    String DELETE_PRODUCT = "delete from catalogue.t_product where id = :id";
+
+    String DELETE_PRODUCT_IF_VERSION = "delete from catalogue.t_product where id = :id and c_version = :version";
 
     // select * from catalogue.t_product where c_title ilike :filter
     /* JPQL-запрос
     @Query(value = "select p from Product p where p.title ilike :filter") */
     /* SQL-запрос */
-    @Query(value = "select * from catalogue.t_product where c_title ilike :filter", nativeQuery = true)
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS"))
+    @Query(value = SELECT_PRODUCTS + "where c_title ilike :filter", nativeQuery = true)
     Iterable<Product> findAllByTitleLikeIgnoreCase(@Param("filter") String filter);
+
+    // постраничная выборка по курсору: следующая страница начинается после последнего полученного id;
+    // массовые выборки не кладут товары в кэш второго уровня, чтобы не вытеснять из него часто читаемые
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS"))
+    @Query(value = FIND_ALL_AFTER, nativeQuery = true)
+    List<Product> findAllAfter(@Param("after") int after, @Param("limit") int limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = FILTER_QUERY_CACHE_REGION),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = PRODUCT_TABLE)
+    })
+    @Query(value = FIND_ALL_BY_TITLE_LIKE_IGNORE_CASE_AFTER, nativeQuery = true)
+    List<Product> findAllByTitleLikeIgnoreCaseAfter(@Param("filter") String filter,
+                                                    @Param("after") int after,
+                                                    @Param("limit") int limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = FILTER_QUERY_CACHE_REGION),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = PRODUCT_TABLE)
+    })
+    @Query(value = FIND_ALL_BY_TITLE_CONTAINING_AFTER, nativeQuery = true)
+    List<Product> findAllByTitleContainingAfter(@Param("filter") String filter,
+                                                @Param("after") int after,
+                                                @Param("scanEnd") int scanEnd,
+                                                @Param("limit") int limit);
+
+    @Query(value = FIND_SHORT_FILTER_SCAN_END, nativeQuery = true)
+    Optional<Integer> findShortFilterScanEnd(@Param("after") int after, @Param("scanSize") int scanSize);
+
+    @Query(value = FIND_ALL_SUMMARIES_AFTER, nativeQuery = true)
+    List<ProductSummary> findAllSummariesAfter(@Param("after") int after, @Param("limit") int limit);
+
+    @Query(value = FIND_ALL_SUMMARIES_BY_TITLE_LIKE_IGNORE_CASE_AFTER, nativeQuery = true)
+    List<ProductSummary> findAllSummariesByTitleLikeIgnoreCaseAfter(@Param("filter") String filter,
+                                                                    @Param("after") int after,
+                                                                    @Param("limit") int limit);
+
+    @Query(value = FIND_ALL_SUMMARIES_BY_TITLE_CONTAINING_AFTER, nativeQuery = true)
+    List<ProductSummary> findAllSummariesByTitleContainingAfter(@Param("filter") String filter,
+                                                                @Param("after") int after,
+                                                                @Param("scanEnd") int scanEnd,
+                                                                @Param("limit") int limit);
+
+    @Query(value = SEARCH, nativeQuery = true)
+    List<ProductSearchResult> search(@Param("query") String query,
+                                     @Param("offset") int offset,
+                                     @Param("limit") int limit);
+
+    // один запрос на весь набор идентификаторов вместо запроса на каждый товар
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS"))
+    @Query(value = FIND_ALL_BY_IDS, nativeQuery = true)
+    List<Product> findAllByIds(@Param("ids") Integer[] ids);
+
+    // строки читаются курсором порциями по STREAM_FETCH_SIZE, а не загружаются в память целиком
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS")
+    })
+    @Query(value = SELECT_PRODUCTS + "order by id", nativeQuery = true)
+    Stream<Product> streamAll();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS")
+    })
+    @Query(value = SELECT_PRODUCTS + "where c_title ilike :filter order by id", nativeQuery = true)
+    Stream<Product> streamAllByTitleLikeIgnoreCase(@Param("filter") String filter);
+
+    // обновление одним запросом без предварительной загрузки товара; пустой результат означает, что строка не найдена
+    @Query(value = UPDATE_PRODUCT, nativeQuery = true)
+    Optional<Integer> updateProduct(@Param("id") int id,
+                                    @Param("title") String title,
+                                    @Param("details") String details);
+
+    @Query(value = UPDATE_PRODUCT_IF_VERSION, nativeQuery = true)
+    Optional<Integer> updateProductIfVersion(@Param("id") int id,
+                                             @Param("title") String title,
+                                             @Param("details") String details,
+                                             @Param("version") int version);
+
+    // без указания пространства Hibernate сбросил бы после удаления все регионы кэша второго уровня
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = PRODUCT_DELETE_SPACE))
+    @Query(value = DELETE_PRODUCT, nativeQuery = true)
+    int deleteProduct(@Param("id") int id);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = PRODUCT_DELETE_SPACE))
+    @Query(value = DELETE_PRODUCT_IF_VERSION, nativeQuery = true)
+    int deleteProductIfVersion(@Param("id") int id, @Param("version") int version);
 }
@@ -1,54 +1,326 @@
 package ru.zinin.catalogue.service;
 
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.zinin.catalogue.config.CacheBeans;
+import ru.zinin.catalogue.config.ProductSecondLevelCache;
+import ru.zinin.catalogue.config.VersionedProductCache;
 import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductExport;
+import ru.zinin.catalogue.entity.ProductChangeType;
+import ru.zinin.catalogue.entity.ProductImportResult;
+import ru.zinin.catalogue.entity.ProductImportRow;
+import ru.zinin.catalogue.entity.ProductSearchResult;
+import ru.zinin.catalogue.entity.ProductSuggestion;
+import ru.zinin.catalogue.entity.ProductSummary;
+import ru.zinin.catalogue.repository.ProductChangeRepository;
+import ru.zinin.catalogue.repository.ProductExportRepository;
+import ru.zinin.catalogue.repository.ProductImportRepository;
 import ru.zinin.catalogue.repository.ProductRepository;
 
-import java.util.NoSuchElementException;
-import java.util.Optional;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "catalogue.persistence", havingValue = "jpa", matchIfMissing = true)
 public class DefaultProductService implements ProductService {
 
+    // pg_trgm может использовать индекс, только если в образце есть три подряд идущих буквы или цифры
+    static final Pattern TRIGRAM_PATTERN = Pattern.compile("[\\p{L}\\p{N}]{3}");
+
+    // короткий фильтр за один запрос проверяет не больше стольких товаров; если окно не последнее, следующая
+    // страница начинается после него, даже когда в окне нашлось меньше limit товаров
+    static final int SHORT_FILTER_SCAN_SIZE = 10_000;
+
+    // глубже этой границы по результатам поиска не листаем: ранжирование считается для каждой найденной строки
+    static final int MAX_SEARCH_RESULTS = 1000;
+
+    // совпадает с hibernate.jdbc.batch_size и шагом последовательности t_product_id_seq
+    static final int INSERT_BATCH_SIZE = 50;
+
+    static final int EXPORT_CHUNK_SIZE = 1000;
+
+    static final int IMPORT_BATCH_SIZE = 5000;
+
     private final ProductRepository productRepository;
 
+    // изменения пишутся в той же транзакции, что и товары, и публикуются ProductChangeRelay
+    private final ProductChangeRepository productChangeRepository;
+
+    private final ProductImportRepository productImportRepository;
+
+    private final ProductExportRepository productExportRepository;
+
+    private final EntityManager entityManager;
+
+    private final ProductSecondLevelCache productSecondLevelCache;
+
+    // сбрасывается с версией, а не через @CacheEvict: иначе чтение, начатое до изменения, вернуло бы в кэш
+    // прежний товар
+    private final VersionedProductCache productsCache;
+
+    private final ProductTitleIndex productTitleIndex;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    @Transactional(readOnly = true)
+    public ProductsPage findAllProducts(String filter, Integer after, int limit) {
+        int afterId = after == null ? 0 : after;
+        Integer scanEnd = null;
+        // запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+        List<Product> products;
+        if (filter != null && !filter.isBlank()) {
+            if (TRIGRAM_PATTERN.matcher(filter).find()) {
+                products = this.productRepository.findAllByTitleLikeIgnoreCaseAfter(
+                        "%" + escapeLikePattern(filter) + "%", afterId, limit + 1);
+            } else {
+                scanEnd = this.productRepository.findShortFilterScanEnd(afterId, SHORT_FILTER_SCAN_SIZE).orElse(null);
+                products = this.productRepository.findAllByTitleContainingAfter(filter, afterId,
+                        scanEnd == null ? Integer.MAX_VALUE : scanEnd, limit + 1);
+            }
+        } else {
+            products = this.productRepository.findAllAfter(afterId, limit + 1);
+        }
+
+        if (products.size() > limit) {
+            List<Product> page = products.subList(0, limit);
+            return new ProductsPage(page, page.get(limit - 1).getId());
+        }
+        return new ProductsPage(products, scanEnd);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ProductSummariesPage findAllProductSummaries(String filter, Integer after, int limit) {
+        int afterId = after == null ? 0 : after;
+        Integer scanEnd = null;
+        List<ProductSummary> products;
+        if (filter != null && !filter.isBlank()) {
+            if (TRIGRAM_PATTERN.matcher(filter).find()) {
+                products = this.productRepository.findAllSummariesByTitleLikeIgnoreCaseAfter(
+                        "%" + escapeLikePattern(filter) + "%", afterId, limit + 1);
+            } else {
+                scanEnd = this.productRepository.findShortFilterScanEnd(afterId, SHORT_FILTER_SCAN_SIZE).orElse(null);
+                products = this.productRepository.findAllSummariesByTitleContainingAfter(filter, afterId,
+                        scanEnd == null ? Integer.MAX_VALUE : scanEnd, limit + 1);
+            }
+        } else {
+            products = this.productRepository.findAllSummariesAfter(afterId, limit + 1);
+        }
+
+        if (products.size() > limit) {
+            List<ProductSummary> page = products.subList(0, limit);
+            return new ProductSummariesPage(page, page.get(limit - 1).getId());
+        }
+        return new ProductSummariesPage(products, scanEnd);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamProducts(String filter, Consumer<Product> consumer) {
+        try (Stream<Product> products = filter != null && !filter.isBlank()
+                ? this.productRepository.streamAllByTitleLikeIgnoreCase("%" + escapeLikePattern(filter) + "%")
+                : this.productRepository.streamAll()) {
+            products.forEach(product -> {
+                consumer.accept(product);
+                // отсоединяем прочитанный товар, чтобы контекст персистентности не рос вместе с каталогом
+                this.entityManager.detach(product);
+            });
+        }
+    }
+
+    // без общей транзакции: выгрузка миллионов строк не удерживает снимок данных, который мешал бы vacuum,
+    // а товар, изменённый во время выгрузки, попадёт в следующую инкрементальную выгрузку
+    @Override
+    public void exportProducts(Instant updatedSince, Consumer<ProductExport> consumer) {
+        exportChunks(last -> last == null
+                ? this.productExportRepository.findAllUpdatedSinceAfter(updatedSince, 0, EXPORT_CHUNK_SIZE)
+                : this.productExportRepository.findAllUpdatedSinceAfter(updatedSince == null ? null : last.updatedAt(),
+                last.id(), EXPORT_CHUNK_SIZE), consumer);
+        // полная выгрузка заменяет индекс целиком, инкрементальной нужно сообщить и об удалённых товарах
+        if (updatedSince != null) {
+            exportChunks(last -> this.productExportRepository.findAllDeletedSinceAfter(updatedSince,
+                    last == null ? 0 : last.id(), EXPORT_CHUNK_SIZE), consumer);
+        }
+    }
+
+    // порция запрашивается после последней выгруженной строки, первая - с null вместо неё
+    private static void exportChunks(Function<ProductExport, List<ProductExport>> chunkAfter,
+                                     Consumer<ProductExport> consumer) {
+        ProductExport last = null;
+        List<ProductExport> products;
+        do {
+            products = chunkAfter.apply(last);
+            products.forEach(consumer);
+            if (!products.isEmpty()) {
+                last = products.getLast();
+            }
+        } while (products.size() == EXPORT_CHUNK_SIZE);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductSearchResult> searchProducts(String query, int page, int size) {
+        long offset = (long) page * size;
+        if (offset >= MAX_SEARCH_RESULTS) {
+            return List.of();
+        }
+
+        return this.productRepository.search(query, (int) offset,
+                Math.min(size, MAX_SEARCH_RESULTS - (int) offset));
+    }
+
+    // подсказки при вводе в строку поиска отдаются из памяти, без запроса к базе на каждое нажатие клавиши
+    @Override
+    public List<ProductSuggestion> suggestProducts(String prefix, int limit) {
+        return this.productTitleIndex.suggest(prefix, limit);
+    }
+
     @Override
-    public Iterable<Product> findAllProducts(String filter) {
-        if(filter != null && !filter.isBlank()) {
-            return this.productRepository.findAllByTitleLikeIgnoreCase("%" + filter + "%");
+    @Transactional(readOnly = true)
+    public ProductsByIds findProductsByIds(List<Integer> ids) {
+        Set<Integer> uniqueIds = new LinkedHashSet<>(ids);
+        if (uniqueIds.isEmpty()) {
+            return new ProductsByIds(List.of(), List.of());
         }
-        return this.productRepository.findAll();
+
+        return ProductsByIds.inRequestOrder(uniqueIds,
+                this.productRepository.findAllByIds(uniqueIds.toArray(Integer[]::new)));
     }
 
+    // читается с реплики; строку, отставшую от изменения, не примет VersionedProductCache: изменение запоминает
+    // в нём новую версию товара
     @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheBeans.PRODUCTS_CACHE, key = "#productId", unless = "#result == null")
     public Optional<Product> findProduct(Integer productId) {
         return this.productRepository.findById(productId);
     }
 
     @Override
     @Transactional
+    @CachePut(cacheNames = CacheBeans.PRODUCTS_CACHE, key = "#result.id")
     public Product createProduct(String title, String details) {
-        return this.productRepository.save(new Product(null, title, details));
+        Product product = this.productRepository.save(new Product(null, title, details));
+        this.productChangeRepository.insertChange(product.getId(), ProductChangeType.CREATED.name(),
+                title, details, product.getVersion());
+        this.productTitleIndex.putAfterCommit(product.getId(), title);
+        return product;
     }
 
     @Override
     @Transactional
-    public void updateProduct(Integer id, String title, String details) {
-        this.productRepository.findById(id)
-                .ifPresentOrElse(product -> {
-                    product.setTitle(title);
-                    product.setDetails(details);
-                }, () -> {
-                    throw new NoSuchElementException();
-                });
+    public List<Product> createProducts(List<Product> products) {
+        for (int i = 0; i < products.size(); i++) {
+            this.entityManager.persist(products.get(i));
+            // отправляем накопленный пакет вставок и освобождаем контекст персистентности
+            if ((i + 1) % INSERT_BATCH_SIZE == 0) {
+                this.entityManager.flush();
+                this.entityManager.clear();
+            }
+        }
+        this.entityManager.flush();
+        this.productChangeRepository.insertCreatedChanges(products.stream()
+                .map(Product::getId)
+                .toArray(Integer[]::new));
+        this.productTitleIndex.putAllAfterCommit(products.stream()
+                .map(product -> new ProductSuggestion(product.getId(), product.getTitle()))
+                .toList());
+        return products;
+    }
+
+    // файл читается вне транзакции, а каждая пачка строк загружается в своей: медленная загрузка файла клиентом
+    // не удерживает соединение и блокировки строк, зато при ошибке остаются загруженными предыдущие пачки
+    @Override
+    @CacheEvict(cacheNames = CacheBeans.PRODUCTS_CACHE, allEntries = true)
+    public ProductImportResult importProducts(Stream<ProductImportRow> rows, int maxReportedLines) {
+        long created = 0;
+        long updated = 0;
+        long unknownProducts = 0;
+        List<Long> unknownProductLines = new ArrayList<>();
+        Iterator<ProductImportRow> iterator = rows.iterator();
+        List<ProductImportRow> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        do {
+            batch.clear();
+            while (iterator.hasNext() && batch.size() < IMPORT_BATCH_SIZE) {
+                batch.add(iterator.next());
+            }
+            int reportedLines = maxReportedLines - unknownProductLines.size();
+            ProductImportResult result = this.transactionTemplate.execute(status -> {
+                ProductImportResult batchResult = this.productImportRepository.importProducts(batch.stream(),
+                        reportedLines);
+                this.productSecondLevelCache.evictAllProducts();
+                return batchResult;
+            });
+            created += result.created();
+            updated += result.updated();
+            unknownProducts += result.unknownProducts();
+            unknownProductLines.addAll(result.unknownProductLines());
+        } while (iterator.hasNext());
+
+        this.productTitleIndex.rebuildAfterCommit();
+        return new ProductImportResult(created, updated, unknownProducts, unknownProductLines);
+    }
+
+    @Override
+    @Transactional
+    public Product updateProduct(Integer id, String title, String details, Integer version) {
+        Optional<Integer> newVersion = version == null
+                ? this.productRepository.updateProduct(id, title, details)
+                : this.productRepository.updateProductIfVersion(id, title, details, version);
+
+        Product product = newVersion
+                .map(value -> new Product(id, title, details, value))
+                .orElseThrow(() -> this.writeFailure(id, version));
+        this.productSecondLevelCache.evictModifiedProduct(id);
+        this.productsCache.evictAfterCommit(id, product.getVersion());
+        this.productChangeRepository.insertChange(id, ProductChangeType.UPDATED.name(),
+                title, details, product.getVersion());
+        this.productTitleIndex.putAfterCommit(id, title);
+        return product;
     }
 
     @Override
     @Transactional
-    public void deleteProduct(Integer id) {
-        this.productRepository.deleteById(id);
+    public void deleteProduct(Integer id, Integer version) {
+        int deleted = version == null
+                ? this.productRepository.deleteProduct(id)
+                : this.productRepository.deleteProductIfVersion(id, version);
+
+        if (deleted == 0) {
+            throw this.writeFailure(id, version);
+        }
+        this.productSecondLevelCache.evictModifiedProduct(id);
+        this.productsCache.evictAfterCommit(id, Integer.MAX_VALUE);
+        this.productChangeRepository.insertChange(id, ProductChangeType.DELETED.name(), null, null, null);
+        this.productTitleIndex.removeAfterCommit(id);
+    }
+
+    // лишний запрос выполняется только на неуспешном пути, чтобы отличить отсутствие товара от устаревшей версии
+    private RuntimeException writeFailure(Integer id, Integer version) {
+        if (version != null && this.productRepository.existsById(id)) {
+            return new OptimisticLockingFailureException("catalogue.errors.product.version_mismatch");
+        }
+        return new NoSuchElementException("catalogue.errors.product.not_found");
+    }
+
+    static String escapeLikePattern(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
     }
 }
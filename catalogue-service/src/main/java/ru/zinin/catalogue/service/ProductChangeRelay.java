@@ -0,0 +1,321 @@
+package ru.zinin.catalogue.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.zinin.catalogue.config.ProductSecondLevelCache;
+import ru.zinin.catalogue.config.VersionedProductCache;
+import ru.zinin.catalogue.entity.ProductChange;
+import ru.zinin.catalogue.repository.ProductChangeRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "catalogue.persistence", havingValue = "jpa", matchIfMissing = true)
+public class ProductChangeRelay {
+
+    public static final String EVENT_NAME = "product-change";
+
+    static final int RELAY_BATCH_SIZE = 500;
+
+    static final Duration CATCH_UP_RETRY_INTERVAL = Duration.ofMillis(100);
+
+    // ключ pg_try_advisory_xact_lock, общий для всех экземпляров сервиса
+    static final long RELAY_LOCK_KEY = "catalogue.t_product_change".hashCode();
+
+    private final ProductChangeRepository productChangeRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final VersionedProductCache productsCache;
+
+    private final ProductSecondLevelCache productSecondLevelCache;
+
+    private final Duration emitterTimeout;
+
+    private final Duration retention;
+
+    private final int subscriberBufferSize;
+
+    private final long subscriberStallTimeoutNanos;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    // проходы по расписанию и вызванные вручную выполняются по очереди, позиция ретранслятора только растёт
+    private final ReentrantLock relayLock = new ReentrantLock();
+
+    // до этой позиции изменения разложены по очередям подписчиков, -1 - прохода ещё не было
+    private volatile long relayPosition = -1;
+
+    public ProductChangeRelay(ProductChangeRepository productChangeRepository,
+                              TransactionTemplate transactionTemplate,
+                              VersionedProductCache productsCache,
+                              ProductSecondLevelCache productSecondLevelCache,
+                              @Value("${catalogue.products.changes.emitter-timeout:30m}") Duration emitterTimeout,
+                              @Value("${catalogue.products.changes.retention:7d}") Duration retention,
+                              @Value("${catalogue.products.changes.subscriber-buffer-size:1000}")
+                              int subscriberBufferSize,
+                              @Value("${catalogue.products.changes.subscriber-stall-timeout:30s}")
+                              Duration subscriberStallTimeout) {
+        this.productChangeRepository = productChangeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.productsCache = productsCache;
+        this.productSecondLevelCache = productSecondLevelCache;
+        this.emitterTimeout = emitterTimeout;
+        this.retention = retention;
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.subscriberStallTimeoutNanos = subscriberStallTimeout.toNanos();
+    }
+
+    // без lastEventId клиент получает только изменения, опубликованные после подписки
+    public SseEmitter subscribe(Long lastEventId) {
+        var emitter = new SseEmitter(this.emitterTimeout.toMillis());
+        var subscription = new Subscription(emitter,
+                lastEventId != null ? lastEventId : this.productChangeRepository.findLastPosition(),
+                this.subscriberBufferSize);
+        emitter.onCompletion(() -> this.unsubscribe(subscription));
+        // клиент переподключится сам и продолжит с Last-Event-ID
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(exception -> this.unsubscribe(subscription));
+        // отправка блокируется, пока клиент не примет данные: виртуальный поток на подписчика этого не боится
+        subscription.sender = Thread.ofVirtual()
+                .name("product-changes-sender")
+                .unstarted(() -> this.sendEvents(subscription));
+        this.subscriptions.add(subscription);
+        subscription.sender.start();
+        return emitter;
+    }
+
+    // проход читает из t_product_change только новые изменения и раскладывает их по очередям подписчиков,
+    // отправкой занимаются их потоки, поэтому медленный клиент не задерживает ни остальных, ни следующий проход.
+    // Отставший подписчик (переполнил очередь или пришёл со старым Last-Event-ID) дочитывает пропущенное сам
+    @Scheduled(fixedDelayString = "${catalogue.products.changes.poll-interval:PT0.5S}")
+    public void relay() {
+        this.transactionTemplate.executeWithoutResult(status -> {
+            if (this.productChangeRepository.tryAdvisoryLock(RELAY_LOCK_KEY)) {
+                this.productChangeRepository.assignPositions(RELAY_BATCH_SIZE);
+            }
+        });
+
+        this.relayLock.lock();
+        try {
+            // подписчики, появившиеся до первого прохода, дочитают изменения до этой позиции сами
+            if (this.relayPosition < 0) {
+                this.relayPosition = this.productChangeRepository.findLastPosition();
+            }
+
+            long now = System.nanoTime();
+            for (Subscription subscription : this.subscriptions) {
+                if (subscription.isStalled(now, this.subscriberStallTimeoutNanos)) {
+                    this.dropLaggard(subscription);
+                }
+            }
+
+            List<ProductChange> changes;
+            do {
+                changes = this.productChangeRepository.findAllAfterPosition(this.relayPosition, RELAY_BATCH_SIZE);
+                for (ProductChange change : changes) {
+                    // позиция сдвигается до раскладки: подписчик, догоняющий ретранслятор, перейдёт на очередь,
+                    // только прочитав это изменение сам, иначе получит его из очереди
+                    this.relayPosition = change.getPosition();
+                    this.evictCachedProduct(change);
+                    for (Subscription subscription : this.subscriptions) {
+                        subscription.offer(change);
+                    }
+                }
+            } while (changes.size() == RELAY_BATCH_SIZE);
+        } finally {
+            this.relayLock.unlock();
+        }
+    }
+
+    // повтор по Last-Event-ID возможен только в пределах этого срока
+    @Scheduled(fixedDelayString = "${catalogue.products.changes.cleanup-interval:PT1H}")
+    public void deletePublishedChanges() {
+        int deleted = this.transactionTemplate.execute(status ->
+                this.productChangeRepository.deletePublishedBefore(Instant.now().minus(this.retention)));
+        if (deleted > 0) {
+            log.debug("Deleted {} published product changes", deleted);
+        }
+    }
+
+    // по изменениям старше срока хранения уже нельзя восстановить, какие товары были удалены
+    public boolean retainsChangesSince(Instant since) {
+        return !since.isBefore(Instant.now().minus(this.retention));
+    }
+
+    // комментарий SSE не виден клиенту, но не даёт прокси закрыть простаивающее соединение
+    // и обнаруживает отключившихся клиентов, которым давно нечего было отправить
+    @Scheduled(fixedDelayString = "${catalogue.products.changes.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        for (Subscription subscription : this.subscriptions) {
+            subscription.offerHeartbeat();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        this.subscriptions.forEach(subscription -> subscription.emitter.complete());
+    }
+
+    // изменения других экземпляров, в том числе работающих на R2DBC, проходят мимо кэшей этого экземпляра;
+    // собственные изменения сбрасываются повторно, что лишь стоит одного промаха
+    private void evictCachedProduct(ProductChange change) {
+        this.productSecondLevelCache.evictChangedProduct(change.getProductId());
+        switch (change.getType()) {
+            case UPDATED -> this.productsCache.evict(change.getProductId(), change.getVersion());
+            case DELETED -> this.productsCache.evict(change.getProductId(), Integer.MAX_VALUE);
+            case CREATED -> {
+                // созданного товара в кэше ещё нет
+            }
+        }
+    }
+
+    // клиент, который не принимает данные, занимает соединение и поток отправки; если он жив, то
+    // переподключится с Last-Event-ID и дочитает пропущенное из t_product_change
+    private void dropLaggard(Subscription subscription) {
+        log.debug("Product changes subscriber has not accepted an event for {} ms, closing its stream",
+                Duration.ofNanos(this.subscriberStallTimeoutNanos).toMillis());
+        this.unsubscribe(subscription);
+        subscription.emitter.complete();
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        this.subscriptions.remove(subscription);
+        if (subscription.sender != null) {
+            subscription.sender.interrupt();
+        }
+    }
+
+    private void sendEvents(Subscription subscription) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                SseEmitter.SseEventBuilder event = subscription.live
+                        ? subscription.events.take()
+                        : subscription.events.poll();
+                if (event != null) {
+                    subscription.send(event);
+                } else {
+                    this.catchUp(subscription);
+                }
+            }
+        } catch (InterruptedException exception) {
+            // подписка завершена
+        } catch (IOException | IllegalStateException exception) {
+            // клиент отключился, подписка будет удалена обработчиком завершения
+            this.unsubscribe(subscription);
+        }
+    }
+
+    // очередь уже отправлена, следующая порция читается только после отправки предыдущей,
+    // поэтому отставший подписчик нагружает базу не быстрее, чем принимает события
+    private void catchUp(Subscription subscription) throws IOException, InterruptedException {
+        List<ProductChange> changes = this.productChangeRepository.findAllAfterPosition(subscription.position,
+                RELAY_BATCH_SIZE);
+        for (ProductChange change : changes) {
+            subscription.send(event(change));
+            subscription.position = change.getPosition();
+        }
+        // дочитывать нечего, но ретранслятор ещё не сделал первый проход
+        if (changes.size() < RELAY_BATCH_SIZE && !subscription.goLive(this.relayPosition) && changes.isEmpty()) {
+            Thread.sleep(CATCH_UP_RETRY_INTERVAL);
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder event(ProductChange change) {
+        return SseEmitter.event()
+                .id(String.valueOf(change.getPosition()))
+                .name(EVENT_NAME)
+                .data(change, MediaType.APPLICATION_JSON);
+    }
+
+    private static final class Subscription {
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<SseEmitter.SseEventBuilder> events;
+
+        // ретранслятор не должен положить изменение в очередь, пока подписчик решает, догнал ли он его
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // позиция последнего изменения, поставленного в очередь или прочитанного из t_product_change
+        private volatile long position;
+
+        // изменения кладёт в очередь ретранслятор, иначе поток отправки дочитывает их из t_product_change
+        private volatile boolean live;
+
+        private volatile Thread sender;
+
+        // когда началась текущая отправка, 0 - поток отправки ничего не отправляет
+        private volatile long sendingSince;
+
+        private Subscription(SseEmitter emitter, long position, int bufferSize) {
+            this.emitter = emitter;
+            this.position = position;
+            this.events = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        // в заполненную очередь изменение не кладётся, иначе в ней появился бы пропуск:
+        // подписчик дочитает его сам, когда отправит очередь
+        private void offer(ProductChange change) {
+            this.lock.lock();
+            try {
+                if (!this.live || this.position >= change.getPosition()) {
+                    return;
+                }
+                if (this.events.offer(event(change))) {
+                    this.position = change.getPosition();
+                } else {
+                    this.live = false;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private boolean goLive(long relayPosition) {
+            this.lock.lock();
+            try {
+                this.live = relayPosition >= 0 && this.position >= relayPosition;
+                return this.live;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            this.sendingSince = System.nanoTime() | 1;
+            try {
+                this.emitter.send(event);
+            } finally {
+                this.sendingSince = 0;
+            }
+        }
+
+        private boolean isStalled(long now, long stallTimeoutNanos) {
+            long since = this.sendingSince;
+            return since != 0 && now - since > stallTimeoutNanos;
+        }
+
+        // пока в очереди есть изменения, соединение и так не простаивает
+        private void offerHeartbeat() {
+            if (this.events.isEmpty()) {
+                this.events.offer(SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+}
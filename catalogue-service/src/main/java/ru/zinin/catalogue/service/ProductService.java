@@ -1,18 +1,46 @@
 package ru.zinin.catalogue.service;
 
 import ru.zinin.catalogue.entity.Product;
-
+import ru.zinin.catalogue.entity.ProductExport;
+import ru.zinin.catalogue.entity.ProductImportResult;
+import ru.zinin.catalogue.entity.ProductImportRow;
+import ru.zinin.catalogue.entity.ProductSearchResult;
+import ru.zinin.catalogue.entity.ProductSuggestion;
+
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface ProductService {
 
-    Iterable<Product> findAllProducts(String filter);
+    ProductsPage findAllProducts(String filter, Integer after, int limit);
+
+    ProductSummariesPage findAllProductSummaries(String filter, Integer after, int limit);
+
+    List<ProductSearchResult> searchProducts(String query, int page, int size);
+
+    List<ProductSuggestion> suggestProducts(String prefix, int limit);
+
+    void streamProducts(String filter, Consumer<Product> consumer);
+
+    // updatedSince == null означает полную выгрузку
+    void exportProducts(Instant updatedSince, Consumer<ProductExport> consumer);
+
+    ProductsByIds findProductsByIds(List<Integer> ids);
 
     Product createProduct(String title, String details);
 
+    List<Product> createProducts(List<Product> products);
+
+    // строки без id создаются, с id - обновляют существующие товары
+    ProductImportResult importProducts(Stream<ProductImportRow> rows, int maxReportedLines);
+
     Optional<Product> findProduct(Integer productId);
 
-    void updateProduct(Integer id, String title, String details);
+    // version == null означает обновление без проверки версии
+    Product updateProduct(Integer id, String title, String details, Integer version);
 
-    void deleteProduct(Integer id);
+    void deleteProduct(Integer id, Integer version);
 }
@@ -0,0 +1,15 @@
+package ru.zinin.catalogue.service;
+
+import ru.zinin.catalogue.entity.ProductSummary;
+
+import java.util.List;
+
+public record ProductSummariesPage(
+        List<ProductSummary> products,
+        Integer nextAfter
+) {
+
+    public boolean hasNext() {
+        return this.nextAfter != null;
+    }
+}
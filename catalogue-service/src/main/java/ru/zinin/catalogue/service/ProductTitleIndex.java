@@ -0,0 +1,203 @@
+package ru.zinin.catalogue.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.zinin.catalogue.entity.ProductChange;
+import ru.zinin.catalogue.entity.ProductChangeType;
+import ru.zinin.catalogue.entity.ProductExport;
+import ru.zinin.catalogue.entity.ProductSuggestion;
+import ru.zinin.catalogue.repository.ProductChangeRepository;
+import ru.zinin.catalogue.repository.ProductExportRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// подсказки по началу названия без обращения к базе: названия в нижнем регистре хранятся в отсортированной карте,
+// товары с общим префиксом идут в ней подряд; на товар приходится одна запись длиной не больше 50 символов.
+// Изменения других экземпляров сервиса, в том числе работающих на R2DBC, приходят из t_product_change
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "catalogue.persistence", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ProductTitleIndex {
+
+    static final int REBUILD_CHUNK_SIZE = 1000;
+
+    static final int CHANGES_BATCH_SIZE = 500;
+
+    // меньше любого символа названия: товары с одинаковым названием упорядочены по id
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final ProductExportRepository productExportRepository;
+
+    private final ProductChangeRepository productChangeRepository;
+
+    // изменяет индекс один поток за раз, обращения к базе выполняются до захвата блокировки
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // чтение идёт без блокировок, перестроенный индекс подменяется целиком
+    private volatile Entries entries = new Entries();
+
+    // позиция последнего применённого изменения, до первого перестроения изменения не применяются
+    private volatile long position = -1;
+
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        String foldedPrefix = fold(prefix);
+        List<ProductSuggestion> suggestions = new ArrayList<>(limit);
+        for (Map.Entry<String, ProductSuggestion> entry : this.entries.byKey.tailMap(foldedPrefix).entrySet()) {
+            if (suggestions.size() == limit || !entry.getKey().startsWith(foldedPrefix)) {
+                break;
+            }
+            suggestions.add(entry.getValue());
+        }
+        return suggestions;
+    }
+
+    // индекс меняется только после фиксации, чтобы в подсказки не попадали откатившиеся изменения
+    public void putAfterCommit(Integer id, String title) {
+        afterCommit(() -> this.put(id, title));
+    }
+
+    public void putAllAfterCommit(List<ProductSuggestion> products) {
+        afterCommit(() -> products.forEach(product -> this.put(product.id(), product.title())));
+    }
+
+    public void removeAfterCommit(Integer id) {
+        afterCommit(() -> this.remove(id));
+    }
+
+    public void rebuildAfterCommit() {
+        afterCommit(this::rebuild);
+    }
+
+    // позиция запоминается до чтения товаров: изменения после неё применяются к новому индексу повторно,
+    // поэтому запись, зафиксированная во время перестроения, не теряется при подмене
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long rebuiltPosition = this.productChangeRepository.findLastPosition();
+        var rebuilt = new Entries();
+        int after = 0;
+        List<ProductExport> products;
+        do {
+            products = this.productExportRepository.findAllUpdatedSinceAfter(null, after, REBUILD_CHUNK_SIZE);
+            products.forEach(product -> rebuilt.put(product.id(), product.title()));
+            if (!products.isEmpty()) {
+                after = products.getLast().id();
+            }
+        } while (products.size() == REBUILD_CHUNK_SIZE);
+
+        this.lock.lock();
+        try {
+            this.entries = rebuilt;
+            this.position = rebuiltPosition;
+        } finally {
+            this.lock.unlock();
+        }
+        log.info("Product title index contains {} products", rebuilt.keysById.size());
+    }
+
+    // позиции изменениям раздаёт ProductChangeRelay, изменение попадает сюда после его очередного прохода
+    @Scheduled(fixedDelayString = "${catalogue.products.suggestions.poll-interval:PT1S}")
+    public void applyChanges() {
+        List<ProductChange> changes;
+        do {
+            long after = this.position;
+            if (after < 0) {
+                return;
+            }
+            changes = this.productChangeRepository.findAllAfterPosition(after, CHANGES_BATCH_SIZE);
+
+            this.lock.lock();
+            try {
+                // индекс перестроен, пока читалась пачка: она будет прочитана заново от новой позиции
+                if (this.position != after) {
+                    return;
+                }
+                changes.forEach(this::apply);
+                if (!changes.isEmpty()) {
+                    this.position = changes.getLast().getPosition();
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        } while (changes.size() == CHANGES_BATCH_SIZE);
+    }
+
+    void put(Integer id, String title) {
+        this.lock.lock();
+        try {
+            this.entries.put(id, title);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void remove(Integer id) {
+        this.lock.lock();
+        try {
+            this.entries.remove(id);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void apply(ProductChange change) {
+        if (change.getType() == ProductChangeType.DELETED) {
+            this.entries.remove(change.getProductId());
+        } else {
+            this.entries.put(change.getProductId(), change.getTitle());
+        }
+    }
+
+    static String fold(String value) {
+        return value.strip().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Entries {
+
+        private final ConcurrentSkipListMap<String, ProductSuggestion> byKey = new ConcurrentSkipListMap<>();
+
+        private final Map<Integer, String> keysById = new ConcurrentHashMap<>();
+
+        void put(Integer id, String title) {
+            String key = fold(title) + KEY_SEPARATOR + id;
+            String previousKey = this.keysById.put(id, key);
+            if (previousKey != null && !previousKey.equals(key)) {
+                this.byKey.remove(previousKey);
+            }
+            this.byKey.put(key, new ProductSuggestion(id, title));
+        }
+
+        void remove(Integer id) {
+            String key = this.keysById.remove(id);
+            if (key != null) {
+                this.byKey.remove(key);
+            }
+        }
+    }
+}
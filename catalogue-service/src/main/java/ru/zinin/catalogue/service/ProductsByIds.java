@@ -0,0 +1,35 @@
+package ru.zinin.catalogue.service;
+
+import ru.zinin.catalogue.entity.Product;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public record ProductsByIds(
+        List<Product> products,
+        List<Integer> missingIds
+) {
+
+    // база возвращает строки в произвольном порядке, а клиенту нужен порядок запроса
+    static ProductsByIds inRequestOrder(Set<Integer> ids, List<Product> found) {
+        Map<Integer, Product> productsById = new HashMap<>();
+        for (Product product : found) {
+            productsById.put(product.getId(), product);
+        }
+
+        List<Product> products = new ArrayList<>(productsById.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : ids) {
+            Product product = productsById.get(id);
+            if (product != null) {
+                products.add(product);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new ProductsByIds(products, missingIds);
+    }
+}
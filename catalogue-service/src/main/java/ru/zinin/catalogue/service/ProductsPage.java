@@ -0,0 +1,15 @@
+package ru.zinin.catalogue.service;
+
+import ru.zinin.catalogue.entity.Product;
+
+import java.util.List;
+
+public record ProductsPage(
+        List<Product> products,
+        Integer nextAfter
+) {
+
+    public boolean hasNext() {
+        return this.nextAfter != null;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.zinin.catalogue.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.time.Duration;
+
+// свойства совпадают с автоконфигурацией Spring Boot, которая в приложении отключена
+@Configuration
+@ConditionalOnProperty(name = "catalogue.persistence", havingValue = "r2dbc")
+public class R2dbcBeans {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory(
+            @Value("${spring.r2dbc.url}") String url,
+            @Value("${spring.r2dbc.username}") String username,
+            @Value("${spring.r2dbc.password}") String password,
+            @Value("${spring.r2dbc.pool.initial-size:10}") int initialSize,
+            @Value("${spring.r2dbc.pool.max-size:10}") int maxSize,
+            @Value("${spring.r2dbc.pool.max-acquire-time:5s}") Duration maxAcquireTime) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name("catalogue")
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                // запросы сверх размера пула ждут соединение в очереди, не занимая потоков
+                .maxAcquireTime(maxAcquireTime)
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    @Bean
+    public R2dbcTransactionManager transactionManager(ConnectionFactory connectionFactory) {
+        return new R2dbcTransactionManager(connectionFactory);
+    }
+
+    @Bean
+    public TransactionalOperator transactionalOperator(ReactiveTransactionManager transactionManager) {
+        return TransactionalOperator.create(transactionManager);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.zinin.catalogue.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// правила доступа те же, что в SecurityBeans; пределы одновременных запросов в профиле r2dbc задаёт пул соединений
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityBeans {
+
+    // JwtDecoder синхронный: проверка подписи ещё не закэшированного токена занимает поток на время RSA,
+    // поэтому выполняется не на event loop
+    @Bean
+    public ReactiveJwtDecoder reactiveJwtDecoder(JwtDecoder jwtDecoder) {
+        return token -> Mono.fromCallable(() -> jwtDecoder.decode(token))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                .authorizeExchange(configurer -> configurer
+                        .pathMatchers(HttpMethod.GET, "/actuator/prometheus").hasAuthority("SCOPE_metrics")
+                        .pathMatchers(HttpMethod.POST, "/catalogue-api/products/by-ids")
+                        .hasAuthority("SCOPE_view_catalogue")
+                        .pathMatchers(HttpMethod.POST, "/catalogue-api/products")
+                        .hasAuthority("SCOPE_edit_catalogue")
+                        .pathMatchers(HttpMethod.PATCH, "/catalogue-api/products/{productId:\\d+}")
+                        .hasAuthority("SCOPE_edit_catalogue")
+                        .pathMatchers(HttpMethod.DELETE, "/catalogue-api/products/{productId:\\d+}")
+                        .hasAuthority("SCOPE_edit_catalogue")
+                        .pathMatchers(HttpMethod.GET).hasAuthority("SCOPE_view_catalogue")
+                        .anyExchange().denyAll())
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .oauth2ResourceServer(customizer -> customizer.jwt(Customizer.withDefaults()))
+                .build();
+    }
+}
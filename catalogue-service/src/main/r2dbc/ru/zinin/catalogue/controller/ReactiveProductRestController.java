@@ -0,0 +1,81 @@
+package ru.zinin.catalogue.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.MessageSource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import ru.zinin.catalogue.controller.payload.UpdateProductPayload;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.service.ReactiveProductService;
+
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@RequestMapping("catalogue-api/products/{productId:\\d+}")
+public class ReactiveProductRestController {
+
+    private final ReactiveProductService productService;
+    private final MessageSource messageSource;
+
+    @GetMapping
+    public Mono<ResponseEntity<Product>> findProduct(@PathVariable("productId") Integer productId) {
+        return this.productService.findProduct(productId)
+                .switchIfEmpty(Mono.error(() -> new NoSuchElementException("catalogue.errors.product.not_found")))
+                .map(product -> ResponseEntity.ok()
+                        .eTag(ProductETags.of(product))
+                        .body(product));
+    }
+
+    @PatchMapping
+    public Mono<ResponseEntity<Void>> updateProduct(
+            @PathVariable("productId") Integer productId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody UpdateProductPayload payload) {
+        return this.productService.updateProduct(productId, payload.title(), payload.details(),
+                        ProductETags.versionOf(ifMatch))
+                .map(product -> ResponseEntity.noContent()
+                        .eTag(ProductETags.of(product))
+                        .build());
+    }
+
+    @DeleteMapping
+    public Mono<ResponseEntity<Void>> deleteProduct(
+            @PathVariable("productId") Integer productId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return this.productService.deleteProduct(productId, ProductETags.versionOf(ifMatch))
+                .then(Mono.fromSupplier(() -> ResponseEntity.noContent().build()));
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<ProblemDetail> handleNoSuchElementException(NoSuchElementException exception, Locale locale) {
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(
+                HttpStatus.NOT_FOUND, this.messageSource.getMessage(exception.getMessage(), new Object[0],
+                        exception.getMessage(), locale)
+        );
+
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(problemDetail);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ProblemDetail> handleOptimisticLockingFailureException(Locale locale) {
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(
+                HttpStatus.PRECONDITION_FAILED, this.messageSource.getMessage(
+                        "catalogue.errors.product.version_mismatch", new Object[0],
+                        "catalogue.errors.product.version_mismatch", locale)
+        );
+
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(problemDetail);
+    }
+}
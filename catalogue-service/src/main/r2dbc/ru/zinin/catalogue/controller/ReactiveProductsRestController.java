@@ -0,0 +1,80 @@
+package ru.zinin.catalogue.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import ru.zinin.catalogue.controller.payload.NewProductPayload;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.service.ProductsByIds;
+import ru.zinin.catalogue.service.ReactiveProductService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// тот же контракт, что у ProductsRestController, для профиля r2dbc; выгрузки, импорт, поиск и поток изменений
+// остаются только у варианта на JPA
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("catalogue-api/products")
+@RequiredArgsConstructor
+public class ReactiveProductsRestController {
+
+    private final ReactiveProductService productService;
+    @GetMapping
+    public Mono<ResponseEntity<List<?>>> findAllProducts(
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "view", required = false) String view) {
+        Integer afterId = after == null || after.isBlank() ? null : ProductsCursor.decode(after);
+        int pageLimit = limit == null
+                ? ProductsRestController.DEFAULT_PAGE_LIMIT
+                : Math.clamp(limit, 1, ProductsRestController.MAX_PAGE_LIMIT);
+
+        if (view == null || view.isBlank() || view.equals(ProductsRestController.FULL_VIEW)) {
+            return this.productService.findAllProducts(filter, afterId, pageLimit)
+                    .map(page -> ProductsRestController.productsPage(page.products(),
+                            ProductETags.of(page.products()), page.nextAfter()));
+        } else if (view.equals(ProductsRestController.SUMMARY_VIEW)) {
+            return this.productService.findAllProductSummaries(filter, afterId, pageLimit)
+                    .map(page -> ProductsRestController.productsPage(page.products(),
+                            ProductETags.ofSummaries(page.products()), page.nextAfter()));
+        } else {
+            throw new BadRequestException("catalogue.errors.products.view_is_invalid");
+        }
+    }
+
+    @GetMapping("by-ids")
+    public Mono<ProductsByIds> findProductsByIds(@RequestParam("ids") List<Integer> ids) {
+        return this.findProductsByIdsList(ids);
+    }
+
+    @PostMapping("by-ids")
+    public Mono<ProductsByIds> findProductsByIdsList(@RequestBody List<Integer> ids) {
+        if (ids.size() > ProductsRestController.MAX_IDS_COUNT) {
+            throw new BadRequestException("catalogue.errors.products.too_many_ids");
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new BadRequestException("catalogue.errors.products.ids_are_invalid");
+        }
+
+        return this.productService.findProductsByIds(ids);
+    }
+
+    // ошибки проверки тела запроса обрабатывает BadRequestControllerAdvice
+    @PostMapping
+    public Mono<ResponseEntity<Product>> createProduct(@RequestBody @Valid NewProductPayload payload,
+                                                       UriComponentsBuilder uriBuilder) {
+        return this.productService.createProduct(payload.title(), payload.details())
+                .map(product -> ResponseEntity.created(uriBuilder
+                                .replacePath("/catalogue-api/products/{productId}")
+                                .build(Map.of("productId", product.getId())))
+                        .eTag(ProductETags.of(product))
+                        .body(product));
+    }
+}
@@ -0,0 +1,65 @@
+package ru.zinin.catalogue.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import ru.zinin.catalogue.repository.ProductChangeRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// в режиме R2DBC потока изменений нет, но позиции раздаются так же, как в ProductChangeRelay: по ним изменения
+// читают экземпляры на JPA, а строка без позиции не удаляется по сроку хранения
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "catalogue.persistence", havingValue = "r2dbc")
+public class R2dbcProductChangeOutbox {
+
+    private final DatabaseClient databaseClient;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final Duration retention;
+
+    public R2dbcProductChangeOutbox(DatabaseClient databaseClient, TransactionalOperator transactionalOperator,
+                                    @Value("${catalogue.products.changes.retention:7d}") Duration retention) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.retention = retention;
+    }
+
+    // та же блокировка, что у ProductChangeRelay: позиции раздаёт один экземпляр за раз, в каком бы режиме он ни был
+    @Scheduled(fixedDelayString = "${catalogue.products.changes.poll-interval:PT0.5S}")
+    public Mono<Void> assignPositions() {
+        return this.databaseClient.sql(ProductChangeRepository.TRY_ADVISORY_LOCK)
+                .bind("key", ProductChangeRelay.RELAY_LOCK_KEY)
+                .map(row -> row.get(0, Boolean.class))
+                .one()
+                .filter(Boolean.TRUE::equals)
+                .flatMap(locked -> this.databaseClient.sql(ProductChangeRepository.ASSIGN_POSITIONS)
+                        .bind("limit", ProductChangeRelay.RELAY_BATCH_SIZE)
+                        .fetch()
+                        .rowsUpdated())
+                .then()
+                .as(this.transactionalOperator::transactional);
+    }
+
+    @Scheduled(fixedDelayString = "${catalogue.products.changes.cleanup-interval:PT1H}")
+    public Mono<Void> deletePublishedChanges() {
+        return Mono.defer(() -> this.databaseClient.sql(ProductChangeRepository.DELETE_PUBLISHED_BEFORE)
+                        .bind("before", Instant.now().minus(this.retention))
+                        .fetch()
+                        .rowsUpdated())
+                .doOnNext(deleted -> {
+                    if (deleted > 0) {
+                        log.debug("Deleted {} published product changes", deleted);
+                    }
+                })
+                .then();
+    }
+}
@@ -0,0 +1,255 @@
+package ru.zinin.catalogue.service;
+
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductChangeType;
+import ru.zinin.catalogue.entity.ProductSummary;
+import ru.zinin.catalogue.repository.ProductChangeRepository;
+import ru.zinin.catalogue.repository.ProductRepository;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// запросы те же, что у ProductRepository, поэтому планы выполнения и индексы у обоих режимов общие
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "catalogue.persistence", havingValue = "r2dbc")
+public class R2dbcProductService implements ReactiveProductService {
+
+    // как allocationSize у Product и шаг t_product_id_seq
+    static final int ID_ALLOCATION_SIZE = 50;
+
+    // идентификаторы выделяются так же, как у pooled optimizer Hibernate: nextval - верхняя граница блока,
+    // поэтому блоки экземпляров на R2DBC и на JPA не пересекаются, а вставка не расходует блок целиком
+    private static final String NEXT_ID_BLOCK = "select nextval('catalogue.t_product_id_seq')";
+
+    private static final String INSERT_PRODUCT = """
+            insert into catalogue.t_product(id, c_title, c_details)
+            values (:id, :title, :details)
+            returning c_version""";
+
+    private final DatabaseClient databaseClient;
+
+    // изменения пишутся в той же транзакции, что и товары; позиции им раздаёт R2dbcProductChangeOutbox
+    private final TransactionalOperator transactionalOperator;
+
+    private final AtomicReference<IdBlock> idBlock = new AtomicReference<>(new IdBlock(1, 0));
+
+    @Override
+    public Mono<ProductsPage> findAllProducts(String filter, Integer after, int limit) {
+        return this.findPage(filter, after, limit, ProductRepository.FIND_ALL_AFTER,
+                ProductRepository.FIND_ALL_BY_TITLE_LIKE_IGNORE_CASE_AFTER,
+                ProductRepository.FIND_ALL_BY_TITLE_CONTAINING_AFTER, R2dbcProductService::product,
+                (products, scanEnd) -> products.size() > limit
+                        ? new ProductsPage(products.subList(0, limit), products.get(limit - 1).getId())
+                        : new ProductsPage(products, scanEnd));
+    }
+
+    @Override
+    public Mono<ProductSummariesPage> findAllProductSummaries(String filter, Integer after, int limit) {
+        return this.findPage(filter, after, limit, ProductRepository.FIND_ALL_SUMMARIES_AFTER,
+                ProductRepository.FIND_ALL_SUMMARIES_BY_TITLE_LIKE_IGNORE_CASE_AFTER,
+                ProductRepository.FIND_ALL_SUMMARIES_BY_TITLE_CONTAINING_AFTER, R2dbcProductService::summary,
+                (products, scanEnd) -> products.size() > limit
+                        ? new ProductSummariesPage(products.subList(0, limit), products.get(limit - 1).getId())
+                        : new ProductSummariesPage(products, scanEnd));
+    }
+
+    // запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница; короткий фильтр проверяется
+    // в окне из DefaultProductService.SHORT_FILTER_SCAN_SIZE товаров, конец окна передаётся в toPage
+    private <T, P> Mono<P> findPage(String filter, Integer after, int limit, String findAll,
+                                    String findAllByTitleLike, String findAllByTitleContaining,
+                                    Function<Readable, T> mapper, BiFunction<List<T>, Integer, P> toPage) {
+        int afterId = after == null ? 0 : after;
+        if (filter != null && !filter.isBlank() && !DefaultProductService.TRIGRAM_PATTERN.matcher(filter).find()) {
+            return this.databaseClient.sql(ProductRepository.FIND_SHORT_FILTER_SCAN_END)
+                    .bind("after", afterId)
+                    .bind("scanSize", DefaultProductService.SHORT_FILTER_SCAN_SIZE)
+                    .map(row -> Optional.ofNullable(row.get(0, Integer.class)))
+                    .one()
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(scanEnd -> this.databaseClient.sql(findAllByTitleContaining)
+                            .bind("filter", filter)
+                            .bind("after", afterId)
+                            .bind("scanEnd", scanEnd.orElse(Integer.MAX_VALUE))
+                            .bind("limit", limit + 1)
+                            .map(mapper)
+                            .all()
+                            .collectList()
+                            .map(products -> toPage.apply(products, scanEnd.orElse(null))));
+        }
+
+        DatabaseClient.GenericExecuteSpec query;
+        if (filter != null && !filter.isBlank()) {
+            query = this.databaseClient.sql(findAllByTitleLike)
+                    .bind("filter", "%" + DefaultProductService.escapeLikePattern(filter) + "%");
+        } else {
+            query = this.databaseClient.sql(findAll);
+        }
+
+        return query.bind("after", afterId)
+                .bind("limit", limit + 1)
+                .map(mapper)
+                .all()
+                .collectList()
+                .map(products -> toPage.apply(products, null));
+    }
+
+    @Override
+    public Mono<ProductsByIds> findProductsByIds(List<Integer> ids) {
+        Set<Integer> uniqueIds = new LinkedHashSet<>(ids);
+        if (uniqueIds.isEmpty()) {
+            return Mono.just(new ProductsByIds(List.of(), List.of()));
+        }
+
+        return this.databaseClient.sql(ProductRepository.FIND_ALL_BY_IDS)
+                .bind("ids", uniqueIds.toArray(Integer[]::new))
+                .map(R2dbcProductService::product)
+                .all()
+                .collectList()
+                .map(products -> ProductsByIds.inRequestOrder(uniqueIds, products));
+    }
+
+    @Override
+    public Mono<Product> createProduct(String title, String details) {
+        return this.nextId()
+                .flatMap(id -> bindNullable(this.databaseClient.sql(INSERT_PRODUCT).bind("id", id).bind("title", title),
+                        "details", details, String.class)
+                        .map(row -> new Product(id, title, details, row.get("c_version", Integer.class)))
+                        .one())
+                .flatMap(product -> this.insertChange(product.getId(), ProductChangeType.CREATED,
+                        title, details, product.getVersion()).thenReturn(product))
+                .as(this.transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Product> findProduct(Integer productId) {
+        return this.databaseClient.sql(ProductRepository.FIND_BY_ID)
+                .bind("id", productId)
+                .map(R2dbcProductService::product)
+                .one();
+    }
+
+    @Override
+    public Mono<Product> updateProduct(Integer id, String title, String details, Integer version) {
+        DatabaseClient.GenericExecuteSpec update = version == null
+                ? this.databaseClient.sql(ProductRepository.UPDATE_PRODUCT)
+                : this.databaseClient.sql(ProductRepository.UPDATE_PRODUCT_IF_VERSION).bind("version", version);
+
+        return bindNullable(update.bind("id", id).bind("title", title), "details", details, String.class)
+                .map(row -> new Product(id, title, details, row.get("c_version", Integer.class)))
+                .one()
+                .switchIfEmpty(Mono.defer(() -> this.writeFailure(id, version)))
+                .flatMap(product -> this.insertChange(id, ProductChangeType.UPDATED,
+                        title, details, product.getVersion()).thenReturn(product))
+                .as(this.transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Void> deleteProduct(Integer id, Integer version) {
+        DatabaseClient.GenericExecuteSpec delete = version == null
+                ? this.databaseClient.sql(ProductRepository.DELETE_PRODUCT)
+                : this.databaseClient.sql(ProductRepository.DELETE_PRODUCT_IF_VERSION).bind("version", version);
+
+        return delete.bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(deleted -> deleted == 0
+                        ? this.writeFailure(id, version)
+                        : this.insertChange(id, ProductChangeType.DELETED, null, null, null))
+                .then()
+                .as(this.transactionalOperator::transactional);
+    }
+
+    private Mono<Integer> nextId() {
+        return Mono.defer(() -> {
+            IdBlock block;
+            while ((block = this.idBlock.get()).next() <= block.last()) {
+                if (this.idBlock.compareAndSet(block, new IdBlock(block.next() + 1, block.last()))) {
+                    return Mono.just(block.next());
+                }
+            }
+            return this.databaseClient.sql(NEXT_ID_BLOCK)
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(last -> {
+                        // первое значение последовательности меньше шага, как и Hibernate, его не расширяем вниз
+                        int first = (int) Math.max(1, last - ID_ALLOCATION_SIZE + 1);
+                        // остаток блока, полученного одновременно с другим запросом, пропадает, но не повторяется
+                        this.idBlock.set(new IdBlock(first + 1, last.intValue()));
+                        return first;
+                    });
+        });
+    }
+
+    private Mono<Void> insertChange(int productId, ProductChangeType type, String title, String details,
+                                    Integer version) {
+        DatabaseClient.GenericExecuteSpec insert = this.databaseClient.sql(ProductChangeRepository.INSERT_CHANGE)
+                .bind("productId", productId)
+                .bind("type", type.name());
+        insert = bindNullable(insert, "title", title, String.class);
+        insert = bindNullable(insert, "details", details, String.class);
+        return bindNullable(insert, "version", version, Integer.class).then();
+    }
+
+    // bind не принимает null, а для bindNull драйверу нужен тип параметра
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec, String name,
+                                                                  Object value, Class<?> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    // лишний запрос выполняется только на неуспешном пути, чтобы отличить отсутствие товара от устаревшей версии
+    private <T> Mono<T> writeFailure(Integer id, Integer version) {
+        if (version == null) {
+            return Mono.error(new NoSuchElementException("catalogue.errors.product.not_found"));
+        }
+
+        return this.databaseClient.sql("select exists(select 1 from catalogue.t_product where id = :id)")
+                .bind("id", id)
+                .map(row -> row.get(0, Boolean.class))
+                .one()
+                .flatMap(exists -> Mono.error(Boolean.TRUE.equals(exists)
+                        ? new OptimisticLockingFailureException("catalogue.errors.product.version_mismatch")
+                        : new NoSuchElementException("catalogue.errors.product.not_found")));
+    }
+
+    private static Product product(Readable row) {
+        return new Product(row.get("id", Integer.class), row.get("c_title", String.class),
+                row.get("c_details", String.class), row.get("c_version", Integer.class));
+    }
+
+    private static ProductSummary summary(Readable row) {
+        return new Summary(row.get("id", Integer.class), row.get("title", String.class),
+                row.get("details", String.class), row.get("version", Integer.class));
+    }
+
+    // следующий свободный идентификатор и верхняя граница блока
+    private record IdBlock(int next, int last) {
+    }
+
+    @Value
+    static class Summary implements ProductSummary {
+
+        Integer id;
+
+        String title;
+
+        String details;
+
+        Integer version;
+    }
+}
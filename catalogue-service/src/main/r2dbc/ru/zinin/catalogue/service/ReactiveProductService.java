@@ -0,0 +1,26 @@
+package ru.zinin.catalogue.service;
+
+import reactor.core.publisher.Mono;
+import ru.zinin.catalogue.entity.Product;
+
+import java.util.List;
+
+// операции ProductService, которые нужны клиентам каталога, для профиля r2dbc
+public interface ReactiveProductService {
+
+    Mono<ProductsPage> findAllProducts(String filter, Integer after, int limit);
+
+    Mono<ProductSummariesPage> findAllProductSummaries(String filter, Integer after, int limit);
+
+    Mono<ProductsByIds> findProductsByIds(List<Integer> ids);
+
+    Mono<Product> createProduct(String title, String details);
+
+    // пустой результат означает, что товар не найден
+    Mono<Product> findProduct(Integer productId);
+
+    // version == null означает обновление без проверки версии
+    Mono<Product> updateProduct(Integer id, String title, String details, Integer version);
+
+    Mono<Void> deleteProduct(Integer id, Integer version);
+}
@@ -0,0 +1,2 @@
+alter table catalogue.t_product
+    add column c_version integer not null default 0;
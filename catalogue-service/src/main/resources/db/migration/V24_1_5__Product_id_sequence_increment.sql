@@ -0,0 +1,2 @@
+-- Hibernate выделяет идентификаторы блоками по 50 (pooled optimizer), шаг последовательности должен совпадать
+alter sequence catalogue.t_product_id_seq increment by 50;
@@ -0,0 +1,16 @@
+-- изменения товаров записываются в той же транзакции, что и сами товары;
+-- c_position назначается ретранслятором после фиксации и задаёт порядок выдачи событий
+create table catalogue.t_product_change(
+    id              bigserial primary key,
+    c_product_id    integer not null,
+    c_type          varchar(16) not null,
+    c_title         varchar(50),
+    c_details       varchar(1000),
+    c_version       integer,
+    c_created_at    timestamptz not null default now(),
+    c_position      bigint unique
+);
+
+create sequence catalogue.t_product_change_position_seq;
+
+create index idx_product_change_unpublished on catalogue.t_product_change (id) where c_position is null;
@@ -0,0 +1,19 @@
+-- время последнего изменения товара для инкрементальной выгрузки;
+-- триггер срабатывает при любом обновлении, в том числе при upsert импорта и запросах в обход Hibernate
+alter table catalogue.t_product
+    add column c_updated_at timestamptz not null default now();
+
+create function catalogue.f_product_touch_updated_at() returns trigger as
+$$
+begin
+    new.c_updated_at = now();
+    return new;
+end;
+$$ language plpgsql;
+
+create trigger trg_product_touch_updated_at
+    before update on catalogue.t_product
+    for each row
+execute function catalogue.f_product_touch_updated_at();
+
+create index idx_product_updated_at on catalogue.t_product (c_updated_at);
@@ -0,0 +1,2 @@
+-- удаления товаров для инкрементальной выгрузки каталога
+create index idx_product_change_deleted on catalogue.t_product_change (c_product_id) where c_type = 'DELETED';
@@ -0,0 +1,5 @@
+-- инкрементальная выгрузка читает порции по позиции (c_updated_at, id): с одностолбцовым индексом
+-- каждая порция заново перебирала все строки, изменённые после updatedSince
+create index idx_product_updated_at_id on catalogue.t_product (c_updated_at, id);
+
+drop index catalogue.idx_product_updated_at;
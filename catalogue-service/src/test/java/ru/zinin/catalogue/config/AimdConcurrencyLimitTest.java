@@ -0,0 +1,141 @@
+package ru.zinin.catalogue.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AimdConcurrencyLimitTest {
+
+    static final long FAST = Duration.ofMillis(10).toNanos();
+
+    static final long SLOW = Duration.ofSeconds(2).toNanos();
+
+    @Test
+    void tryAcquire_LimitIsReached_ReturnsFalse() {
+        //given
+        var limit = new AimdConcurrencyLimit(2, 1, 10, Duration.ofSeconds(1));
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+
+        //when
+        var acquired = limit.tryAcquire();
+
+        //then
+        assertFalse(acquired);
+        assertEquals(2, limit.getInFlight());
+    }
+
+    @Test
+    void release_FastRequestAndLimitIsUtilized_IncreasesLimitByOne() {
+        //given
+        var limit = new AimdConcurrencyLimit(2, 1, 10, Duration.ofSeconds(1));
+        limit.tryAcquire();
+
+        //when
+        limit.release(FAST, false);
+
+        //then
+        assertEquals(3, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void release_FastRequestAndLimitIsMostlyIdle_KeepsLimit() {
+        //given
+        var limit = new AimdConcurrencyLimit(10, 1, 20, Duration.ofSeconds(1));
+        limit.tryAcquire();
+
+        //when
+        limit.release(FAST, false);
+
+        //then
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    void release_SlowOrFailedRequest_DecreasesLimitMultiplicativelyDownToMinLimit() {
+        //given
+        var limit = new AimdConcurrencyLimit(100, 80, 200, Duration.ofSeconds(1));
+
+        //when
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+        var afterSlowRequest = limit.getLimit();
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.release(FAST, true);
+        }
+
+        //then
+        assertEquals(90, afterSlowRequest);
+        assertEquals(80, limit.getLimit());
+    }
+
+    @Test
+    void release_FastRequestsKeepComing_DoesNotExceedMaxLimit() {
+        //given
+        var limit = new AimdConcurrencyLimit(1, 1, 3, Duration.ofSeconds(1));
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.release(FAST, false);
+        }
+
+        //then
+        assertEquals(3, limit.getLimit());
+    }
+
+    @Test
+    void release_ConcurrentSlowRequests_DecreasesLimitOnce() throws Exception {
+        //given
+        var limit = new AimdConcurrencyLimit(1000, 1, 1000, Duration.ofSeconds(1));
+        for (int i = 0; i < 100; i++) {
+            limit.tryAcquire();
+        }
+        var start = new CountDownLatch(1);
+
+        //when
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 100; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                    }
+                    limit.release(SLOW, false);
+                });
+            }
+            start.countDown();
+        }
+
+        //then
+        assertEquals((int) (1000 * AimdConcurrencyLimit.BACKOFF_RATIO), limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void release_SlowRequestAfterConcurrentSlowRequestsComplete_DecreasesLimitAgain() {
+        //given
+        var limit = new AimdConcurrencyLimit(100, 1, 100, Duration.ofSeconds(1));
+        for (int i = 0; i < 3; i++) {
+            limit.tryAcquire();
+        }
+        for (int i = 0; i < 3; i++) {
+            limit.release(SLOW, false);
+        }
+
+        //when
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+
+        //then
+        assertEquals((int) (100 * AimdConcurrencyLimit.BACKOFF_RATIO * AimdConcurrencyLimit.BACKOFF_RATIO),
+                limit.getLimit());
+    }
+}
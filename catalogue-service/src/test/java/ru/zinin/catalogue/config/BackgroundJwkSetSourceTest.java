@@ -0,0 +1,103 @@
+package ru.zinin.catalogue.config;
+
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BackgroundJwkSetSourceTest {
+
+    static final URL JWK_SET_URL = url("http://localhost:8082/realms/selmag/protocol/openid-connect/certs");
+
+    @Mock
+    ResourceRetriever resourceRetriever;
+
+    BackgroundJwkSetSource jwkSetSource;
+
+    @AfterEach
+    void tearDown() {
+        if (this.jwkSetSource != null) {
+            this.jwkSetSource.close();
+        }
+    }
+
+    @Test
+    void start_FailFast_LoadsKeysBeforeReturning() throws Exception {
+        //given
+        var key = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        doReturn(new Resource(new JWKSet(key.toPublicJWK()).toString(), "application/json"))
+                .when(this.resourceRetriever).retrieveResource(JWK_SET_URL);
+        this.jwkSetSource = new BackgroundJwkSetSource(JWK_SET_URL, this.resourceRetriever,
+                Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        //when
+        this.jwkSetSource.start(true);
+
+        //then
+        var keys = this.jwkSetSource.get(new JWKSelector(new JWKMatcher.Builder().keyID("key-1").build()), null);
+        assertEquals(1, keys.size());
+        assertEquals(key.toPublicJWK(), keys.getFirst());
+    }
+
+    @Test
+    void start_FailFastAndKeycloakIsUnavailable_Throws() throws Exception {
+        //given
+        doThrow(new IOException("Connection refused")).when(this.resourceRetriever).retrieveResource(JWK_SET_URL);
+        this.jwkSetSource = new BackgroundJwkSetSource(JWK_SET_URL, this.resourceRetriever,
+                Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        //when
+        var exception = assertThrows(IOException.class, () -> this.jwkSetSource.start(true));
+
+        //then
+        assertEquals("Connection refused", exception.getMessage());
+    }
+
+    @Test
+    void get_KeyIdIsUnknown_RefreshesInBackgroundAtMostOncePerMinInterval() throws Exception {
+        //given
+        var key = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        var rotatedKey = new RSAKeyGenerator(2048).keyID("key-2").generate();
+        doReturn(new Resource(new JWKSet(key.toPublicJWK()).toString(), "application/json"))
+                .doReturn(new Resource(new JWKSet(rotatedKey.toPublicJWK()).toString(), "application/json"))
+                .when(this.resourceRetriever).retrieveResource(JWK_SET_URL);
+        this.jwkSetSource = new BackgroundJwkSetSource(JWK_SET_URL, this.resourceRetriever,
+                Duration.ofMinutes(5), Duration.ofSeconds(30));
+        this.jwkSetSource.start(true);
+        var rotatedKeySelector = new JWKSelector(new JWKMatcher.Builder().keyID("key-2").build());
+
+        //when
+        var keys = this.jwkSetSource.get(rotatedKeySelector, null);
+        this.jwkSetSource.get(rotatedKeySelector, null);
+
+        //then
+        // запрос не ждёт загрузки ключей
+        assertTrue(keys.isEmpty());
+        verify(this.resourceRetriever, timeout(1000).times(2)).retrieveResource(JWK_SET_URL);
+        verifyNoMoreInteractions(this.resourceRetriever);
+    }
+
+    static URL url(String value) {
+        try {
+            return URI.create(value).toURL();
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ru.zinin.catalogue.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingJwtDecoderTest {
+
+    @Mock
+    JwtDecoder delegate;
+
+    @Test
+    void decode_TokenWasValidated_ReturnsCachedJwt() {
+        //given
+        var decoder = new CachingJwtDecoder(this.delegate, 10);
+        var jwt = jwt("token", Instant.now().plus(5, ChronoUnit.MINUTES));
+        doReturn(jwt).when(this.delegate).decode("token");
+        decoder.decode("token");
+
+        //when
+        var result = decoder.decode("token");
+
+        //then
+        assertSame(jwt, result);
+        verify(this.delegate, times(1)).decode("token");
+    }
+
+    @Test
+    void decode_TokenHasExpired_ValidatesTokenAgain() {
+        //given
+        var decoder = new CachingJwtDecoder(this.delegate, 10);
+        var jwt = jwt("token", Instant.now().minus(1, ChronoUnit.SECONDS));
+        doReturn(jwt).when(this.delegate).decode("token");
+        decoder.decode("token");
+
+        //when
+        decoder.decode("token");
+
+        //then
+        verify(this.delegate, times(2)).decode("token");
+    }
+
+    @Test
+    void decode_TokenHasNoExpiration_ValidatesTokenEveryTime() {
+        //given
+        var decoder = new CachingJwtDecoder(this.delegate, 10);
+        doReturn(jwt("token", null)).when(this.delegate).decode("token");
+        decoder.decode("token");
+
+        //when
+        decoder.decode("token");
+
+        //then
+        verify(this.delegate, times(2)).decode("token");
+    }
+
+    @Test
+    void decode_TokenIsInvalid_ThrowsAndDoesNotCache() {
+        //given
+        var decoder = new CachingJwtDecoder(this.delegate, 10);
+        doThrow(new BadJwtException("Invalid signature")).when(this.delegate).decode("token");
+
+        //when
+        assertThrows(BadJwtException.class, () -> decoder.decode("token"));
+        assertThrows(BadJwtException.class, () -> decoder.decode("token"));
+
+        //then
+        verify(this.delegate, times(2)).decode("token");
+    }
+
+    static Jwt jwt(String token, Instant expiresAt) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("user")
+                .issuedAt(Instant.now().minus(1, ChronoUnit.MINUTES))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
@@ -0,0 +1,42 @@
+package ru.zinin.catalogue.config;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityScheme;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.SpringProxy;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.core.DecoratingProxy;
+import org.springframework.data.projection.TargetAware;
+import ru.zinin.catalogue.controller.payload.ProductImportReport;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductExport;
+import ru.zinin.catalogue.entity.ProductSummary;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogueRuntimeHintsTest {
+
+    @Test
+    void registerHints_RegistersEntitiesRecordsProjectionsAndSpringdocAnnotations() {
+        //given
+        var hints = new RuntimeHints();
+
+        //when
+        new CatalogueRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        //then
+        var reflection = RuntimeHintsPredicates.reflection();
+        assertTrue(reflection.onType(Product.class).withMemberCategories(MemberCategory.DECLARED_FIELDS,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        assertTrue(reflection.onMethod(Product.class, "getTitle").test(hints));
+        assertTrue(reflection.onMethod(ProductExport.class, "updatedAt").test(hints));
+        assertTrue(reflection.onMethod(ProductImportReport.class, "errors").test(hints));
+        assertTrue(RuntimeHintsPredicates.proxies()
+                .forInterfaces(ProductSummary.class, TargetAware.class, SpringProxy.class, DecoratingProxy.class)
+                .test(hints));
+        assertTrue(reflection.onType(SecurityScheme.class).test(hints));
+        assertTrue(reflection.onMethod(Operation.class, "security").test(hints));
+    }
+}
@@ -0,0 +1,169 @@
+package ru.zinin.catalogue.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    AimdConcurrencyLimit viewCatalogueLimit = new AimdConcurrencyLimit(1, 1, 10, Duration.ofSeconds(1));
+
+    AimdConcurrencyLimit editCatalogueLimit = new AimdConcurrencyLimit(1, 1, 10, Duration.ofSeconds(1));
+
+    ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(
+            SecurityBeans.EDIT_CATALOGUE_REQUESTS, SecurityBeans.UNSAMPLED_REQUESTS,
+            this.viewCatalogueLimit, this.editCatalogueLimit, 2, this.meterRegistry);
+
+    @Test
+    void doFilter_ReadLimitIsSaturated_RejectsReadWithRetryAfter() throws Exception {
+        //given
+        this.viewCatalogueLimit.tryAcquire();
+        var filterChain = new MockFilterChain();
+        var response = new MockHttpServletResponse();
+
+        //when
+        this.filter.doFilter(request("GET", "/catalogue-api/products"), response, filterChain);
+
+        //then
+        assertEquals(503, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+        assertNull(filterChain.getRequest());
+        assertEquals(1, this.meterRegistry.get(ConcurrencyLimitFilter.CONCURRENCY_REJECTED)
+                .tag("scope", "view_catalogue")
+                .counter().count());
+    }
+
+    @Test
+    void doFilter_ReadLimitIsSaturated_StillAcceptsWrite() throws Exception {
+        //given
+        this.viewCatalogueLimit.tryAcquire();
+        var filterChain = new MockFilterChain();
+        var response = new MockHttpServletResponse();
+
+        //when
+        this.filter.doFilter(request("PATCH", "/catalogue-api/products/1"), response, filterChain);
+
+        //then
+        assertEquals(200, response.getStatus());
+        assertNotNull(filterChain.getRequest());
+        assertEquals(0, this.editCatalogueLimit.getInFlight());
+        assertEquals(2, this.editCatalogueLimit.getLimit());
+    }
+
+    @Test
+    void doFilter_ReadLimitIsSaturated_RejectsReadByIdsPost() throws Exception {
+        //given
+        this.viewCatalogueLimit.tryAcquire();
+        var filterChain = new MockFilterChain();
+        var response = new MockHttpServletResponse();
+
+        //when
+        this.filter.doFilter(request("POST", "/catalogue-api/products/by-ids"), response, filterChain);
+
+        //then
+        assertEquals(503, response.getStatus());
+        assertNull(filterChain.getRequest());
+        assertEquals(0, this.editCatalogueLimit.getInFlight());
+    }
+
+    @Test
+    void doFilter_SlowImport_DoesNotBackOffWriteLimit() throws Exception {
+        //given
+        var filterChain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                try {
+                    Thread.sleep(1100);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        var response = new MockHttpServletResponse();
+
+        //when
+        this.filter.doFilter(request("POST", "/catalogue-api/products/import"), response, filterChain);
+
+        //then
+        assertEquals(200, response.getStatus());
+        assertEquals(0, this.editCatalogueLimit.getInFlight());
+        assertEquals(1, this.editCatalogueLimit.getLimit());
+    }
+
+    @Test
+    void doFilter_AsyncStream_HoldsReadSlotUntilCompletedWithoutSampling() throws Exception {
+        //given
+        var filterChain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                request.startAsync();
+            }
+        });
+        var request = request("GET", "/catalogue-api/products/changes");
+        request.setAsyncSupported(true);
+        var response = new MockHttpServletResponse();
+        this.filter.doFilter(request, response, filterChain);
+        var inFlightWhileStreaming = this.viewCatalogueLimit.getInFlight();
+        var anotherRequestAccepted = this.viewCatalogueLimit.tryAcquire();
+
+        //when
+        request.getAsyncContext().complete();
+
+        //then
+        assertEquals(1, inFlightWhileStreaming);
+        assertFalse(anotherRequestAccepted);
+        assertEquals(0, this.viewCatalogueLimit.getInFlight());
+        assertEquals(1, this.viewCatalogueLimit.getLimit());
+    }
+
+    @Test
+    void doFilter_ActuatorRequest_IsNotLimited() throws Exception {
+        //given
+        this.viewCatalogueLimit.tryAcquire();
+        var filterChain = new MockFilterChain();
+        var response = new MockHttpServletResponse();
+
+        //when
+        this.filter.doFilter(request("GET", "/actuator/prometheus"), response, filterChain);
+
+        //then
+        assertEquals(200, response.getStatus());
+        assertNotNull(filterChain.getRequest());
+    }
+
+    @Test
+    void constructor_RegistersLimitAndInFlightGauges() {
+        //given
+        this.editCatalogueLimit.tryAcquire();
+
+        //when
+        var limit = this.meterRegistry.get(ConcurrencyLimitFilter.CONCURRENCY_LIMIT)
+                .tag("scope", "edit_catalogue")
+                .gauge().value();
+        var inFlight = this.meterRegistry.get(ConcurrencyLimitFilter.CONCURRENCY_IN_FLIGHT)
+                .tag("scope", "edit_catalogue")
+                .gauge().value();
+
+        //then
+        assertEquals(1, limit);
+        assertEquals(1, inFlight);
+    }
+
+    // DispatcherServlet отображается на "/", поэтому путь запроса целиком приходится на servletPath
+    private static MockHttpServletRequest request(String method, String path) {
+        var request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        return request;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.zinin.catalogue.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// реплику заменяет второй пул к той же базе: проверяется маршрутизация, а не сама репликация
+@SpringBootTest(properties = {
+        "catalogue.datasource.replica.url=${spring.datasource.url}",
+        "catalogue.datasource.replica.read-your-writes-window=1m"
+})
+@AutoConfigureMockMvc
+@Sql("/sql/products.sql")
+@Sql(statements = "delete from catalogue.t_product", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class DataSourceBeansIT {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void readOnlyTransaction_UsesReplica() {
+        //given
+        var replicaUsage = this.replicaUsage();
+        var transactionTemplate = new TransactionTemplate(this.transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        //when
+        transactionTemplate.execute(status ->
+                this.jdbcTemplate.queryForObject("select count(*) from catalogue.t_product", Long.class));
+
+        //then
+        assertEquals(replicaUsage + 1, this.replicaUsage());
+    }
+
+    @Test
+    void readWriteTransaction_UsesPrimary() {
+        //given
+        var replicaUsage = this.replicaUsage();
+        var transactionTemplate = new TransactionTemplate(this.transactionManager);
+
+        //when
+        transactionTemplate.execute(status ->
+                this.jdbcTemplate.update("update catalogue.t_product set c_details = null where id = 1"));
+
+        //then
+        assertEquals(replicaUsage, this.replicaUsage());
+    }
+
+    @Test
+    void findAllProducts_ClientUpdatedProductRecently_ReadsFromPrimary() throws Exception {
+        //given
+        var replicaUsage = this.replicaUsage();
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products")
+                        .with(jwt().jwt(builder -> builder.subject("writer").claim("scope", "view_catalogue"))))
+                .andExpect(status().isOk());
+        assertEquals(replicaUsage + 1, this.replicaUsage());
+
+        this.mockMvc.perform(MockMvcRequestBuilders.patch("/catalogue-api/products/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"title": "Новое название", "details": "Новое описание"}""")
+                        .with(jwt().jwt(builder -> builder.subject("writer").claim("scope", "edit_catalogue"))))
+                .andExpect(status().isNoContent());
+
+        //when
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products")
+                        .with(jwt().jwt(builder -> builder.subject("writer").claim("scope", "view_catalogue"))))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products")
+                        .with(jwt().jwt(builder -> builder.subject("reader").claim("scope", "view_catalogue"))))
+                .andExpect(status().isOk());
+
+        //then
+        // читал с реплики только клиент, который ничего не менял
+        assertEquals(replicaUsage + 2, this.replicaUsage());
+    }
+
+    // метрики пула появляются после первого соединения
+    private long replicaUsage() {
+        var usage = this.meterRegistry.find("hikaricp.connections.usage")
+                .tag("pool", "catalogue-replica")
+                .timer();
+        return usage == null ? 0 : usage.count();
+    }
+}
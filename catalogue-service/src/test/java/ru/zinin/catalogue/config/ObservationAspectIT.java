@@ -0,0 +1,118 @@
+package ru.zinin.catalogue.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import ru.zinin.catalogue.service.ProductService;
+
+import java.util.NoSuchElementException;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Transactional
+@SpringBootTest(properties = {
+        "management.endpoints.web.exposure.include=prometheus",
+        "management.metrics.distribution.percentiles-histogram.catalogue.product.service=true"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class ObservationAspectIT {
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    @Sql("/sql/products.sql")
+    void findAllProducts_FilterIsSpecified_RecordsServiceAndRepositoryTimers() {
+        //given
+
+        //when
+        this.productService.findAllProducts("товар", null, 10);
+
+        //then
+        assertEquals(1, this.meterRegistry.get(ObservationAspect.SERVICE_OBSERVATION)
+                .tag("operation", "findAllProducts")
+                .tag("filter", "present")
+                .tag("outcome", "success")
+                .timer().count());
+        assertEquals(1, this.meterRegistry.get(ObservationAspect.REPOSITORY_OBSERVATION)
+                .tag("operation", "findAllByTitleLikeIgnoreCaseAfter")
+                .tag("filter", "present")
+                .tag("outcome", "success")
+                .timer().count());
+        assertEquals(1, this.meterRegistry.get(SlowQueryListener.QUERY_TIMER)
+                .tag("query", "select id, c_title, c_details, c_version from catalogue.t_product "
+                        + "where c_title ilike ? and id > ? order by id limit ?")
+                .timer().count());
+    }
+
+    @Test
+    void updateProduct_ProductDoesNotExist_RecordsNotFoundOutcome() {
+        //given
+
+        //when
+        assertThrows(NoSuchElementException.class,
+                () -> this.productService.updateProduct(1_000_000, "Товар", null, null));
+
+        //then
+        assertEquals(1, this.meterRegistry.get(ObservationAspect.SERVICE_OBSERVATION)
+                .tag("operation", "updateProduct")
+                .tag("filter", "absent")
+                .tag("outcome", "not_found")
+                .timer().count());
+        assertTrue(this.meterRegistry.get(ObservationAspect.REPOSITORY_OBSERVATION)
+                .tag("operation", "updateProduct")
+                .tag("outcome", "not_found")
+                .timer().count() >= 1);
+    }
+
+    @Test
+    void prometheus_UserHasMetricsScope_ReturnsHistogramBuckets() throws Exception {
+        //given
+        this.productService.findAllProducts(null, null, 10);
+        var requestBuilder = MockMvcRequestBuilders.get("/actuator/prometheus")
+                .with(jwt().jwt(builder -> builder.claim("scope", "metrics")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        content().string(containsString(
+                                "catalogue_product_service_seconds_bucket{error=\"none\",filter=\"absent\","
+                                + "operation=\"findAllProducts\",outcome=\"success\"")),
+                        content().string(containsString("hikaricp_connections_pending")),
+                        content().string(containsString("catalogue_concurrency_limit{scope=\"view_catalogue\",}")),
+                        content().string(containsString("catalogue_concurrency_in_flight{scope=\"edit_catalogue\",}"))
+                );
+    }
+
+    @Test
+    void prometheus_UserHasOnlyViewCatalogueScope_ReturnsForbidden() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/actuator/prometheus")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,169 @@
+package ru.zinin.catalogue.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// реплика - отдельная база с теми же товарами, в которую изменения не доходят: так выглядит отставание реплики
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "catalogue.datasource.replica.read-your-writes-window=1m"
+})
+@AutoConfigureMockMvc
+// контекст с двумя пулами соединений и своей базой реплики другим тестам не нужен
+@DirtiesContext
+class ReplicaLagIT {
+
+    static final String PRODUCTS = """
+            insert into catalogue.t_product (id, c_title, c_details)
+            values (1, 'Товар №1', 'Описание товара №1'),
+                   (2, 'Шоколадка', 'Очень вкусная шоколадка'),
+                   (3, 'Товар №3', 'Описание товара №3')""";
+
+    static JdbcTemplate replicaJdbcTemplate;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) throws SQLException {
+        String username = Objects.requireNonNullElse(System.getenv("SPRING_DATASOURCE_USERNAME"), "test");
+        String password = Objects.requireNonNullElse(System.getenv("SPRING_DATASOURCE_PASSWORD"), "test");
+        String replicaUrl;
+        try (Connection connection = DriverManager.getConnection(Objects.requireNonNullElse(
+                System.getenv("SPRING_DATASOURCE_URL"), "jdbc:tc:postgresql:16:///selmag?TC_DAEMON=true"),
+                username, password);
+             Statement statement = connection.createStatement()) {
+            // адрес jdbc:tc указывает на контейнер, базу реплики создаём рядом с основной
+            String url = connection.getMetaData().getURL().split("\\?")[0];
+            String replicaDatabase = url.substring(url.lastIndexOf('/') + 1) + "_replica";
+            statement.execute("drop database if exists " + replicaDatabase + " with (force)");
+            statement.execute("create database " + replicaDatabase);
+            replicaUrl = url.substring(0, url.lastIndexOf('/') + 1) + replicaDatabase;
+        }
+
+        Flyway.configure()
+                .dataSource(replicaUrl, username, password)
+                .schemas("public", "catalogue")
+                .load()
+                .migrate();
+        replicaJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(replicaUrl, username, password));
+
+        registry.add("catalogue.datasource.replica.url", () -> replicaUrl);
+        registry.add("catalogue.datasource.replica.username", () -> username);
+        registry.add("catalogue.datasource.replica.password", () -> password);
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.jdbcTemplate.update(PRODUCTS);
+        replicaJdbcTemplate.update(PRODUCTS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.jdbcTemplate.update("delete from catalogue.t_product");
+        this.jdbcTemplate.update("delete from catalogue.t_product_change");
+        replicaJdbcTemplate.update("delete from catalogue.t_product");
+    }
+
+    @Test
+    void findProduct_AnotherClientReadsDuringReplicaLag_WriterReadsOwnWrite() throws Exception {
+        //given
+        this.updateProduct();
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products/1")
+                        .with(jwt().jwt(builder -> builder.subject("reader").claim("scope", "view_catalogue"))))
+                .andExpect(status().isOk());
+
+        //when
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products/1")
+                        .with(jwt().jwt(builder -> builder.subject("writer").claim("scope", "view_catalogue"))))
+                //then
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        {"id": 1, "title": "Шоколад", "details": "Новое описание"}"""));
+    }
+
+    @Test
+    void findProduct_ReplicaCatchesUpAfterLaggingRead_ReturnsChangedProduct() throws Exception {
+        //given
+        this.updateProduct();
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products/1")
+                        .with(jwt().jwt(builder -> builder.subject("reader").claim("scope", "view_catalogue"))))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        {"id": 1, "title": "Товар №1", "details": "Описание товара №1"}"""));
+        replicaJdbcTemplate.update("""
+                update catalogue.t_product
+                set c_title = 'Шоколад', c_details = 'Новое описание', c_version = c_version + 1
+                where id = 1""");
+
+        //when
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products/1")
+                        .with(jwt().jwt(builder -> builder.subject("reader").claim("scope", "view_catalogue"))))
+                //then
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        {"id": 1, "title": "Шоколад", "details": "Новое описание"}"""));
+    }
+
+    @Test
+    void findAllProducts_AnotherClientReadsDuringReplicaLag_WriterReadsOwnWrite() throws Exception {
+        //given
+        this.updateProduct();
+        // читатель видит отставшую реплику, но её результат не должен остаться в общем кэше запросов
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products?filter=товар")
+                        .with(jwt().jwt(builder -> builder.subject("reader").claim("scope", "view_catalogue"))))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        [
+                            {"id": 1, "title": "Товар №1", "details": "Описание товара №1"},
+                            {"id": 3, "title": "Товар №3", "details": "Описание товара №3"}
+                        ]"""));
+
+        //when
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products?filter=товар")
+                        .with(jwt().jwt(builder -> builder.subject("writer").claim("scope", "view_catalogue"))))
+                //then
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        [
+                            {"id": 3, "title": "Товар №3", "details": "Описание товара №3"}
+                        ]""", true));
+    }
+
+    private void updateProduct() throws Exception {
+        this.mockMvc.perform(MockMvcRequestBuilders.patch("/catalogue-api/products/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"title": "Шоколад", "details": "Новое описание"}""")
+                        .with(jwt().jwt(builder -> builder.subject("writer").claim("scope", "edit_catalogue"))))
+                .andExpect(status().isNoContent());
+    }
+}
@@ -0,0 +1,166 @@
+package ru.zinin.catalogue.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlMergeMode;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.repository.ProductRepository;
+import ru.zinin.catalogue.service.ProductService;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true"
+})
+@Sql(statements = {"delete from catalogue.t_product", "delete from catalogue.t_product_change"},
+        executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+@SqlMergeMode(SqlMergeMode.MergeMode.MERGE)
+class SecondLevelCacheIT {
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // тестовые данные пишутся в обход Hibernate
+    @BeforeEach
+    void setUp() {
+        this.entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictAllRegions();
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void findById_ProductWasLoadedInAnotherTransaction_ReadsFromSecondLevelCache() {
+        //given
+        var hits = this.secondLevelCacheRequests("hit");
+        this.transactionTemplate.execute(status -> this.productRepository.findById(1));
+
+        //when
+        var product = this.transactionTemplate.execute(status -> this.productRepository.findById(1));
+
+        //then
+        assertEquals(Optional.of(new Product(1, "Товар №1", "Описание товара №1")), product);
+        assertEquals(hits + 1, this.secondLevelCacheRequests("hit"));
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void findAllByTitleLikeIgnoreCaseAfter_QueryWasExecuted_ReadsFromQueryCache() {
+        //given
+        var hits = this.queryCacheRequests("hit");
+        this.transactionTemplate.execute(status ->
+                this.productRepository.findAllByTitleLikeIgnoreCaseAfter("%товар%", 0, 10));
+
+        //when
+        var products = this.transactionTemplate.execute(status ->
+                this.productRepository.findAllByTitleLikeIgnoreCaseAfter("%товар%", 0, 10));
+
+        //then
+        assertEquals(List.of(new Product(1, "Товар №1", "Описание товара №1"),
+                new Product(3, "Товар №3", "Описание товара №3")), products);
+        assertEquals(hits + 1, this.queryCacheRequests("hit"));
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void updateProduct_ProductIsCached_EvictsProductAndFilterQueries() {
+        //given
+        this.transactionTemplate.execute(status -> this.productRepository.findById(1));
+        this.transactionTemplate.execute(status ->
+                this.productRepository.findAllByTitleLikeIgnoreCaseAfter("%товар%", 0, 10));
+
+        //when
+        this.productService.updateProduct(1, "Шоколад", "Новое описание", null);
+
+        //then
+        assertEquals(Optional.of(new Product(1, "Шоколад", "Новое описание")),
+                this.transactionTemplate.execute(status -> this.productRepository.findById(1)));
+        assertEquals(List.of(new Product(3, "Товар №3", "Описание товара №3")),
+                this.transactionTemplate.execute(status ->
+                        this.productRepository.findAllByTitleLikeIgnoreCaseAfter("%товар%", 0, 10)));
+    }
+
+    @Test
+    void productQuerySpaces_MatchNativeQuerySpaces() {
+        //given
+        var descriptor = this.entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(Product.class);
+
+        //when
+        var querySpaces = descriptor.getQuerySpaces();
+
+        //then
+        // вставки через Hibernate сбрасывают закэшированные запросы, только если имена пространств совпадают
+        assertArrayEquals(new String[]{ProductRepository.PRODUCT_TABLE}, querySpaces);
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void deleteProduct_ProductIsCached_EvictsProductAndFilterQueries() {
+        //given
+        this.transactionTemplate.execute(status -> this.productRepository.findById(1));
+        this.transactionTemplate.execute(status -> this.productRepository.findById(3));
+        this.transactionTemplate.execute(status ->
+                this.productRepository.findAllByTitleLikeIgnoreCaseAfter("%товар%", 0, 10));
+
+        //when
+        this.productService.deleteProduct(1, null);
+
+        //then
+        assertTrue(this.entityManagerFactory.getCache().contains(Product.class, 3));
+        assertEquals(Optional.empty(),
+                this.transactionTemplate.execute(status -> this.productRepository.findById(1)));
+        assertEquals(List.of(new Product(3, "Товар №3", "Описание товара №3")),
+                this.transactionTemplate.execute(status ->
+                        this.productRepository.findAllByTitleLikeIgnoreCaseAfter("%товар%", 0, 10)));
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void findAllAfter_ProductsAreNotCached_DoesNotPutProductsIntoSecondLevelCache() {
+        //given
+
+        //when
+        var products = this.transactionTemplate.execute(status -> this.productRepository.findAllAfter(0, 10));
+
+        //then
+        assertNotNull(products);
+        assertEquals(4, products.size());
+        assertFalse(this.entityManagerFactory.getCache().contains(Product.class, 1));
+    }
+
+    private double secondLevelCacheRequests(String result) {
+        return this.meterRegistry.get("hibernate.second.level.cache.requests")
+                .tag("region", Product.class.getName())
+                .tag("result", result)
+                .functionCounter().count();
+    }
+
+    private double queryCacheRequests(String result) {
+        return this.meterRegistry.get("hibernate.cache.query.requests")
+                .tag("result", result)
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,141 @@
+package ru.zinin.catalogue.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SlowQueryListenerTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    DataSource explainDataSource;
+
+    @Test
+    void fingerprint_ReplacesLiteralsAndCollapsesParameterLists() {
+        //given
+        var query = """
+                select p1_0.id, p1_0.c_title from catalogue.t_product p1_0
+                where p1_0.id in (?, ?,?) and p1_0.c_title <> 'It''s' and p1_0.c_version > 10
+                limit 25""";
+
+        //when
+        var fingerprint = SlowQueryListener.fingerprint(query);
+
+        //then
+        assertEquals("select p1_0.id, p1_0.c_title from catalogue.t_product p1_0 "
+                     + "where p1_0.id in (?) and p1_0.c_title <> ? and p1_0.c_version > ? limit ?", fingerprint);
+    }
+
+    @Test
+    void afterQuery_QueriesDifferOnlyInLiterals_RecordsOneTimer() {
+        //given
+        var listener = new SlowQueryListener(this.meterRegistry, Duration.ofHours(1), 1, () -> this.explainDataSource,
+                Runnable::run);
+
+        //when
+        execute(listener, new QueryInfo("select * from catalogue.t_product where id = 1"));
+        execute(listener, new QueryInfo("select * from catalogue.t_product where id = 2"));
+
+        //then
+        assertEquals(2, this.meterRegistry.get(SlowQueryListener.QUERY_TIMER)
+                .tag("query", "select * from catalogue.t_product where id = ?")
+                .timer().count());
+        verifyNoInteractions(this.explainDataSource);
+    }
+
+    @Test
+    void afterQuery_SlowSelectIsSampled_ExplainsWithCapturedParameters() throws Exception {
+        //given
+        var listener = new SlowQueryListener(this.meterRegistry, Duration.ZERO, 1, () -> this.explainDataSource,
+                Runnable::run);
+        var query = "select * from catalogue.t_product where c_title ilike ? limit ?";
+        var queryInfo = new QueryInfo(query);
+        queryInfo.getParametersList().add(new ArrayList<>(List.of(
+                new ParameterSetOperation(PreparedStatement.class.getMethod("setString", int.class, String.class),
+                        new Object[]{1, "%товар%"}),
+                new ParameterSetOperation(PreparedStatement.class.getMethod("setInt", int.class, int.class),
+                        new Object[]{2, 10}))));
+        var connection = mock(Connection.class);
+        var statement = mock(PreparedStatement.class);
+        var resultSet = mock(ResultSet.class);
+        doReturn(connection).when(this.explainDataSource).getConnection();
+        doReturn(statement).when(connection).prepareStatement(SlowQueryListener.EXPLAIN + query);
+        doReturn(resultSet).when(statement).executeQuery();
+        doReturn(true, false).when(resultSet).next();
+        doReturn("Limit  (cost=0.00..1.10 rows=10 width=64)").when(resultSet).getString(1);
+
+        //when
+        execute(listener, queryInfo);
+
+        //then
+        verify(connection).setReadOnly(true);
+        verify(statement).setString(1, "%товар%");
+        verify(statement).setInt(2, 10);
+        verify(connection).rollback();
+        verify(connection).close();
+    }
+
+    @Test
+    void afterQuery_SlowSelectIsSampled_ExplainsOnDataSourceResolvedInQueryThread() throws Exception {
+        //given
+        var tasks = new ArrayList<Runnable>();
+        var queryDataSource = new AtomicReference<>(this.explainDataSource);
+        var listener = new SlowQueryListener(this.meterRegistry, Duration.ZERO, 1, queryDataSource::get, tasks::add);
+        var query = "select * from catalogue.t_product";
+        var connection = mock(Connection.class);
+        var statement = mock(PreparedStatement.class);
+        doReturn(connection).when(this.explainDataSource).getConnection();
+        doReturn(statement).when(connection).prepareStatement(SlowQueryListener.EXPLAIN + query);
+        doReturn(mock(ResultSet.class)).when(statement).executeQuery();
+        execute(listener, new QueryInfo(query));
+        // транзакция запроса завершилась, и маршрут в этом потоке уже другой
+        var otherDataSource = mock(DataSource.class);
+        queryDataSource.set(otherDataSource);
+
+        //when
+        tasks.forEach(Runnable::run);
+
+        //then
+        verify(statement).executeQuery();
+        verifyNoInteractions(otherDataSource);
+    }
+
+    @Test
+    void afterQuery_SlowUpdate_DoesNotExplain() {
+        //given
+        var listener = new SlowQueryListener(this.meterRegistry, Duration.ZERO, 1, () -> this.explainDataSource,
+                Runnable::run);
+
+        //when
+        execute(listener, new QueryInfo("update catalogue.t_product set c_title = ? where id = ?"));
+
+        //then
+        assertEquals(1, this.meterRegistry.get(SlowQueryListener.QUERY_TIMER).timer().count());
+        verifyNoInteractions(this.explainDataSource);
+    }
+
+    static void execute(SlowQueryListener listener, QueryInfo queryInfo) {
+        var execInfo = new ExecutionInfo();
+        listener.beforeQuery(execInfo, List.of(queryInfo));
+        listener.afterQuery(execInfo, List.of(queryInfo));
+    }
+}
@@ -0,0 +1,62 @@
+package ru.zinin.catalogue.config;
+
+import org.junit.jupiter.api.Test;
+import ru.zinin.catalogue.entity.Product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionedProductCacheTest {
+
+    VersionedProductCache cache = new VersionedProductCache("products", "maximumSize=100");
+
+    @Test
+    void put_CachedProductIsNewer_KeepsCachedProduct() {
+        //given
+        var cached = new Product(1, "Новое название", null, 2);
+        this.cache.put(1, cached);
+
+        //when
+        this.cache.put(1, new Product(1, "Товар №1", null, 1));
+
+        //then
+        assertSame(cached, this.cache.get(1).get());
+    }
+
+    @Test
+    void put_ProductIsOlderThanEvictedVersion_DoesNotCacheProduct() {
+        //given
+        this.cache.evict(1, 2);
+
+        //when
+        this.cache.put(1, new Product(1, "Товар №1", null, 1));
+
+        //then
+        assertNull(this.cache.get(1));
+    }
+
+    @Test
+    void put_ProductHasEvictedVersion_CachesProduct() {
+        //given
+        this.cache.evict(1, 2);
+        var product = new Product(1, "Новое название", null, 2);
+
+        //when
+        this.cache.put(1, product);
+
+        //then
+        assertSame(product, this.cache.get(1).get());
+    }
+
+    @Test
+    void clear_ProductWasEvicted_CachesOlderProductAgain() {
+        //given
+        this.cache.evict(1, Integer.MAX_VALUE);
+
+        //when
+        this.cache.clear();
+        this.cache.put(1, new Product(1, "Товар №1", null, 0));
+
+        //then
+        assertNotNull(this.cache.get(1));
+    }
+}
@@ -0,0 +1,45 @@
+package ru.zinin.catalogue.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.MessageSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+
+@ExtendWith(MockitoExtension.class)
+class BadRequestControllerAdviceTest {
+
+    @Mock
+    MessageSource messageSource;
+
+    @InjectMocks
+    BadRequestControllerAdvice controllerAdvice;
+
+    @Test
+    void handleBadRequestException_ReturnsBadRequest() {
+        //given
+        var exception = new BadRequestException("error_code");
+        var locale = Locale.of("ru", "RU");
+
+        doReturn("error details").when(this.messageSource)
+                .getMessage("error_code", new Object[0], "error_code", locale);
+
+        //when
+        var result = this.controllerAdvice.handleBadRequestException(exception, locale);
+
+        //then
+        assertNotNull(result);
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+        assertInstanceOf(ProblemDetail.class, result.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST.value(), result.getBody().getStatus());
+        assertEquals("error details", result.getBody().getDetail());
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.restdocs.RestDocumentationExtension;
 import org.springframework.restdocs.operation.preprocess.HeadersModifyingOperationPreprocessor;
@@ -24,8 +25,7 @@ import static org.springframework.restdocs.payload.PayloadDocumentation.fieldWit
 import static org.springframework.restdocs.payload.PayloadDocumentation.responseFields;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @Transactional
 @SpringBootTest
@@ -68,6 +68,24 @@ class ProductRestControllerIT {
                         )));
     }
 
+    @Test
+    @Sql("/sql/products.sql")
+    void findProduct_ETagMatches_ReturnsNotModified() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isNotModified(),
+                        header().string(HttpHeaders.ETAG, "\"0\""),
+                        content().string("")
+                );
+    }
+
     @Test
     void findProduct_ProductDoesNotExist_ReturnsNotFound() throws Exception {
         //given
@@ -152,8 +170,8 @@ class ProductRestControllerIT {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content("""
                         {
-                            "title": "  ",
-                            "details": null
+                            "title": "Новое название",
+                            "details": "Новое описание"
                         }""")
                 .with(jwt().jwt(builder -> builder.claim("scope", "edit_catalogue")));
         //when
@@ -164,6 +182,57 @@ class ProductRestControllerIT {
                 );
     }
 
+    @Test
+    @Sql("/sql/products.sql")
+    void updateProduct_IfMatchIsCurrent_ReturnsNoContent() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.patch("/catalogue-api/products/1")
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {
+                            "title": "Новое название",
+                            "details": "Новое описание"
+                        }""")
+                .with(jwt().jwt(builder -> builder.claim("scope", "edit_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isNoContent(),
+                        header().exists(HttpHeaders.ETAG)
+                );
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void updateProduct_IfMatchIsStale_ReturnsPreconditionFailed() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.patch("/catalogue-api/products/1")
+                .header(HttpHeaders.IF_MATCH, "\"5\"")
+                .locale(Locale.of("ru"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {
+                            "title": "Новое название",
+                            "details": "Новое описание"
+                        }""")
+                .with(jwt().jwt(builder -> builder.claim("scope", "edit_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isPreconditionFailed(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON),
+                        content().json("""
+                                {
+                                    "detail": "Товар был изменён, загрузите актуальную версию"
+                                }""")
+                );
+    }
+
     @Test
     @Sql("/sql/products.sql")
     void updateProducts_UserIsNotAuthorized_ReturnsForbidden() throws Exception {
@@ -199,6 +268,22 @@ class ProductRestControllerIT {
                 );
     }
 
+    @Test
+    @Sql("/sql/products.sql")
+    void deleteProduct_IfMatchIsStale_ReturnsPreconditionFailed() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.delete("/catalogue-api/products/1")
+                .header(HttpHeaders.IF_MATCH, "\"5\"")
+                .with(jwt().jwt(builder -> builder.claim("scope", "edit_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isPreconditionFailed()
+                );
+    }
+
     @Test
     void deleteProduct_ProductDoesNotExist_ReturnsNotFound() throws Exception {
         var requestBuilder = MockMvcRequestBuilders.delete("/catalogue-api/products/1")
@@ -6,6 +6,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.MessageSource;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.validation.BindException;
@@ -34,57 +35,81 @@ class ProductRestControllerTest {
     ProductRestController productRestController;
 
     @Test
-    void getProduct_ProductExists_ReturnsProduct() {
+    void findProduct_ProductExists_ReturnsProductWithETag() {
         //given
-        var product = new Product(1, "Товар", "Описание товара");
+        var product = new Product(1, "Товар", "Описание товара", 3);
         doReturn(Optional.of(product)).when(this.productService).findProduct(1);
 
         //when
-        var result = this.productRestController.getProduct(1);
+        var result = this.productRestController.findProduct(1);
 
         //then
         assertNotNull(result);
-        assertEquals(product, result);
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals("\"3\"", result.getHeaders().getETag());
+        assertEquals(product, result.getBody());
         verify(this.productService).findProduct(1);
         verifyNoMoreInteractions(this.productService);
     }
 
     @Test
-    void getProduct_ProductDoesNotExist_ThrowsNoSuchElementException() {
+    void findProduct_ProductDoesNotExist_ThrowsNoSuchElementException() {
         //given
 
         //when
-        var exception = assertThrows(NoSuchElementException.class, () -> this.productRestController.getProduct(1));
+        var exception = assertThrows(NoSuchElementException.class, () -> this.productRestController.findProduct(1));
 
         //then
         assertEquals("catalogue.errors.product.not_found", exception.getMessage());
     }
 
     @Test
-    void findProduct_ReturnsProduct() {
+    void updateProduct_RequestIsValid_ReturnsNoContent() throws BindException {
         //given
-        var product = new Product(1, "Товар", "Описание товара");
+        var payload = new UpdateProductPayload("Новое описание", "Новое название");
+        var bindingResult = new MapBindingResult(Map.of(), "payload");
+        doReturn(new Product(1, "Новое описание", "Новое название", 1))
+                .when(this.productService).updateProduct(1, "Новое описание", "Новое название", null);
 
         //when
-        var result = this.productRestController.findProduct(product);
+        var result = this.productRestController.updateProduct(1, null, payload, bindingResult);
 
         //then
-        assertEquals(product, result);
+        assertNotNull(result);
+        assertEquals(HttpStatus.NO_CONTENT, result.getStatusCode());
+        assertEquals("\"1\"", result.getHeaders().getETag());
+        verify(this.productService).updateProduct(1, "Новое описание", "Новое название", null);
     }
 
     @Test
-    void updateProduct_RequestIsValid_ReturnsNoContent() throws BindException {
+    void updateProduct_IfMatchIsSpecified_PassesVersionToService() throws BindException {
         //given
         var payload = new UpdateProductPayload("Новое описание", "Новое название");
         var bindingResult = new MapBindingResult(Map.of(), "payload");
+        doReturn(new Product(1, "Новое описание", "Новое название", 3))
+                .when(this.productService).updateProduct(1, "Новое описание", "Новое название", 2);
 
         //when
-        var result = this.productRestController.updateProduct(1, payload, bindingResult);
+        var result = this.productRestController.updateProduct(1, "\"2\"", payload, bindingResult);
 
         //then
-        assertNotNull(result);
         assertEquals(HttpStatus.NO_CONTENT, result.getStatusCode());
-        verify(this.productService).updateProduct(1, "Новое описание", "Новое название");
+        assertEquals("\"3\"", result.getHeaders().getETag());
+        verify(this.productService).updateProduct(1, "Новое описание", "Новое название", 2);
+    }
+
+    @Test
+    void updateProduct_IfMatchIsWeak_ThrowsOptimisticLockingFailureException() {
+        //given
+        var payload = new UpdateProductPayload("Новое описание", "Новое название");
+        var bindingResult = new MapBindingResult(Map.of(), "payload");
+
+        //when
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> this.productRestController.updateProduct(1, "W/\"2\"", payload, bindingResult));
+
+        //then
+        verifyNoInteractions(this.productService);
     }
 
     @Test
@@ -96,7 +121,7 @@ class ProductRestControllerTest {
 
         //when
         var exception = assertThrows(BindException.class,
-                () -> this.productRestController.updateProduct(1, payload, bindingResult));
+                () -> this.productRestController.updateProduct(1, null, payload, bindingResult));
 
         //then
         assertEquals(List.of(new FieldError("payload", "title", "error")),
@@ -112,7 +137,7 @@ class ProductRestControllerTest {
         bindingResult.addError(new FieldError("payload", "title", "error"));
         //when
         var exception = assertThrows(BindException.class,
-                () -> this.productRestController.updateProduct(1, payload, bindingResult));
+                () -> this.productRestController.updateProduct(1, null, payload, bindingResult));
         //then
         assertEquals(List.of(new FieldError("payload", "title", "error")),
                 exception.getAllErrors());
@@ -124,13 +149,13 @@ class ProductRestControllerTest {
         //given
 
         //when
-        var result = this.productRestController.deleteProduct(1);
+        var result = this.productRestController.deleteProduct(1, "\"4\"");
 
         //then
         assertNotNull(result);
         assertEquals(HttpStatus.NO_CONTENT, result.getStatusCode());
 
-        verify(this.productService).deleteProduct(1);
+        verify(this.productService).deleteProduct(1, 4);
     }
 
     @Test
@@ -154,4 +179,26 @@ class ProductRestControllerTest {
 
         verifyNoInteractions(this.productService);
     }
+
+    @Test
+    void handleOptimisticLockingFailureException_ReturnsPreconditionFailed() {
+        //given
+        var locale = new Locale("ru", "RU");
+
+        doReturn("error details").when(this.messageSource)
+                .getMessage("catalogue.errors.product.version_mismatch", new Object[0],
+                        "catalogue.errors.product.version_mismatch", locale);
+
+        //when
+        var result = this.productRestController.handleOptimisticLockingFailureException(locale);
+
+        //then
+        assertNotNull(result);
+        assertEquals(HttpStatus.PRECONDITION_FAILED, result.getStatusCode());
+        assertInstanceOf(ProblemDetail.class, result.getBody());
+        assertEquals(HttpStatus.PRECONDITION_FAILED.value(), result.getBody().getStatus());
+        assertEquals("error details", result.getBody().getDetail());
+
+        verifyNoInteractions(this.productService);
+    }
 }
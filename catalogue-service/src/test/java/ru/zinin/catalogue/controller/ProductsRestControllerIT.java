@@ -7,15 +7,29 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @Transactional
@@ -26,6 +40,9 @@ class ProductsRestControllerIT {
     @Autowired
     MockMvc mockMvc;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
     @Test
     @Sql("/sql/products.sql")
     void findAllProducts_ReturnsProductsList() throws Exception {
@@ -48,6 +65,429 @@ class ProductsRestControllerIT {
                 );
     }
 
+    @Test
+    @Sql("/sql/products.sql")
+    void findAllProducts_LimitIsLessThanProductsCount_ReturnsFirstPageWithNextCursor() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products")
+                .param("limit", "2")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        header().string(ProductsRestController.NEXT_CURSOR_HEADER, ProductsCursor.encode(2)),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON),
+                        content().json("""
+                                [
+                                    {"id": 1, "title": "Товар №1", "details": "Описание товара №1"},
+                                    {"id": 2, "title": "Шоколадка", "details": "Очень вкусная шоколадка"}
+                                ]""", true)
+                );
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void findAllProducts_CursorPointsToLastPage_ReturnsLastPageWithoutNextCursor() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products")
+                .param("after", ProductsCursor.encode(2))
+                .param("limit", "2")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        header().doesNotExist(ProductsRestController.NEXT_CURSOR_HEADER),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON),
+                        content().json("""
+                                [
+                                    {"id": 3, "title": "Товар №3", "details": "Описание товара №3"},
+                                    {"id": 4, "title": "Хлеб бородинский", "details": "Очень вкусный бородинский хлеб"}
+                                ]""", true)
+                );
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void findAllProducts_ETagMatches_ReturnsNotModified() throws Exception {
+        //given
+        var eTag = this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products")
+                        .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue"))))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isNotModified(),
+                        header().string(HttpHeaders.ETAG, eTag),
+                        content().string("")
+                );
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void findAllProducts_FilterAndCursorAreSpecified_ReturnsFilteredPage() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products")
+                .param("filter", "товар")
+                .param("after", ProductsCursor.encode(1))
+                .param("limit", "1")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        header().doesNotExist(ProductsRestController.NEXT_CURSOR_HEADER),
+                        content().json("""
+                                [
+                                    {"id": 3, "title": "Товар №3", "details": "Описание товара №3"}
+                                ]""", true)
+                );
+    }
+
+    @Test
+    @Sql(statements = "insert into catalogue.t_product(id, c_title, c_details) "
+            + "values (1, 'Товар №1', repeat('а', 1000)), (2, 'Товар №2', null)")
+    void findAllProducts_ViewIsSummary_ReturnsTitlesAndTruncatedDetails() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products")
+                .param("view", "summary")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON),
+                        header().exists(HttpHeaders.ETAG),
+                        content().json("""
+                                [
+                                    {"id": 1, "title": "Товар №1", "details": "%s"},
+                                    {"id": 2, "title": "Товар №2", "details": null}
+                                ]""".formatted("а".repeat(200)), true)
+                );
+    }
+
+    @Test
+    void findAllProducts_ViewIsUnknown_ReturnsBadRequest() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products")
+                .param("view", "brief")
+                .locale(Locale.of("ru"))
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isBadRequest(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON),
+                        content().json("""
+                                {
+                                    "detail": "Неизвестное представление списка товаров"
+                                }""")
+                );
+    }
+
+    @Test
+    void findAllProducts_CursorIsInvalid_ReturnsBadRequest() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products")
+                .param("after", "not-a-cursor")
+                .locale(Locale.of("ru"))
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isBadRequest(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON),
+                        content().json("""
+                                {
+                                    "detail": "Некорректный курсор страницы"
+                                }""")
+                );
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Sql("/sql/products.sql")
+    @Sql(statements = "delete from catalogue.t_product", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    void streamProducts_ReturnsJsonArray() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/stream")
+                .param("filter", "товар")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        var mvcResult = this.mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //when
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON),
+                        content().json("""
+                                [
+                                    {"id": 1, "title": "Товар №1", "details": "Описание товара №1"},
+                                    {"id": 3, "title": "Товар №3", "details": "Описание товара №3"}
+                                ]""", true)
+                );
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Sql({"/sql/products.sql", "/sql/products_bulk.sql"})
+    @Sql(statements = "delete from catalogue.t_product", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    void streamProducts_NdjsonIsAccepted_ReturnsWholeCatalogueAsNdjson() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        var mvcResult = this.mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //when
+        var response = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andReturn().getResponse();
+
+        //then
+        assertEquals(200, response.getStatus());
+        assertTrue(MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(response.getContentType())));
+        var lines = response.getContentAsString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(20000, lines.size());
+        assertEquals("{\"id\":1,\"title\":\"Товар №1\",\"details\":\"Описание товара №1\"}", lines.get(0));
+        assertEquals("{\"id\":20000,\"title\":\"Товар №20000\",\"details\":\"Описание товара №20000\"}",
+                lines.get(19999));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Sql({"/sql/products.sql", "/sql/products_bulk.sql"})
+    @Sql(statements = "delete from catalogue.t_product", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    void exportProducts_GzipIsAccepted_ReturnsWholeCatalogueAsCompressedNdjson() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/export")
+                .header(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, gzip;q=0.8")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        var mvcResult = this.mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //when
+        var response = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andReturn().getResponse();
+
+        //then
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(response.getContentType())));
+        List<String> lines;
+        try (var reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())),
+                StandardCharsets.UTF_8))) {
+            lines = reader.lines().toList();
+        }
+        assertEquals(20000, lines.size());
+        assertTrue(lines.get(0).startsWith(
+                "{\"id\":1,\"title\":\"Товар №1\",\"details\":\"Описание товара №1\",\"version\":0,\"updatedAt\":\""));
+        assertTrue(lines.get(19999).startsWith("{\"id\":20000,"));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Sql(statements = {
+            "insert into catalogue.t_product (id, c_title, c_details, c_updated_at) "
+                    + "values (1, 'Товар №1', 'Описание товара №1', now() - interval '3 days'), "
+                    + "(2, 'Шоколадка', 'Очень вкусная шоколадка', now() - interval '1 day'), "
+                    + "(3, 'Товар №3', 'Описание товара №3', now() - interval '3 days')",
+            "insert into catalogue.t_product_change (c_product_id, c_type, c_created_at, c_position) "
+                    + "values (5, 'DELETED', now() - interval '3 days', 1), (4, 'DELETED', now(), 2)"
+    })
+    @Sql(statements = {"delete from catalogue.t_product", "delete from catalogue.t_product_change"},
+            executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    void exportProducts_UpdatedSinceIsSpecified_ReturnsProductsUpdatedAndDeletedSince() throws Exception {
+        //given
+        // время изменения выставляет триггер, а не приложение
+        this.jdbcTemplate.update("update catalogue.t_product set c_title = 'Новое название' where id = 3");
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/export")
+                .param("updatedSince", Instant.now().minus(Duration.ofDays(2)).toString())
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        var mvcResult = this.mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //when
+        var response = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andReturn().getResponse();
+
+        //then
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        var lines = response.getContentAsString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).startsWith(
+                "{\"id\":2,\"title\":\"Шоколадка\",\"details\":\"Очень вкусная шоколадка\",\"version\":0,"));
+        assertFalse(lines.get(0).contains("deleted"));
+        assertTrue(lines.get(1).startsWith("{\"id\":3,\"title\":\"Новое название\","));
+        assertTrue(lines.get(2).startsWith("{\"id\":4,\"title\":null,\"details\":null,\"version\":null,"));
+        assertTrue(lines.get(2).endsWith(",\"deleted\":true}"));
+        assertTrue(Instant.parse(response.getHeader(ProductsRestController.NEXT_UPDATED_SINCE_HEADER))
+                .isBefore(Instant.now().minus(ProductsRestController.EXPORT_OVERLAP)));
+    }
+
+    @Test
+    void exportProducts_UpdatedSinceIsOlderThanChangesRetention_ReturnsBadRequest() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/export")
+                .param("updatedSince", Instant.now().minus(Duration.ofDays(8)).toString())
+                .locale(Locale.of("ru"))
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isBadRequest(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON),
+                        content().json("""
+                                {
+                                    "detail": "Удаления товаров хранятся ограниченное время, для более ранней даты выполните полную выгрузку"
+                                }""")
+                );
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void searchProducts_ReturnsProductsRankedByRelevance() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/search")
+                .param("q", "вкусный хлеб")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON),
+                        jsonPath("$.length()").value(1),
+                        jsonPath("$[0].id").value(4),
+                        jsonPath("$[0].title").value("Хлеб бородинский"),
+                        jsonPath("$[0].details").value("Очень вкусный бородинский хлеб"),
+                        jsonPath("$[0].rank").isNumber()
+                );
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void searchProducts_PageIsSpecified_ReturnsRequestedPage() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/search")
+                .param("q", "вкусный")
+                .param("page", "1")
+                .param("size", "1")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.length()").value(1),
+                        jsonPath("$[0].id").value(4)
+                );
+    }
+
+    @Test
+    void searchProducts_QueryIsBlank_ReturnsBadRequest() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/search")
+                .param("q", " ")
+                .locale(Locale.of("ru"))
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isBadRequest(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON),
+                        content().json("""
+                                {
+                                    "detail": "Поисковый запрос должен быть указан"
+                                }""")
+                );
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void findProductsByIds_ReturnsProductsInRequestOrder() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/by-ids")
+                .param("ids", "4,10,1")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON),
+                        content().json("""
+                                {
+                                    "products": [
+                                        {"id": 4, "title": "Хлеб бородинский", "details": "Очень вкусный бородинский хлеб"},
+                                        {"id": 1, "title": "Товар №1", "details": "Описание товара №1"}
+                                    ],
+                                    "missingIds": [10]
+                                }""", true)
+                );
+    }
+
+    @Test
+    @Sql("/sql/products.sql")
+    void findProductsByIdsList_ReturnsProductsInRequestOrder() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.post("/catalogue-api/products/by-ids")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[3, 2]")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON),
+                        content().json("""
+                                {
+                                    "products": [
+                                        {"id": 3, "title": "Товар №3", "details": "Описание товара №3"},
+                                        {"id": 2, "title": "Шоколадка", "details": "Очень вкусная шоколадка"}
+                                    ],
+                                    "missingIds": []
+                                }""", true)
+                );
+    }
+
+    @Test
+    void findProductsByIdsList_UserIsNotAuthorized_ReturnsForbidden() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.post("/catalogue-api/products/by-ids")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1]")
+                .with(jwt());
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isForbidden()
+                );
+    }
+
     @Test
     @Sql("/sql/products.sql")
     void findAllProducts_UserIsNotAuthorized_ReturnsForbidden() throws Exception {
@@ -129,4 +569,192 @@ class ProductsRestControllerIT {
                         status().isForbidden()
                 );
     }
-}
\ No newline at end of file
+
+    @Test
+    @DirtiesContext
+    @Sql(statements = "select setval('catalogue.t_product_id_seq', 1, false)",
+            executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    void createProducts_SomePayloadsAreInvalid_ReturnsResultPerItem() throws Exception {
+        // идентификаторы из последовательности не возвращаются при откате,
+        // поэтому после теста она сбрасывается вместе с контекстом и его pooled-оптимизатором
+
+        //given
+        var requestBuilder = MockMvcRequestBuilders.post("/catalogue-api/products/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .locale(Locale.of("ru"))
+                .content("""
+                        [
+                            {"title": "Первый новый товар", "details": "Описание первого нового товара"},
+                            {"title": "  ", "details": null},
+                            {"title": "Второй новый товар", "details": null}
+                        ]""")
+                .with(jwt().jwt(builder -> builder.claim("scope", "edit_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON),
+                        content().json("""
+                                [
+                                    {
+                                        "index": 0,
+                                        "product": {"title": "Первый новый товар", "details": "Описание первого нового товара"}
+                                    },
+                                    {
+                                        "index": 1,
+                                        "errors": ["Название товара должно быть от 3 до 50 символов"]
+                                    },
+                                    {
+                                        "index": 2,
+                                        "product": {"title": "Второй новый товар", "details": null}
+                                    }
+                                ]"""),
+                        jsonPath("$[0].product.id").isNumber(),
+                        jsonPath("$[1].product").doesNotExist(),
+                        jsonPath("$[2].product.id").isNumber()
+                );
+    }
+
+    @Test
+    void createProducts_UserIsNotAuthorized_ReturnsForbidden() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.post("/catalogue-api/products/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        [{"title": "Новый товар", "details": null}]""")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isForbidden()
+                );
+    }
+
+    // импорт выделяет идентификаторы из последовательности, а createProduct ожидает товар с id 1
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Sql("/sql/products.sql")
+    @Sql(statements = {"delete from catalogue.t_product_change", "delete from catalogue.t_product",
+            "alter sequence catalogue.t_product_id_seq restart"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    void importProducts_CsvContainsInvalidRows_ImportsValidRowsAndReportsErrors() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.post("/catalogue-api/products/import")
+                .contentType("text/csv")
+                .content("""
+                        id,title,details
+                        ,Новый товар,"Описание, с запятой и ""кавычками"" внутри"
+                        1,Обновлённый товар,"Описание
+                        в две строки"
+                        ,Хл,
+                        999,Товар-призрак,
+                        x,Товар с неверным id,
+                        """.getBytes(StandardCharsets.UTF_8))
+                .with(jwt().jwt(builder -> builder.claim("scope", "edit_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON),
+                        jsonPath("$.created").value(1),
+                        jsonPath("$.updated").value(1),
+                        jsonPath("$.rejected").value(3),
+                        jsonPath("$.errors[*].line").value(contains(5, 6, 7)),
+                        jsonPath("$.errors[1].errors[0]").value("Товар не найден")
+                );
+        assertEquals(Map.of("c_title", "Обновлённый товар", "c_details", "Описание\nв две строки", "c_version", 1),
+                this.jdbcTemplate.queryForMap("select c_title, c_details, c_version from catalogue.t_product where id = 1"));
+        assertEquals("Описание, с запятой и \"кавычками\" внутри", this.jdbcTemplate.queryForObject(
+                "select c_details from catalogue.t_product where c_title = 'Новый товар'", String.class));
+        assertEquals(List.of("UPDATED", "CREATED"), this.jdbcTemplate.queryForList(
+                "select c_type from catalogue.t_product_change order by c_title = 'Новый товар', id", String.class));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Sql(statements = {"delete from catalogue.t_product_change", "delete from catalogue.t_product",
+            "alter sequence catalogue.t_product_id_seq restart"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    void importProducts_NdjsonIsUploaded_ImportsValidRowsAndReportsErrors() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.post("/catalogue-api/products/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("""
+                        {"title": "Новый товар", "details": "Описание нового товара"}
+
+                        не JSON
+                        {"id": "1", "title": "Товар"}
+                        {"title": "Ещё один новый товар"}
+                        """.getBytes(StandardCharsets.UTF_8))
+                .with(jwt().jwt(builder -> builder.claim("scope", "edit_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.created").value(2),
+                        jsonPath("$.updated").value(0),
+                        jsonPath("$.rejected").value(2),
+                        jsonPath("$.errors[*].line").value(contains(3, 4))
+                );
+        assertEquals(List.of("Ещё один новый товар", "Новый товар"), this.jdbcTemplate.queryForList(
+                "select c_title from catalogue.t_product order by c_title", String.class));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Sql(statements = {"delete from catalogue.t_product_change", "delete from catalogue.t_product",
+            "alter sequence catalogue.t_product_id_seq restart"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    void importProducts_CsvRowHasTooManyColumns_RejectsRowAndImportsNextOne() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.post("/catalogue-api/products/import")
+                .contentType("text/csv")
+                .content(("title,details\nЛишние столбцы" + ",".repeat(100_000) + "\nНовый товар,\n")
+                        .getBytes(StandardCharsets.UTF_8))
+                .with(jwt().jwt(builder -> builder.claim("scope", "edit_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.created").value(1),
+                        jsonPath("$.rejected").value(1),
+                        jsonPath("$.errors[0].line").value(2),
+                        jsonPath("$.errors[0].errors[0]").value("Строка CSV должна содержать не больше 64 столбцов")
+                );
+        assertEquals(List.of("Новый товар"), this.jdbcTemplate.queryForList(
+                "select c_title from catalogue.t_product", String.class));
+    }
+
+    @Test
+    void importProducts_CsvHeaderHasNoTitle_ReturnsBadRequest() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.post("/catalogue-api/products/import")
+                .contentType("text/csv")
+                .content("name,details\nТовар,Описание\n".getBytes(StandardCharsets.UTF_8))
+                .with(jwt().jwt(builder -> builder.claim("scope", "edit_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void importProducts_UserHasOnlyViewCatalogueScope_ReturnsForbidden() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.post("/catalogue-api/products/import")
+                .contentType("text/csv")
+                .content("title\nТовар\n")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpect(status().isForbidden());
+    }
+}
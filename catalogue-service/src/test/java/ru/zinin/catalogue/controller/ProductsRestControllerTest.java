@@ -1,24 +1,46 @@
 package ru.zinin.catalogue.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.MessageSource;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.validation.BindException;
 import org.springframework.validation.FieldError;
 import org.springframework.validation.MapBindingResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.util.UriComponentsBuilder;
 import ru.zinin.catalogue.controller.payload.NewProductPayload;
+import ru.zinin.catalogue.controller.payload.ProductBatchResult;
 import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductSearchResult;
+import ru.zinin.catalogue.entity.ProductSuggestion;
+import ru.zinin.catalogue.entity.ProductSummary;
+import ru.zinin.catalogue.service.ProductChangeRelay;
 import ru.zinin.catalogue.service.ProductService;
+import ru.zinin.catalogue.service.ProductSummariesPage;
+import ru.zinin.catalogue.service.ProductsByIds;
+import ru.zinin.catalogue.service.ProductsPage;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
-import java.util.List;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +50,18 @@ class ProductsRestControllerTest {
     @Mock
     ProductService productService;
 
+    @Mock
+    ProductChangeRelay productChangeRelay;
+
+    @Mock
+    MessageSource messageSource;
+
+    @Spy
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    Validator validator;
+
     @InjectMocks
     ProductsRestController productsRestController;
 
@@ -35,16 +69,270 @@ class ProductsRestControllerTest {
     void findAllProducts_ReturnsProductList() {
         //given
         var filter = "товар";
-        doReturn(List.of(new Product(1, "Первый товар", "Описание первого товара"),
-                new Product(2, "Второй товар", "Описание второго товара")))
-                .when(this.productService).findAllProducts("товар");
+        doReturn(new ProductsPage(List.of(new Product(1, "Первый товар", "Описание первого товара"),
+                new Product(2, "Второй товар", "Описание второго товара")), null))
+                .when(this.productService).findAllProducts("товар", null, 50);
 
         //when
-        var result = this.productsRestController.findAllProducts(filter);
+        var result = this.productsRestController.findAllProducts(filter, null, null, null);
         //then
         assertEquals(HttpStatus.OK, result.getStatusCode());
         assertEquals(List.of(new Product(1, "Первый товар", "Описание первого товара"),
                 new Product(2, "Второй товар", "Описание второго товара")), result.getBody());
+        assertFalse(result.getHeaders().containsKey(ProductsRestController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void findAllProducts_PageIsNotLast_ReturnsNextCursor() {
+        //given
+        doReturn(new ProductsPage(List.of(new Product(3, "Третий товар", "Описание третьего товара"),
+                new Product(4, "Четвёртый товар", "Описание четвёртого товара")), 4))
+                .when(this.productService).findAllProducts(null, 2, 2);
+
+        //when
+        var result = this.productsRestController.findAllProducts(null, ProductsCursor.encode(2), 2, null);
+
+        //then
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(List.of(new Product(3, "Третий товар", "Описание третьего товара"),
+                new Product(4, "Четвёртый товар", "Описание четвёртого товара")), result.getBody());
+        assertEquals(4, ProductsCursor.decode(
+                result.getHeaders().getFirst(ProductsRestController.NEXT_CURSOR_HEADER)));
+    }
+
+    @Test
+    void findAllProducts_LimitIsTooBig_UsesMaxLimit() {
+        //given
+        doReturn(new ProductsPage(List.of(), null))
+                .when(this.productService).findAllProducts(null, null, 500);
+
+        //when
+        var result = this.productsRestController.findAllProducts(null, null, 100_000, null);
+
+        //then
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        verify(this.productService).findAllProducts(null, null, 500);
+    }
+
+    @Test
+    void findAllProducts_CursorIsInvalid_ThrowsBadRequestException() {
+        //given
+
+        //when
+        var exception = assertThrows(BadRequestException.class,
+                () -> this.productsRestController.findAllProducts(null, "not-a-cursor", null, null));
+
+        //then
+        assertEquals("catalogue.errors.products.cursor_is_invalid", exception.getMessage());
+        verifyNoInteractions(this.productService);
+    }
+
+    @Test
+    void findAllProducts_ViewIsSummary_ReturnsProductSummaries() {
+        //given
+        var summary = new SpelAwareProxyProjectionFactory().createProjection(ProductSummary.class,
+                Map.of("id", 1, "title", "Товар", "details", "Начало описания", "version", 0));
+        doReturn(new ProductSummariesPage(List.of(summary), null))
+                .when(this.productService).findAllProductSummaries("товар", null, 50);
+
+        //when
+        var result = this.productsRestController.findAllProducts("товар", null, null, "summary");
+
+        //then
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(List.of(summary), result.getBody());
+        assertNotEquals(ProductETags.of(List.of(new Product(1, null, null, 0))), result.getHeaders().getETag());
+        verify(this.productService).findAllProductSummaries("товар", null, 50);
+        verifyNoMoreInteractions(this.productService);
+    }
+
+    @Test
+    void findAllProducts_ViewIsUnknown_ThrowsBadRequestException() {
+        //given
+
+        //when
+        var exception = assertThrows(BadRequestException.class,
+                () -> this.productsRestController.findAllProducts(null, null, null, "brief"));
+
+        //then
+        assertEquals("catalogue.errors.products.view_is_invalid", exception.getMessage());
+        verifyNoInteractions(this.productService);
+    }
+
+    @Test
+    void streamProductChanges_LastEventIdIsSpecified_SubscribesFromLastEventId() {
+        //given
+        var emitter = new SseEmitter();
+        doReturn(emitter).when(this.productChangeRelay).subscribe(42L);
+
+        //when
+        var result = this.productsRestController.streamProductChanges("42");
+
+        //then
+        assertSame(emitter, result);
+        verify(this.productChangeRelay).subscribe(42L);
+        verifyNoMoreInteractions(this.productChangeRelay);
+    }
+
+    @Test
+    void streamProductChanges_LastEventIdIsInvalid_ThrowsBadRequestException() {
+        //given
+
+        //when
+        var exception = assertThrows(BadRequestException.class,
+                () -> this.productsRestController.streamProductChanges("abc"));
+
+        //then
+        assertEquals("catalogue.errors.products.last_event_id_is_invalid", exception.getMessage());
+        verifyNoInteractions(this.productChangeRelay);
+    }
+
+    @Test
+    void streamProducts_WritesJsonArray() throws IOException {
+        //given
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(1);
+            consumer.accept(new Product(1, "Первый товар", "Описание первого товара"));
+            consumer.accept(new Product(2, "Второй товар", "Описание второго товара"));
+            return null;
+        }).when(this.productService).streamProducts(eq("товар"), any());
+        var outputStream = new ByteArrayOutputStream();
+
+        //when
+        var result = this.productsRestController.streamProducts("товар", null);
+        result.getBody().writeTo(outputStream);
+
+        //then
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, result.getHeaders().getContentType());
+        assertEquals("""
+                [{"id":1,"title":"Первый товар","details":"Описание первого товара"},\
+                {"id":2,"title":"Второй товар","details":"Описание второго товара"}]""",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void streamProducts_NdjsonIsAccepted_WritesNdjson() throws IOException {
+        //given
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(1);
+            consumer.accept(new Product(1, "Первый товар", "Описание первого товара"));
+            consumer.accept(new Product(2, "Второй товар", "Описание второго товара"));
+            return null;
+        }).when(this.productService).streamProducts(eq(null), any());
+        var outputStream = new ByteArrayOutputStream();
+
+        //when
+        var result = this.productsRestController.streamProducts(null, MediaType.APPLICATION_NDJSON_VALUE);
+        result.getBody().writeTo(outputStream);
+
+        //then
+        assertEquals(MediaType.APPLICATION_NDJSON, result.getHeaders().getContentType());
+        assertEquals("""
+                {"id":1,"title":"Первый товар","details":"Описание первого товара"}
+                {"id":2,"title":"Второй товар","details":"Описание второго товара"}
+                """, outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void searchProducts_ReturnsSearchResults() {
+        //given
+        var searchResult = new SpelAwareProxyProjectionFactory().createProjection(ProductSearchResult.class,
+                Map.of("id", 2, "title", "Шоколадка", "details", "Очень вкусная шоколадка", "rank", 0.6));
+        doReturn(List.of(searchResult))
+                .when(this.productService).searchProducts("шоколадка", 1, 20);
+
+        //when
+        var result = this.productsRestController.searchProducts("шоколадка", 1, null);
+
+        //then
+        assertEquals(List.of(searchResult), result);
+        verify(this.productService).searchProducts("шоколадка", 1, 20);
+        verifyNoMoreInteractions(this.productService);
+    }
+
+    @Test
+    void searchProducts_SizeIsTooBig_UsesMaxSize() {
+        //given
+        doReturn(List.of())
+                .when(this.productService).searchProducts("шоколадка", 0, 100);
+
+        //when
+        var result = this.productsRestController.searchProducts("шоколадка", -1, 100_000);
+
+        //then
+        assertEquals(List.of(), result);
+        verify(this.productService).searchProducts("шоколадка", 0, 100);
+    }
+
+    @Test
+    void searchProducts_QueryIsBlank_ThrowsBadRequestException() {
+        //given
+
+        //when
+        var exception = assertThrows(BadRequestException.class,
+                () -> this.productsRestController.searchProducts("  ", 0, null));
+
+        //then
+        assertEquals("catalogue.errors.products.search_query_is_blank", exception.getMessage());
+        verifyNoInteractions(this.productService);
+    }
+
+    @Test
+    void suggestProducts_LimitIsTooBig_UsesMaxLimit() {
+        //given
+        doReturn(List.of(new ProductSuggestion(2, "Шоколадка")))
+                .when(this.productService).suggestProducts("шок", 50);
+
+        //when
+        var result = this.productsRestController.suggestProducts("шок", 1000);
+
+        //then
+        assertEquals(List.of(new ProductSuggestion(2, "Шоколадка")), result);
+        verify(this.productService).suggestProducts("шок", 50);
+        verifyNoMoreInteractions(this.productService);
+    }
+
+    @Test
+    void suggestProducts_PrefixIsBlank_ReturnsEmptyList() {
+        //given
+
+        //when
+        var result = this.productsRestController.suggestProducts(" ", null);
+
+        //then
+        assertEquals(List.of(), result);
+        verifyNoInteractions(this.productService);
+    }
+
+    @Test
+    void findProductsByIds_ReturnsProductsByIds() {
+        //given
+        doReturn(new ProductsByIds(List.of(new Product(2, "Второй товар", "Описание второго товара")), List.of(7)))
+                .when(this.productService).findProductsByIds(List.of(2, 7));
+
+        //when
+        var result = this.productsRestController.findProductsByIds(List.of(2, 7));
+
+        //then
+        assertEquals(new ProductsByIds(List.of(new Product(2, "Второй товар", "Описание второго товара")),
+                List.of(7)), result);
+        verify(this.productService).findProductsByIds(List.of(2, 7));
+        verifyNoMoreInteractions(this.productService);
+    }
+
+    @Test
+    void findProductsByIdsList_TooManyIds_ThrowsBadRequestException() {
+        //given
+        var ids = IntStream.rangeClosed(1, 1001).boxed().toList();
+
+        //when
+        var exception = assertThrows(BadRequestException.class,
+                () -> this.productsRestController.findProductsByIdsList(ids));
+
+        //then
+        assertEquals("catalogue.errors.products.too_many_ids", exception.getMessage());
+        verifyNoInteractions(this.productService);
     }
 
     @Test
@@ -104,4 +392,64 @@ class ProductsRestControllerTest {
                 exception.getAllErrors());
         verifyNoInteractions(this.productService);
     }
-}
\ No newline at end of file
+
+    @Test
+    void createProducts_SomePayloadsAreInvalid_CreatesValidProductsAndReportsErrors() {
+        //given
+        var validPayload = new NewProductPayload("Новый товар", "Описание нового товара");
+        var invalidPayload = new NewProductPayload("  ", null);
+        var locale = Locale.of("ru");
+        ConstraintViolation<NewProductPayload> violation = mock();
+        doReturn("Название товара должно быть от 3 до 50 символов").when(violation).getMessage();
+        doReturn(Set.of()).when(this.validator).validate(validPayload);
+        doReturn(Set.of(violation)).when(this.validator).validate(invalidPayload);
+        doReturn("Данные товара должны быть указаны").when(this.messageSource)
+                .getMessage("catalogue.products.create.errors.payload_is_null", new Object[0],
+                        "catalogue.products.create.errors.payload_is_null", locale);
+        doReturn(List.of(new Product(51, "Новый товар", "Описание нового товара")))
+                .when(this.productService).createProducts(List.of(new Product(null, "Новый товар", "Описание нового товара")));
+
+        //when
+        var result = this.productsRestController.createProducts(
+                Arrays.asList(invalidPayload, validPayload, null), locale);
+
+        //then
+        assertEquals(List.of(
+                new ProductBatchResult(0, null, List.of("Название товара должно быть от 3 до 50 символов")),
+                new ProductBatchResult(1, new Product(51, "Новый товар", "Описание нового товара"), null),
+                new ProductBatchResult(2, null, List.of("Данные товара должны быть указаны"))
+        ), result);
+        verify(this.productService).createProducts(List.of(new Product(null, "Новый товар", "Описание нового товара")));
+        verifyNoMoreInteractions(this.productService);
+    }
+
+    @Test
+    void createProducts_AllPayloadsAreInvalid_DoesNotCallService() {
+        //given
+        var invalidPayload = new NewProductPayload(null, null);
+        ConstraintViolation<NewProductPayload> violation = mock();
+        doReturn("Название товара должно быть указано").when(violation).getMessage();
+        doReturn(Set.of(violation)).when(this.validator).validate(invalidPayload);
+
+        //when
+        var result = this.productsRestController.createProducts(List.of(invalidPayload), Locale.of("ru"));
+
+        //then
+        assertEquals(List.of(new ProductBatchResult(0, null, List.of("Название товара должно быть указано"))), result);
+        verifyNoInteractions(this.productService);
+    }
+
+    @Test
+    void createProducts_BatchIsTooLarge_ThrowsBadRequestException() {
+        //given
+        var payloads = Collections.nCopies(10_001, new NewProductPayload("Новый товар", null));
+
+        //when
+        var exception = assertThrows(BadRequestException.class,
+                () -> this.productsRestController.createProducts(payloads, Locale.of("ru")));
+
+        //then
+        assertEquals("catalogue.errors.products.batch_is_too_large", exception.getMessage());
+        verifyNoInteractions(this.productService, this.validator);
+    }
+}
@@ -7,8 +7,11 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.transaction.annotation.Transactional;
 import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductSearchResult;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,4 +33,155 @@ class ProductRepositoryIT {
         //then
         assertEquals(List.of(new Product(2, "Шоколадка", "Очень вкусная шоколадка")), products);
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllAfter_ReturnsProductsAfterGivenIdOrderedById() {
+        //given
+
+        //when
+        var products = this.productRepository.findAllAfter(1, 2);
+
+        //then
+        assertEquals(List.of(new Product(2, "Шоколадка", "Очень вкусная шоколадка"),
+                new Product(3, "Товар №3", "Описание товара №3")), products);
+    }
+
+    @Test
+    void findAllByTitleLikeIgnoreCaseAfter_ReturnsFilteredProductsAfterGivenId() {
+        //given
+        var filter = "%товар%";
+
+        //when
+        var products = this.productRepository.findAllByTitleLikeIgnoreCaseAfter(filter, 1, 10);
+
+        //then
+        assertEquals(List.of(new Product(3, "Товар №3", "Описание товара №3")), products);
+    }
+
+    @Test
+    void findAllByTitleContainingAfter_ReturnsProductsContainingFilterIgnoringCase() {
+        //given
+        var filter = "№";
+
+        //when
+        var products = this.productRepository.findAllByTitleContainingAfter(filter, 1, Integer.MAX_VALUE, 10);
+
+        //then
+        assertEquals(List.of(new Product(3, "Товар №3", "Описание товара №3")), products);
+    }
+
+    @Test
+    void findAllByTitleContainingAfter_ProductIsAfterScanEnd_DoesNotReturnProduct() {
+        //given
+        var filter = "№";
+
+        //when
+        var products = this.productRepository.findAllByTitleContainingAfter(filter, 1, 2, 10);
+
+        //then
+        assertEquals(List.of(), products);
+    }
+
+    @Test
+    void findShortFilterScanEnd_ReturnsLastIdOfScanWindow() {
+        //given
+
+        //when
+        var scanEnd = this.productRepository.findShortFilterScanEnd(1, 2);
+
+        //then
+        assertEquals(Optional.of(3), scanEnd);
+    }
+
+    @Test
+    void findShortFilterScanEnd_WindowIsNotFull_ReturnsEmptyOptional() {
+        //given
+
+        //when
+        var scanEnd = this.productRepository.findShortFilterScanEnd(1, 100);
+
+        //then
+        assertEquals(Optional.empty(), scanEnd);
+    }
+
+    @Test
+    void search_ReturnsProductsOrderedByRank() {
+        //given
+        var query = "вкусная шоколадка";
+
+        //when
+        var results = this.productRepository.search(query, 0, 10);
+
+        //then
+        assertEquals(1, results.size());
+        assertEquals(2, results.get(0).getId());
+        assertEquals("Шоколадка", results.get(0).getTitle());
+        assertEquals("Очень вкусная шоколадка", results.get(0).getDetails());
+        assertTrue(results.get(0).getRank() > 0);
+    }
+
+    @Test
+    void search_QueryMatchesSeveralProducts_ReturnsAllMatches() {
+        //given
+        var query = "шоколадка or хлеб";
+
+        //when
+        var results = this.productRepository.search(query, 0, 10);
+
+        //then
+        assertEquals(List.of(2, 4), results.stream().map(ProductSearchResult::getId).toList());
+    }
+
+    @Test
+    void findAllByIds_ReturnsExistingProducts() {
+        //given
+        var ids = new Integer[]{4, 2, 10};
+
+        //when
+        var products = this.productRepository.findAllByIds(ids);
+
+        //then
+        assertEquals(Set.of(new Product(2, "Шоколадка", "Очень вкусная шоколадка"),
+                new Product(4, "Хлеб бородинский", "Очень вкусный бородинский хлеб")), Set.copyOf(products));
+    }
+
+    @Test
+    void updateProduct_ProductExists_UpdatesProductAndReturnsNewVersion() {
+        //given
+
+        //when
+        var version = this.productRepository.updateProduct(1, "Новое название", "Новое описание");
+
+        //then
+        assertEquals(Optional.of(1), version);
+        assertEquals(Optional.of(new Product(1, "Новое название", "Новое описание")),
+                this.productRepository.findById(1));
+    }
+
+    @Test
+    void updateProductIfVersion_VersionIsStale_ReturnsEmptyResult() {
+        //given
+
+        //when
+        var version = this.productRepository.updateProductIfVersion(1, "Новое название", "Новое описание", 5);
+
+        //then
+        assertTrue(version.isEmpty());
+        assertEquals(Optional.of(new Product(1, "Товар №1", "Описание товара №1")),
+                this.productRepository.findById(1));
+    }
+
+    @Test
+    void deleteProductIfVersion_ReturnsDeletedRowsCount() {
+        //given
+
+        //when
+        var staleDeleted = this.productRepository.deleteProductIfVersion(1, 5);
+        var deleted = this.productRepository.deleteProductIfVersion(1, 0);
+
+        //then
+        assertEquals(0, staleDeleted);
+        assertEquals(1, deleted);
+        assertFalse(this.productRepository.existsById(1));
+    }
+}
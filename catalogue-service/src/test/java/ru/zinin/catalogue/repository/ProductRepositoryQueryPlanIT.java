@@ -0,0 +1,120 @@
+package ru.zinin.catalogue.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// планы проверяются по числу строк таблицы, которые запрос прочитал на самом деле: в t_product 20 тысяч товаров,
+// поэтому обход всей таблицы или индекса не укладывается ни в одну из границ
+@DataJpaTest
+@Transactional
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Sql({"/sql/products.sql", "/sql/products_bulk.sql"})
+class ProductRepositoryQueryPlanIT {
+
+    static final int SHORT_FILTER_SCAN_SIZE = 10_000;
+
+    final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Test
+    void findAllByTitleLikeIgnoreCaseAfter_ReadsOnlyMatchingRows() throws JsonProcessingException {
+        //given
+        var parameters = Map.of("filter", "%шоколадка%", "after", 0, "limit", 51);
+
+        //when
+        var plan = explainAnalyze(ProductRepository.FIND_ALL_BY_TITLE_LIKE_IGNORE_CASE_AFTER, parameters);
+
+        //then
+        assertTrue(rowsRead(plan) <= 10, plan.toPrettyString());
+    }
+
+    @Test
+    void findAllByTitleContainingAfter_RareShortFilter_ReadsOnlyScanWindow() throws JsonProcessingException {
+        //given
+        var scanEnd = this.jdbcTemplate.queryForObject(ProductRepository.FIND_SHORT_FILTER_SCAN_END,
+                Map.of("after", 0, "scanSize", SHORT_FILTER_SCAN_SIZE), Integer.class);
+        var parameters = Map.of("filter", "ъъ", "after", 0, "scanEnd", scanEnd, "limit", 51);
+
+        //when
+        var scanEndPlan = explainAnalyze(ProductRepository.FIND_SHORT_FILTER_SCAN_END,
+                Map.of("after", 0, "scanSize", SHORT_FILTER_SCAN_SIZE));
+        var plan = explainAnalyze(ProductRepository.FIND_ALL_BY_TITLE_CONTAINING_AFTER, parameters);
+
+        //then
+        assertTrue(rowsRead(scanEndPlan) <= SHORT_FILTER_SCAN_SIZE, scanEndPlan.toPrettyString());
+        assertTrue(rowsRead(plan) <= SHORT_FILTER_SCAN_SIZE, plan.toPrettyString());
+    }
+
+    @Test
+    void findAllAfter_ReadsOnlyPageRows() throws JsonProcessingException {
+        //given
+        var parameters = Map.of("after", 10000, "limit", 51);
+
+        //when
+        var plan = explainAnalyze(ProductRepository.FIND_ALL_AFTER, parameters);
+
+        //then
+        assertTrue(rowsRead(plan) <= 51, plan.toPrettyString());
+    }
+
+    @Test
+    void search_ReadsOnlyMatchingRows() throws JsonProcessingException {
+        //given
+        var parameters = Map.of("query", "шоколадка", "offset", 0, "limit", 20);
+
+        //when
+        var plan = explainAnalyze(ProductRepository.SEARCH, parameters);
+
+        //then
+        assertTrue(rowsRead(plan) <= 10, plan.toPrettyString());
+    }
+
+    @Test
+    void findAllUpdatedSinceAfter_ReadsOnlyPageRows() throws JsonProcessingException {
+        //given
+        var updatedAt = this.jdbcTemplate.getJdbcTemplate()
+                .queryForObject("select max(c_updated_at) from catalogue.t_product", Timestamp.class);
+
+        //when
+        var plan = this.objectMapper.readTree(this.jdbcTemplate.getJdbcTemplate().queryForObject(
+                "explain (analyze, format json) " + ProductExportRepository.FIND_ALL_UPDATED_SINCE_AFTER,
+                String.class, updatedAt, 19000, 1000));
+
+        //then
+        assertTrue(rowsRead(plan) <= 1000, plan.toPrettyString());
+    }
+
+    private JsonNode explainAnalyze(String query, Map<String, ?> parameters) throws JsonProcessingException {
+        return this.objectMapper.readTree(this.jdbcTemplate.queryForObject("explain (analyze, format json) " + query,
+                parameters, String.class));
+    }
+
+    // строки, прочитанные из таблицы или индекса узлами чтения отношения, вместе с отброшенными фильтром
+    private static long rowsRead(JsonNode node) {
+        long rows = 0;
+        if (node.has("Relation Name")) {
+            rows += node.path("Actual Rows").asLong() * node.path("Actual Loops").asLong(1)
+                    + node.path("Rows Removed by Filter").asLong()
+                    + node.path("Rows Removed by Index Recheck").asLong();
+        }
+        for (JsonNode child : node) {
+            rows += rowsRead(child);
+        }
+        return rows;
+    }
+}
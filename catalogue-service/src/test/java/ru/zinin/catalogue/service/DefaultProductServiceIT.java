@@ -0,0 +1,210 @@
+package ru.zinin.catalogue.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.zinin.catalogue.config.CacheBeans;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductSuggestion;
+import ru.zinin.catalogue.repository.ProductChangeRepository;
+import ru.zinin.catalogue.repository.ProductRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@Sql("/sql/products.sql")
+@Sql(statements = "delete from catalogue.t_product", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class DefaultProductServiceIT {
+
+    @Autowired
+    ProductService productService;
+
+    @SpyBean
+    ProductRepository productRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ProductTitleIndex productTitleIndex;
+
+    @Autowired
+    ProductChangeRepository productChangeRepository;
+
+    @Autowired
+    ProductChangeRelay productChangeRelay;
+
+    @BeforeEach
+    void setUp() {
+        this.cacheManager.getCache(CacheBeans.PRODUCTS_CACHE).clear();
+    }
+
+    @Test
+    void findProduct_ProductIsCached_DoesNotQueryRepository() {
+        //given
+        this.productService.findProduct(1);
+
+        //when
+        var product = this.productService.findProduct(1);
+
+        //then
+        assertEquals(Optional.of(new Product(1, "Товар №1", "Описание товара №1")), product);
+        verify(this.productRepository, times(1)).findById(1);
+        assertTrue(this.meterRegistry.get("cache.gets")
+                .tag("cache", CacheBeans.PRODUCTS_CACHE)
+                .tag("result", "hit")
+                .functionCounter().count() >= 1);
+    }
+
+    @Test
+    void findProduct_ProductDoesNotExist_DoesNotCacheAbsence() {
+        //given
+        this.productService.findProduct(10);
+
+        //when
+        var product = this.productService.findProduct(10);
+
+        //then
+        assertTrue(product.isEmpty());
+        verify(this.productRepository, times(2)).findById(10);
+    }
+
+    @Test
+    void updateProduct_TransactionIsCommitted_EvictsCachedProduct() {
+        //given
+        this.productService.findProduct(1);
+
+        //when
+        this.productService.updateProduct(1, "Новое название", "Новое описание", null);
+
+        //then
+        assertEquals(Optional.of(new Product(1, "Новое название", "Новое описание")),
+                this.productService.findProduct(1));
+    }
+
+    @Test
+    void updateProduct_TransactionIsRolledBack_KeepsCachedProduct() {
+        //given
+        this.productService.findProduct(1);
+
+        //when
+        this.transactionTemplate.executeWithoutResult(status -> {
+            this.productService.updateProduct(1, "Новое название", "Новое описание", null);
+            status.setRollbackOnly();
+        });
+
+        //then
+        assertNotNull(this.cacheManager.getCache(CacheBeans.PRODUCTS_CACHE).get(1));
+        assertEquals(Optional.of(new Product(1, "Товар №1", "Описание товара №1")),
+                this.productService.findProduct(1));
+    }
+
+    @Test
+    void deleteProduct_EvictsCachedProduct() {
+        //given
+        this.productService.findProduct(1);
+
+        //when
+        this.productService.deleteProduct(1, null);
+
+        //then
+        assertTrue(this.productService.findProduct(1).isEmpty());
+    }
+
+    @Test
+    void updateProduct_ReadStartedBeforeUpdateCachesAfterCommit_DoesNotCacheStaleProduct() {
+        //given
+        this.productService.updateProduct(1, "Новое название", "Новое описание", null);
+
+        //when
+        // так кладёт результат чтение, которое выбрало строку до изменения, а зафиксировалось после него
+        this.cacheManager.getCache(CacheBeans.PRODUCTS_CACHE)
+                .put(1, new Product(1, "Товар №1", "Описание товара №1", 0));
+
+        //then
+        assertNull(this.cacheManager.getCache(CacheBeans.PRODUCTS_CACHE).get(1));
+        assertEquals(Optional.of(new Product(1, "Новое название", "Новое описание")),
+                this.productService.findProduct(1));
+    }
+
+    @Test
+    void deleteProduct_ReadStartedBeforeDeleteCachesAfterCommit_DoesNotCacheDeletedProduct() {
+        //given
+        this.productService.deleteProduct(1, null);
+
+        //when
+        this.cacheManager.getCache(CacheBeans.PRODUCTS_CACHE)
+                .put(1, new Product(1, "Товар №1", "Описание товара №1", 0));
+
+        //then
+        assertTrue(this.productService.findProduct(1).isEmpty());
+    }
+
+    @Test
+    void suggestProducts_ProductIsUpdated_SuggestsNewTitleAfterCommit() {
+        //given
+        this.productTitleIndex.rebuild();
+        assertEquals(List.of(new ProductSuggestion(4, "Хлеб бородинский")),
+                this.productService.suggestProducts("хлеб", 10));
+
+        //when
+        this.transactionTemplate.executeWithoutResult(status -> {
+            this.productService.updateProduct(4, "Батон нарезной", null, null);
+            assertEquals(1, this.productService.suggestProducts("хлеб", 10).size());
+        });
+
+        //then
+        assertEquals(List.of(), this.productService.suggestProducts("хлеб", 10));
+        assertEquals(List.of(new ProductSuggestion(4, "Батон нарезной")),
+                this.productService.suggestProducts("бат", 10));
+    }
+
+    @Test
+    void suggestProducts_TransactionIsRolledBack_KeepsPreviousTitle() {
+        //given
+        this.productTitleIndex.rebuild();
+
+        //when
+        this.transactionTemplate.executeWithoutResult(status -> {
+            this.productService.deleteProduct(2, null);
+            status.setRollbackOnly();
+        });
+
+        //then
+        assertEquals(List.of(new ProductSuggestion(2, "Шоколадка")), this.productService.suggestProducts("шок", 10));
+    }
+
+    @Test
+    void suggestProducts_ProductIsRenamedByAnotherInstance_SuggestsNewTitleFromChanges() {
+        //given
+        this.productTitleIndex.rebuild();
+        // другой экземпляр пишет только в базу, локальный индекс узнаёт об изменении из t_product_change
+        this.transactionTemplate.executeWithoutResult(status -> this.productChangeRepository
+                .insertChange(4, "UPDATED", "Батон нарезной", null, 1));
+        this.productChangeRelay.relay();
+
+        //when
+        this.productTitleIndex.applyChanges();
+
+        //then
+        assertEquals(List.of(), this.productService.suggestProducts("хлеб", 10));
+        assertEquals(List.of(new ProductSuggestion(4, "Батон нарезной")),
+                this.productService.suggestProducts("бат", 10));
+    }
+}
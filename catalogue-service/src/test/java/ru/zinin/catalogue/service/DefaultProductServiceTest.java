@@ -0,0 +1,469 @@
+package ru.zinin.catalogue.service;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.zinin.catalogue.config.ProductSecondLevelCache;
+import ru.zinin.catalogue.config.VersionedProductCache;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.entity.ProductExport;
+import ru.zinin.catalogue.entity.ProductImportResult;
+import ru.zinin.catalogue.entity.ProductImportRow;
+import ru.zinin.catalogue.entity.ProductSummary;
+import ru.zinin.catalogue.repository.ProductChangeRepository;
+import ru.zinin.catalogue.repository.ProductExportRepository;
+import ru.zinin.catalogue.repository.ProductImportRepository;
+import ru.zinin.catalogue.repository.ProductRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DefaultProductServiceTest {
+
+    @Mock
+    ProductRepository productRepository;
+
+    @Mock
+    ProductChangeRepository productChangeRepository;
+
+    @Mock
+    EntityManager entityManager;
+
+    @Mock
+    ProductSecondLevelCache productSecondLevelCache;
+
+    @Mock
+    VersionedProductCache productsCache;
+
+    @Mock
+    ProductImportRepository productImportRepository;
+
+    @Mock
+    ProductExportRepository productExportRepository;
+
+    @Mock
+    ProductTitleIndex productTitleIndex;
+
+    // без менеджера транзакций выполняет действие сразу, что и нужно для проверки разбиения на пачки
+    @Spy
+    TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @InjectMocks
+    DefaultProductService service;
+
+    @Test
+    void findAllProducts_FilterIsBlank_ReturnsFirstPageWithNextAfter() {
+        //given
+        doReturn(List.of(new Product(1, "Товар №1", "Описание товара №1"),
+                new Product(2, "Товар №2", "Описание товара №2"),
+                new Product(3, "Товар №3", "Описание товара №3")))
+                .when(this.productRepository).findAllAfter(0, 3);
+
+        //when
+        var result = this.service.findAllProducts("  ", null, 2);
+
+        //then
+        assertEquals(List.of(new Product(1, "Товар №1", "Описание товара №1"),
+                new Product(2, "Товар №2", "Описание товара №2")), result.products());
+        assertEquals(2, result.nextAfter());
+        assertTrue(result.hasNext());
+
+        verify(this.productRepository).findAllAfter(0, 3);
+        verifyNoMoreInteractions(this.productRepository);
+    }
+
+    @Test
+    void findAllProducts_FilterIsSpecified_ReturnsLastPageWithoutNextAfter() {
+        //given
+        doReturn(List.of(new Product(3, "Товар №3", "Описание товара №3")))
+                .when(this.productRepository).findAllByTitleLikeIgnoreCaseAfter("%товар%", 1, 3);
+
+        //when
+        var result = this.service.findAllProducts("товар", 1, 2);
+
+        //then
+        assertEquals(List.of(new Product(3, "Товар №3", "Описание товара №3")), result.products());
+        assertNull(result.nextAfter());
+        assertFalse(result.hasNext());
+
+        verify(this.productRepository).findAllByTitleLikeIgnoreCaseAfter("%товар%", 1, 3);
+        verifyNoMoreInteractions(this.productRepository);
+    }
+
+    @Test
+    void findAllProducts_FilterHasNoTrigrams_SearchesByPrimaryKeyOrder() {
+        //given
+        doReturn(Optional.empty()).when(this.productRepository).findShortFilterScanEnd(0, 10_000);
+        doReturn(List.of(new Product(1, "Товар №1", "Описание товара №1")))
+                .when(this.productRepository).findAllByTitleContainingAfter("№1", 0, Integer.MAX_VALUE, 3);
+
+        //when
+        var result = this.service.findAllProducts("№1", null, 2);
+
+        //then
+        assertEquals(List.of(new Product(1, "Товар №1", "Описание товара №1")), result.products());
+        assertFalse(result.hasNext());
+
+        verify(this.productRepository).findShortFilterScanEnd(0, 10_000);
+        verify(this.productRepository).findAllByTitleContainingAfter("№1", 0, Integer.MAX_VALUE, 3);
+        verifyNoMoreInteractions(this.productRepository);
+    }
+
+    @Test
+    void findAllProducts_FilterHasNoTrigramsAndScanWindowIsFull_ReturnsScanEndAsNextAfter() {
+        //given
+        doReturn(Optional.of(10_000)).when(this.productRepository).findShortFilterScanEnd(0, 10_000);
+        doReturn(List.of(new Product(1, "Товар №1", "Описание товара №1")))
+                .when(this.productRepository).findAllByTitleContainingAfter("№1", 0, 10_000, 3);
+
+        //when
+        var result = this.service.findAllProducts("№1", null, 2);
+
+        //then
+        assertEquals(List.of(new Product(1, "Товар №1", "Описание товара №1")), result.products());
+        assertEquals(10_000, result.nextAfter());
+
+        verify(this.productRepository).findShortFilterScanEnd(0, 10_000);
+        verify(this.productRepository).findAllByTitleContainingAfter("№1", 0, 10_000, 3);
+        verifyNoMoreInteractions(this.productRepository);
+    }
+
+    @Test
+    void findAllProducts_FilterContainsWildcards_EscapesWildcards() {
+        //given
+        doReturn(List.of())
+                .when(this.productRepository).findAllByTitleLikeIgnoreCaseAfter("%100\\%\\_сок%", 0, 3);
+
+        //when
+        var result = this.service.findAllProducts("100%_сок", null, 2);
+
+        //then
+        assertEquals(List.of(), result.products());
+        verify(this.productRepository).findAllByTitleLikeIgnoreCaseAfter("%100\\%\\_сок%", 0, 3);
+        verifyNoMoreInteractions(this.productRepository);
+    }
+
+    @Test
+    void findAllProductSummaries_FilterIsSpecified_ReturnsFirstPageWithNextAfter() {
+        //given
+        var projectionFactory = new SpelAwareProxyProjectionFactory();
+        var first = projectionFactory.createProjection(ProductSummary.class,
+                Map.of("id", 1, "title", "Товар №1", "details", "Описание", "version", 0));
+        var second = projectionFactory.createProjection(ProductSummary.class,
+                Map.of("id", 2, "title", "Товар №2", "details", "Описание", "version", 0));
+        var third = projectionFactory.createProjection(ProductSummary.class,
+                Map.of("id", 3, "title", "Товар №3", "details", "Описание", "version", 0));
+        doReturn(List.of(first, second, third))
+                .when(this.productRepository).findAllSummariesByTitleLikeIgnoreCaseAfter("%товар%", 0, 3);
+
+        //when
+        var result = this.service.findAllProductSummaries("товар", null, 2);
+
+        //then
+        assertEquals(List.of(first, second), result.products());
+        assertEquals(2, result.nextAfter());
+
+        verify(this.productRepository).findAllSummariesByTitleLikeIgnoreCaseAfter("%товар%", 0, 3);
+        verifyNoMoreInteractions(this.productRepository);
+    }
+
+    @Test
+    void searchProducts_PageCrossesResultsLimit_ReturnsTruncatedPage() {
+        //given
+        doReturn(List.of()).when(this.productRepository).search("шоколадка", 990, 10);
+
+        //when
+        var result = this.service.searchProducts("шоколадка", 33, 30);
+
+        //then
+        assertEquals(List.of(), result);
+        verify(this.productRepository).search("шоколадка", 990, 10);
+        verifyNoMoreInteractions(this.productRepository);
+    }
+
+    @Test
+    void searchProducts_PageIsBeyondResultsLimit_ReturnsEmptyList() {
+        //given
+
+        //when
+        var result = this.service.searchProducts("шоколадка", 10, 100);
+
+        //then
+        assertEquals(List.of(), result);
+        verifyNoInteractions(this.productRepository);
+    }
+
+    @Test
+    void findProductsByIds_ReturnsProductsInRequestOrderAndMissingIds() {
+        //given
+        doReturn(List.of(new Product(1, "Товар №1", "Описание товара №1"),
+                new Product(3, "Товар №3", "Описание товара №3")))
+                .when(this.productRepository).findAllByIds(new Integer[]{3, 5, 1});
+
+        //when
+        var result = this.service.findProductsByIds(List.of(3, 5, 1, 3));
+
+        //then
+        assertEquals(new ProductsByIds(List.of(new Product(3, "Товар №3", "Описание товара №3"),
+                new Product(1, "Товар №1", "Описание товара №1")), List.of(5)), result);
+        verify(this.productRepository).findAllByIds(new Integer[]{3, 5, 1});
+        verifyNoMoreInteractions(this.productRepository);
+    }
+
+    @Test
+    void findProductsByIds_IdsAreEmpty_ReturnsEmptyResult() {
+        //given
+
+        //when
+        var result = this.service.findProductsByIds(List.of());
+
+        //then
+        assertEquals(new ProductsByIds(List.of(), List.of()), result);
+        verifyNoInteractions(this.productRepository);
+    }
+
+    @Test
+    void updateProduct_VersionIsNull_UpdatesProductWithSingleStatement() {
+        //given
+        doReturn(Optional.of(3)).when(this.productRepository).updateProduct(1, "Новое название", "Новое описание");
+
+        //when
+        var result = this.service.updateProduct(1, "Новое название", "Новое описание", null);
+
+        //then
+        assertEquals(new Product(1, "Новое название", "Новое описание"), result);
+        assertEquals(3, result.getVersion());
+        verify(this.productRepository).updateProduct(1, "Новое название", "Новое описание");
+        verify(this.productSecondLevelCache).evictModifiedProduct(1);
+        verify(this.productsCache).evictAfterCommit(1, 3);
+        verify(this.productChangeRepository).insertChange(1, "UPDATED", "Новое название", "Новое описание", 3);
+        verify(this.productTitleIndex).putAfterCommit(1, "Новое название");
+        verifyNoMoreInteractions(this.productRepository, this.productChangeRepository);
+    }
+
+    @Test
+    void updateProduct_VersionMatches_UpdatesProductWithSingleStatement() {
+        //given
+        doReturn(Optional.of(3)).when(this.productRepository)
+                .updateProductIfVersion(1, "Новое название", "Новое описание", 2);
+
+        //when
+        var result = this.service.updateProduct(1, "Новое название", "Новое описание", 2);
+
+        //then
+        assertEquals(3, result.getVersion());
+        verify(this.productRepository).updateProductIfVersion(1, "Новое название", "Новое описание", 2);
+        verifyNoMoreInteractions(this.productRepository);
+    }
+
+    @Test
+    void updateProduct_VersionDoesNotMatch_ThrowsOptimisticLockingFailureException() {
+        //given
+        doReturn(Optional.empty()).when(this.productRepository)
+                .updateProductIfVersion(1, "Новое название", "Новое описание", 1);
+        doReturn(true).when(this.productRepository).existsById(1);
+
+        //when
+        var exception = assertThrows(OptimisticLockingFailureException.class,
+                () -> this.service.updateProduct(1, "Новое название", "Новое описание", 1));
+
+        //then
+        assertEquals("catalogue.errors.product.version_mismatch", exception.getMessage());
+    }
+
+    @Test
+    void updateProduct_ProductDoesNotExist_ThrowsNoSuchElementException() {
+        //given
+        doReturn(Optional.empty()).when(this.productRepository).updateProduct(1, "Новое название", "Новое описание");
+
+        //when
+        var exception = assertThrows(NoSuchElementException.class,
+                () -> this.service.updateProduct(1, "Новое название", "Новое описание", null));
+
+        //then
+        assertEquals("catalogue.errors.product.not_found", exception.getMessage());
+        verify(this.productRepository).updateProduct(1, "Новое название", "Новое описание");
+        verifyNoMoreInteractions(this.productRepository);
+        verifyNoInteractions(this.productChangeRepository, this.productSecondLevelCache, this.productsCache,
+                this.productTitleIndex);
+    }
+
+    @Test
+    void deleteProduct_ProductExists_DeletesProductWithSingleStatement() {
+        //given
+        doReturn(1).when(this.productRepository).deleteProductIfVersion(1, 2);
+
+        //when
+        this.service.deleteProduct(1, 2);
+
+        //then
+        verify(this.productRepository).deleteProductIfVersion(1, 2);
+        verify(this.productSecondLevelCache).evictModifiedProduct(1);
+        verify(this.productsCache).evictAfterCommit(1, Integer.MAX_VALUE);
+        verify(this.productChangeRepository).insertChange(1, "DELETED", null, null, null);
+        verify(this.productTitleIndex).removeAfterCommit(1);
+        verifyNoMoreInteractions(this.productRepository, this.productChangeRepository);
+    }
+
+    @Test
+    void deleteProduct_ProductDoesNotExist_ThrowsNoSuchElementException() {
+        //given
+        doReturn(0).when(this.productRepository).deleteProduct(1);
+
+        //when
+        var exception = assertThrows(NoSuchElementException.class, () -> this.service.deleteProduct(1, null));
+
+        //then
+        assertEquals("catalogue.errors.product.not_found", exception.getMessage());
+        verify(this.productRepository).deleteProduct(1);
+        verifyNoMoreInteractions(this.productRepository);
+        verifyNoInteractions(this.productChangeRepository, this.productTitleIndex);
+    }
+
+    @Test
+    void createProducts_FlushesAndClearsPersistenceContextEveryBatch() {
+        //given
+        var products = IntStream.rangeClosed(1, 120)
+                .mapToObj(i -> new Product(i, "Товар №" + i, null))
+                .toList();
+
+        //when
+        var result = this.service.createProducts(products);
+
+        //then
+        assertSame(products, result);
+        verify(this.entityManager, times(120)).persist(any(Product.class));
+        // последний неполный пакет отправляется перед записью изменений
+        verify(this.entityManager, times(3)).flush();
+        verify(this.entityManager, times(2)).clear();
+        verify(this.productChangeRepository).insertCreatedChanges(
+                IntStream.rangeClosed(1, 120).boxed().toArray(Integer[]::new));
+        verifyNoInteractions(this.productRepository);
+    }
+
+    @Test
+    void createProduct_WritesCreatedChangeInSameTransaction() {
+        //given
+        doReturn(new Product(1, "Новый товар", "Описание нового товара", 0))
+                .when(this.productRepository).save(new Product(null, "Новый товар", "Описание нового товара"));
+
+        //when
+        var result = this.service.createProduct("Новый товар", "Описание нового товара");
+
+        //then
+        assertEquals(new Product(1, "Новый товар", "Описание нового товара"), result);
+        verify(this.productChangeRepository).insertChange(1, "CREATED", "Новый товар", "Описание нового товара", 0);
+        verify(this.productTitleIndex).putAfterCommit(1, "Новый товар");
+        verifyNoMoreInteractions(this.productChangeRepository);
+    }
+
+    @Test
+    void importProducts_EvictsAllProductsFromSecondLevelCache() {
+        //given
+        var importResult = new ProductImportResult(1, 0, 0, List.of());
+        doReturn(importResult).when(this.productImportRepository).importProducts(any(), eq(1000));
+
+        //when
+        var result = this.service.importProducts(Stream.of(new ProductImportRow(2, null, "Новый товар", null)), 1000);
+
+        //then
+        assertEquals(importResult, result);
+        verify(this.transactionTemplate).execute(any());
+        verify(this.productSecondLevelCache).evictAllProducts();
+        verify(this.productTitleIndex).rebuildAfterCommit();
+        verifyNoInteractions(this.productRepository, this.entityManager);
+    }
+
+    @Test
+    void importProducts_RowsExceedBatch_ImportsEachBatchInOwnTransactionAndSumsResults() {
+        //given
+        var rows = LongStream.rangeClosed(1, DefaultProductService.IMPORT_BATCH_SIZE + 1)
+                .mapToObj(line -> new ProductImportRow(line, line == 1 ? 999 : null, "Товар №" + line, null));
+        List<Integer> batchSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<ProductImportRow> batch = invocation.<Stream<ProductImportRow>>getArgument(0).toList();
+            batchSizes.add(batch.size());
+            return batch.getFirst().line() == 1
+                    ? new ProductImportResult(DefaultProductService.IMPORT_BATCH_SIZE - 1, 0, 1, List.of(1L))
+                    : new ProductImportResult(1, 0, 0, List.of());
+        }).when(this.productImportRepository).importProducts(any(), anyInt());
+
+        //when
+        var result = this.service.importProducts(rows, 1000);
+
+        //then
+        assertEquals(List.of(DefaultProductService.IMPORT_BATCH_SIZE, 1), batchSizes);
+        assertEquals(new ProductImportResult(DefaultProductService.IMPORT_BATCH_SIZE, 0, 1, List.of(1L)), result);
+        verify(this.productImportRepository).importProducts(any(), eq(1000));
+        verify(this.productImportRepository).importProducts(any(), eq(999));
+        verify(this.transactionTemplate, times(2)).execute(any());
+        verify(this.productSecondLevelCache, times(2)).evictAllProducts();
+    }
+
+    @Test
+    void exportProducts_ReadsChunksAfterLastExportedPositionUntilChunkIsIncompleteThenDeletedProducts() {
+        //given
+        var updatedSince = Instant.parse("2024-02-01T00:00:00Z");
+        var updatedAt = Instant.parse("2024-03-01T00:00:00Z");
+        var firstChunk = IntStream.rangeClosed(1, DefaultProductService.EXPORT_CHUNK_SIZE)
+                .mapToObj(id -> new ProductExport(id, "Товар №" + id, null, 0, updatedAt))
+                .toList();
+        var lastChunk = List.of(new ProductExport(1500, "Товар №1500", null, 2, updatedAt));
+        doReturn(firstChunk).when(this.productExportRepository)
+                .findAllUpdatedSinceAfter(updatedSince, 0, DefaultProductService.EXPORT_CHUNK_SIZE);
+        doReturn(lastChunk).when(this.productExportRepository)
+                .findAllUpdatedSinceAfter(updatedAt, DefaultProductService.EXPORT_CHUNK_SIZE,
+                        DefaultProductService.EXPORT_CHUNK_SIZE);
+        var deleted = ProductExport.deleted(7, updatedAt);
+        doReturn(List.of(deleted)).when(this.productExportRepository)
+                .findAllDeletedSinceAfter(updatedSince, 0, DefaultProductService.EXPORT_CHUNK_SIZE);
+        var exported = new ArrayList<ProductExport>();
+
+        //when
+        this.service.exportProducts(updatedSince, exported::add);
+
+        //then
+        assertEquals(DefaultProductService.EXPORT_CHUNK_SIZE + 2, exported.size());
+        assertEquals(lastChunk.getFirst(), exported.get(DefaultProductService.EXPORT_CHUNK_SIZE));
+        assertEquals(deleted, exported.getLast());
+        verifyNoMoreInteractions(this.productExportRepository);
+        verifyNoInteractions(this.productRepository, this.entityManager);
+    }
+
+    @Test
+    void exportProducts_UpdatedSinceIsNull_DoesNotExportDeletedProducts() {
+        //given
+        var products = List.of(new ProductExport(1, "Товар №1", null, 0, Instant.now()));
+        doReturn(products).when(this.productExportRepository)
+                .findAllUpdatedSinceAfter(null, 0, DefaultProductService.EXPORT_CHUNK_SIZE);
+        var exported = new ArrayList<ProductExport>();
+
+        //when
+        this.service.exportProducts(null, exported::add);
+
+        //then
+        assertEquals(products, exported);
+        verify(this.productExportRepository).findAllUpdatedSinceAfter(null, 0, DefaultProductService.EXPORT_CHUNK_SIZE);
+        verifyNoMoreInteractions(this.productExportRepository);
+    }
+}
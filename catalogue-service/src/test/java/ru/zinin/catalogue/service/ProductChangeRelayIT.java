@@ -0,0 +1,198 @@
+package ru.zinin.catalogue.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// изменения должны быть зафиксированы до того, как их увидит ретранслятор, поэтому тесты не транзакционные
+@SpringBootTest
+@AutoConfigureMockMvc
+@Sql(statements = "delete from catalogue.t_product_change")
+@Sql("/sql/products.sql")
+@Sql(statements = {"delete from catalogue.t_product", "delete from catalogue.t_product_change"},
+        executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class ProductChangeRelayIT {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    ProductChangeRelay productChangeRelay;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void streamProductChanges_ProductIsUpdated_SendsChangeEvent() throws Exception {
+        //given
+        var result = this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products/changes")
+                        .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //when
+        this.productService.updateProduct(1, "Новое название", "Новое описание", null);
+        this.relayAllChanges();
+
+        //then
+        var position = this.jdbcTemplate.queryForObject(
+                "select c_position from catalogue.t_product_change where c_product_id = 1", Long.class);
+        var content = awaitContent(result, "id:" + position + "\nevent:product-change\n");
+        assertTrue(content.contains("""
+                "productId":1,"type":"UPDATED","title":"Новое название","details":"Новое описание","version":1"""),
+                content);
+    }
+
+    @Test
+    void streamProductChanges_LastEventIdIsSpecified_ReplaysChangesAfterIt() throws Exception {
+        //given
+        this.productService.updateProduct(1, "Новое название", null, null);
+        this.productService.deleteProduct(2, null);
+        this.relayAllChanges();
+        var firstPosition = this.jdbcTemplate.queryForObject(
+                "select c_position from catalogue.t_product_change where c_product_id = 1", Long.class);
+
+        //when
+        var result = this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products/changes")
+                        .header("Last-Event-ID", firstPosition)
+                        .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.relayAllChanges();
+
+        //then
+        var secondPosition = this.jdbcTemplate.queryForObject(
+                "select c_position from catalogue.t_product_change where c_product_id = 2", Long.class);
+        var content = awaitContent(result, "id:" + secondPosition + "\n");
+        assertFalse(content.contains("\"productId\":1,"), content);
+        assertTrue(content.contains("\"productId\":2,\"type\":\"DELETED\""), content);
+    }
+
+    @Test
+    void streamProductChanges_LastEventIdIsFarBehind_CatchesUpAndReceivesNewChanges() throws Exception {
+        //given
+        this.jdbcTemplate.update("""
+                insert into catalogue.t_product_change (c_product_id, c_type, c_title, c_version, c_position)
+                select 1, 'UPDATED', 'Название №' || i, i, nextval('catalogue.t_product_change_position_seq')
+                from generate_series(1, 1200) i""");
+        var firstPosition = this.jdbcTemplate.queryForObject(
+                "select min(c_position) from catalogue.t_product_change", Long.class);
+        var result = this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products/changes")
+                        .header("Last-Event-ID", firstPosition - 1)
+                        .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //when
+        this.productService.deleteProduct(2, null);
+        this.relayAllChanges();
+
+        //then
+        var lastPosition = this.jdbcTemplate.queryForObject(
+                "select c_position from catalogue.t_product_change where c_product_id = 2", Long.class);
+        var content = awaitContent(result, "id:" + lastPosition + "\n");
+        assertEquals(1201, content.split("event:product-change\n", -1).length - 1, content);
+        assertTrue(content.indexOf("\"title\":\"Название №1200\"")
+                < content.indexOf("\"productId\":2,\"type\":\"DELETED\""), content);
+    }
+
+    @Test
+    void relay_ProductIsChangedByAnotherInstance_EvictsCachedProduct() {
+        //given
+        this.productService.findProduct(1);
+        // так товар изменяет экземпляр на R2DBC: мимо кэшей этого экземпляра, но с записью в t_product_change
+        this.jdbcTemplate.update("""
+                update catalogue.t_product set c_title = 'Новое название', c_version = c_version + 1
+                where id = 1""");
+        this.jdbcTemplate.update("""
+                insert into catalogue.t_product_change (c_product_id, c_type, c_title, c_details, c_version)
+                values (1, 'UPDATED', 'Новое название', 'Описание товара №1', 1)""");
+
+        //when
+        this.relayAllChanges();
+
+        //then
+        assertEquals("Новое название", this.productService.findProduct(1).orElseThrow().getTitle());
+    }
+
+    @Test
+    void heartbeat_SubscriberHasNothingToReceive_SendsComment() throws Exception {
+        //given
+        var result = this.mockMvc.perform(MockMvcRequestBuilders.get("/catalogue-api/products/changes")
+                        .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //when
+        this.productChangeRelay.heartbeat();
+
+        //then
+        awaitContent(result, ":heartbeat\n");
+    }
+
+    @Test
+    void streamProductChanges_LastEventIdIsInvalid_ReturnsBadRequest() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue-api/products/changes")
+                .header("Last-Event-ID", "abc")
+                .with(jwt().jwt(builder -> builder.claim("scope", "view_catalogue")));
+
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void updateProduct_TransactionIsRolledBack_DoesNotWriteChange() {
+        //given
+
+        //when
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> this.productService.updateProduct(1, "Новое название", null, 5));
+
+        //then
+        assertEquals(0, this.jdbcTemplate.queryForObject(
+                "select count(*) from catalogue.t_product_change where c_product_id = 1", Integer.class));
+    }
+
+    // закешированные контексты других тестов тоже запускают ретранслятор и могут удерживать блокировку
+    private void relayAllChanges() {
+        do {
+            this.productChangeRelay.relay();
+        } while (this.jdbcTemplate.queryForObject(
+                "select count(*) from catalogue.t_product_change where c_position is null", Integer.class) > 0);
+    }
+
+    // события отправляются потоком подписчика, а не проходом ретранслятора, и пишутся в ответ по частям
+    private static String awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        String content;
+        do {
+            content = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+            if (content.contains(expected) && content.endsWith("\n\n")) {
+                return content;
+            }
+            Thread.sleep(20);
+        } while (System.nanoTime() < deadline);
+        return fail(content);
+    }
+}
@@ -0,0 +1,159 @@
+package ru.zinin.catalogue.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.zinin.catalogue.entity.ProductChange;
+import ru.zinin.catalogue.entity.ProductChangeType;
+import ru.zinin.catalogue.entity.ProductExport;
+import ru.zinin.catalogue.entity.ProductSuggestion;
+import ru.zinin.catalogue.repository.ProductChangeRepository;
+import ru.zinin.catalogue.repository.ProductExportRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductTitleIndexTest {
+
+    @Mock
+    ProductExportRepository productExportRepository;
+
+    @Mock
+    ProductChangeRepository productChangeRepository;
+
+    @InjectMocks
+    ProductTitleIndex index;
+
+    @Test
+    void suggest_PrefixDiffersInCase_ReturnsProductsOrderedByTitleAndId() {
+        //given
+        this.index.put(1, "Хлеб бородинский");
+        this.index.put(2, "Шоколадка");
+        this.index.put(3, "хлеб белый");
+        this.index.put(4, "Хлеб бородинский");
+        this.index.put(5, "Ёлочная игрушка");
+
+        //when
+        var suggestions = this.index.suggest(" ХЛЕБ Б", 10);
+
+        //then
+        assertEquals(List.of(
+                new ProductSuggestion(3, "хлеб белый"),
+                new ProductSuggestion(1, "Хлеб бородинский"),
+                new ProductSuggestion(4, "Хлеб бородинский")), suggestions);
+        assertEquals(List.of(new ProductSuggestion(5, "Ёлочная игрушка")), this.index.suggest("ел", 10));
+    }
+
+    @Test
+    void suggest_MoreProductsMatch_ReturnsLimit() {
+        //given
+        IntStream.rangeClosed(1, 100).forEach(id -> this.index.put(id, "Товар №" + id));
+
+        //when
+        var suggestions = this.index.suggest("товар №1", 3);
+
+        //then
+        assertEquals(List.of(
+                new ProductSuggestion(1, "Товар №1"),
+                new ProductSuggestion(10, "Товар №10"),
+                new ProductSuggestion(100, "Товар №100")), suggestions);
+    }
+
+    @Test
+    void put_ProductIsRenamed_ReplacesPreviousTitle() {
+        //given
+        this.index.put(1, "Шоколадка");
+
+        //when
+        this.index.put(1, "Хлеб");
+
+        //then
+        assertEquals(List.of(), this.index.suggest("шок", 10));
+        assertEquals(List.of(new ProductSuggestion(1, "Хлеб")), this.index.suggest("хл", 10));
+    }
+
+    @Test
+    void removeAfterCommit_NoTransaction_RemovesProductImmediately() {
+        //given
+        this.index.put(1, "Шоколадка");
+
+        //when
+        this.index.removeAfterCommit(1);
+
+        //then
+        assertEquals(List.of(), this.index.suggest("шок", 10));
+    }
+
+    @Test
+    void rebuild_ReadsProductsInChunksAndReplacesIndex() {
+        //given
+        this.index.put(1_000_000, "Удалённый товар");
+        var updatedAt = Instant.parse("2024-03-01T00:00:00Z");
+        var firstChunk = IntStream.rangeClosed(1, ProductTitleIndex.REBUILD_CHUNK_SIZE)
+                .mapToObj(id -> new ProductExport(id, "Товар №" + id, null, 0, updatedAt))
+                .toList();
+        doReturn(firstChunk).when(this.productExportRepository)
+                .findAllUpdatedSinceAfter(null, 0, ProductTitleIndex.REBUILD_CHUNK_SIZE);
+        doReturn(List.of(new ProductExport(1500, "Шоколадка", null, 0, updatedAt))).when(this.productExportRepository)
+                .findAllUpdatedSinceAfter(null, ProductTitleIndex.REBUILD_CHUNK_SIZE,
+                        ProductTitleIndex.REBUILD_CHUNK_SIZE);
+
+        //when
+        this.index.rebuild();
+
+        //then
+        assertEquals(List.of(), this.index.suggest("удал", 10));
+        assertEquals(List.of(new ProductSuggestion(1500, "Шоколадка")), this.index.suggest("шок", 10));
+        assertEquals(List.of(new ProductSuggestion(1000, "Товар №1000")), this.index.suggest("товар №1000", 10));
+        verifyNoMoreInteractions(this.productExportRepository);
+    }
+
+    @Test
+    void applyChanges_IndexIsNotBuilt_DoesNotReadChanges() {
+        //when
+        this.index.applyChanges();
+
+        //then
+        verifyNoInteractions(this.productChangeRepository);
+    }
+
+    @Test
+    void applyChanges_ChangesOfOtherInstances_AppliesThemAfterRebuildPosition() {
+        //given
+        doReturn(10L).when(this.productChangeRepository).findLastPosition();
+        doReturn(List.of(
+                new ProductExport(1, "Шоколадка", null, 0, Instant.now()),
+                new ProductExport(2, "Хлеб", null, 0, Instant.now())))
+                .when(this.productExportRepository).findAllUpdatedSinceAfter(null, 0,
+                        ProductTitleIndex.REBUILD_CHUNK_SIZE);
+        this.index.rebuild();
+        doReturn(List.of(
+                change(11, 1, ProductChangeType.UPDATED, "Шоколад"),
+                change(12, 2, ProductChangeType.DELETED, null),
+                change(13, 3, ProductChangeType.CREATED, "Шоколадный батончик")))
+                .when(this.productChangeRepository).findAllAfterPosition(10,
+                        ProductTitleIndex.CHANGES_BATCH_SIZE);
+
+        //when
+        this.index.applyChanges();
+        this.index.applyChanges();
+
+        //then
+        assertEquals(List.of(
+                new ProductSuggestion(1, "Шоколад"),
+                new ProductSuggestion(3, "Шоколадный батончик")), this.index.suggest("шок", 10));
+        assertEquals(List.of(), this.index.suggest("хл", 10));
+        verify(this.productChangeRepository).findAllAfterPosition(13, ProductTitleIndex.CHANGES_BATCH_SIZE);
+    }
+
+    private static ProductChange change(long position, int productId, ProductChangeType type, String title) {
+        return new ProductChange(position, productId, type, title, null, null, Instant.now(), position);
+    }
+}
@@ -0,0 +1,94 @@
+package ru.zinin.catalogue.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.MessageSource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.zinin.catalogue.controller.payload.UpdateProductPayload;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.service.ReactiveProductService;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveProductRestControllerTest {
+
+    @Mock
+    ReactiveProductService productService;
+
+    @Mock
+    MessageSource messageSource;
+
+    @InjectMocks
+    ReactiveProductRestController productRestController;
+
+    @Test
+    void findProduct_ProductExists_ReturnsProductWithETag() {
+        //given
+        var product = new Product(1, "Товар", "Описание товара", 3);
+        doReturn(Mono.just(product)).when(this.productService).findProduct(1);
+
+        //when
+        StepVerifier.create(this.productRestController.findProduct(1))
+                //then
+                .assertNext(result -> {
+                    assertEquals(HttpStatus.OK, result.getStatusCode());
+                    assertEquals("\"3\"", result.getHeaders().getETag());
+                    assertEquals(product, result.getBody());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void findProduct_ProductDoesNotExist_EmitsNoSuchElementException() {
+        //given
+        doReturn(Mono.empty()).when(this.productService).findProduct(1);
+
+        //when
+        StepVerifier.create(this.productRestController.findProduct(1))
+                //then
+                .expectErrorSatisfies(exception -> {
+                    assertInstanceOf(NoSuchElementException.class, exception);
+                    assertEquals("catalogue.errors.product.not_found", exception.getMessage());
+                })
+                .verify();
+    }
+
+    @Test
+    void updateProduct_IfMatchIsPresent_PassesVersionAndReturnsNewETag() {
+        //given
+        doReturn(Mono.just(new Product(1, "Новое название", "Новое описание", 4)))
+                .when(this.productService).updateProduct(1, "Новое название", "Новое описание", 3);
+
+        //when
+        StepVerifier.create(this.productRestController.updateProduct(1, "\"3\"",
+                        new UpdateProductPayload("Новое название", "Новое описание")))
+                //then
+                .assertNext(result -> {
+                    assertEquals(HttpStatus.NO_CONTENT, result.getStatusCode());
+                    assertEquals("\"4\"", result.getHeaders().getETag());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void updateProduct_IfMatchIsWeak_ThrowsOptimisticLockingFailureException() {
+        //given
+
+        //when
+        assertThrows(OptimisticLockingFailureException.class, () -> this.productRestController.updateProduct(1,
+                "W/\"3\"", new UpdateProductPayload("Новое название", "Новое описание")));
+
+        //then
+        verifyNoInteractions(this.productService);
+    }
+}
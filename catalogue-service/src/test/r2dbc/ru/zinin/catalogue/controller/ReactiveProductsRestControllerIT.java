@@ -0,0 +1,336 @@
+package ru.zinin.catalogue.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import ru.zinin.catalogue.entity.Product;
+import ru.zinin.catalogue.service.R2dbcProductChangeOutbox;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockJwt;
+
+// профиль r2dbc целиком: WebFlux, R2DBC и миграции Flyway через JDBC к той же базе
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("r2dbc")
+@AutoConfigureWebTestClient
+class ReactiveProductsRestControllerIT {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    @Autowired
+    R2dbcProductChangeOutbox productChangeOutbox;
+
+    // R2DBC-драйвер не понимает адреса jdbc:tc, поэтому настоящий адрес базы берётся у JDBC-соединения
+    @DynamicPropertySource
+    static void r2dbcProperties(DynamicPropertyRegistry registry) throws SQLException {
+        String username = Objects.requireNonNullElse(System.getenv("SPRING_DATASOURCE_USERNAME"), "test");
+        String password = Objects.requireNonNullElse(System.getenv("SPRING_DATASOURCE_PASSWORD"), "test");
+        String url;
+        try (Connection connection = DriverManager.getConnection(Objects.requireNonNullElse(
+                System.getenv("SPRING_DATASOURCE_URL"), "jdbc:tc:postgresql:16:///selmag?TC_DAEMON=true"),
+                username, password)) {
+            url = connection.getMetaData().getURL().split("\\?")[0];
+        }
+        registry.add("spring.datasource.url", () -> url);
+        registry.add("spring.datasource.username", () -> username);
+        registry.add("spring.datasource.password", () -> password);
+        registry.add("spring.r2dbc.url", () -> "r2dbc:" + url.substring("jdbc:".length()));
+        registry.add("spring.r2dbc.username", () -> username);
+        registry.add("spring.r2dbc.password", () -> password);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        this.databaseClient.sql("delete from catalogue.t_product").then()
+                .then(this.databaseClient.sql("delete from catalogue.t_product_change").then())
+                .then(this.databaseClient.sql("alter sequence catalogue.t_product_id_seq restart").then())
+                .block();
+    }
+
+    @Test
+    void findAllProducts_ReturnsPagesWithETagAndNextCursor() {
+        //given
+        this.insertProducts();
+
+        //when
+        var firstPage = this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "view_catalogue")))
+                .get()
+                .uri("/catalogue-api/products?filter=товар&limit=2")
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectHeader().exists(ProductsRestController.NEXT_CURSOR_HEADER)
+                .expectBody().json("""
+                        [
+                            {"id": 1, "title": "Товар №1", "details": "Описание товара №1"},
+                            {"id": 2, "title": "Товар №2", "details": "Описание товара №2"}
+                        ]""")
+                .returnResult();
+
+        this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "view_catalogue")))
+                .get()
+                .uri("/catalogue-api/products?filter=товар&limit=2&after={after}",
+                        firstPage.getResponseHeaders().getFirst(ProductsRestController.NEXT_CURSOR_HEADER))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(ProductsRestController.NEXT_CURSOR_HEADER)
+                .expectBody().json("""
+                        [
+                            {"id": 3, "title": "Товар №3", "details": "Описание товара №3"}
+                        ]""");
+    }
+
+    @Test
+    void findAllProducts_SummaryView_ReturnsSummaries() {
+        //given
+        this.insertProducts();
+
+        //when
+        this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "view_catalogue")))
+                .get()
+                .uri("/catalogue-api/products?filter=№&view=summary")
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].version").doesNotExist();
+    }
+
+    @Test
+    void findProductsByIds_ReturnsProductsInRequestOrderAndMissingIds() {
+        //given
+        this.insertProducts();
+
+        //when
+        this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "view_catalogue")))
+                .post()
+                .uri("/catalogue-api/products/by-ids")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[3, 10, 1]")
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectBody().json("""
+                        {
+                            "products": [
+                                {"id": 3, "title": "Товар №3", "details": "Описание товара №3"},
+                                {"id": 1, "title": "Товар №1", "details": "Описание товара №1"}
+                            ],
+                            "missingIds": [10]
+                        }""");
+    }
+
+    @Test
+    void createProduct_RequestIsValid_ReturnsCreatedProductAndRecordsChange() {
+        //given
+
+        //when
+        this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "edit_catalogue")))
+                .post()
+                .uri("/catalogue-api/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"title": "Ещё один товар", "details": "Описание ещё одного товара"}""")
+                .exchange()
+                //then
+                .expectStatus().isCreated()
+                // блок идентификаторов остаётся у сервиса от предыдущих тестов, поэтому id заранее неизвестен
+                .expectHeader().valueMatches(HttpHeaders.LOCATION, ".*/catalogue-api/products/\\d+")
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody().json("""
+                        {"title": "Ещё один товар", "details": "Описание ещё одного товара"}""");
+
+        assertEquals("CREATED", this.databaseClient.sql("select c_type from catalogue.t_product_change")
+                .map(row -> row.get("c_type", String.class))
+                .one()
+                .block());
+    }
+
+    @Test
+    void createProduct_SeveralProducts_TakesIdsFromOneSequenceBlock() {
+        //given
+        var first = this.createProduct("Первый товар");
+
+        //when
+        var second = this.createProduct("Второй товар");
+        var third = this.createProduct("Третий товар");
+
+        //then
+        assertEquals(first + 1, second);
+        assertEquals(first + 2, third);
+        // при вставке с id по умолчанию три товара сдвинули бы последовательность до 101
+        assertTrue(this.databaseClient.sql("select last_value from catalogue.t_product_id_seq")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .block() <= 51);
+    }
+
+    @Test
+    void assignPositions_ProductIsCreated_AssignsPositionToChange() {
+        //given
+        this.createProduct("Ещё один товар");
+
+        //when
+        this.productChangeOutbox.assignPositions().block();
+
+        //then
+        assertEquals(0L, this.databaseClient.sql(
+                        "select count(*) from catalogue.t_product_change where c_position is null")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .block());
+    }
+
+    @Test
+    void createProduct_RequestIsInvalid_ReturnsProblemDetail() {
+        //given
+
+        //when
+        this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "edit_catalogue")))
+                .post()
+                .uri("/catalogue-api/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"title": "  ", "details": null}""")
+                .exchange()
+                //then
+                .expectStatus().isBadRequest()
+                .expectBody().json("""
+                        {
+                            "errors": [
+                                "Название товара должно быть от 3 до 50 символов"
+                            ]
+                        }""");
+    }
+
+    @Test
+    void createProduct_UserIsNotAuthorized_ReturnsForbidden() {
+        //given
+
+        //when
+        this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "view_catalogue")))
+                .post()
+                .uri("/catalogue-api/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"title": "Ещё один товар", "details": null}""")
+                .exchange()
+                //then
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void findProduct_ProductDoesNotExist_ReturnsNotFound() {
+        //given
+
+        //when
+        this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "view_catalogue")))
+                .get()
+                .uri("/catalogue-api/products/1")
+                .exchange()
+                //then
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.detail").isEqualTo("Товар не найден");
+    }
+
+    @Test
+    void updateProduct_IfMatchIsCurrent_ReturnsNewETag() {
+        //given
+        this.insertProducts();
+
+        //when
+        this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "edit_catalogue")))
+                .patch()
+                .uri("/catalogue-api/products/1")
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"title": "Новое название", "details": "Новое описание"}""")
+                .exchange()
+                //then
+                .expectStatus().isNoContent()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+    }
+
+    @Test
+    void updateProduct_IfMatchIsStale_ReturnsPreconditionFailed() {
+        //given
+        this.insertProducts();
+
+        //when
+        this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "edit_catalogue")))
+                .patch()
+                .uri("/catalogue-api/products/1")
+                .header(HttpHeaders.IF_MATCH, "\"5\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"title": "Новое название", "details": "Новое описание"}""")
+                .exchange()
+                //then
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    void deleteProduct_ProductExists_ReturnsNoContent() {
+        //given
+        this.insertProducts();
+
+        //when
+        this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "edit_catalogue")))
+                .delete()
+                .uri("/catalogue-api/products/1")
+                .exchange()
+                //then
+                .expectStatus().isNoContent();
+
+        assertEquals(2L, this.databaseClient.sql("select count(*) from catalogue.t_product")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .block());
+    }
+
+    private Integer createProduct(String title) {
+        return this.webTestClient.mutateWith(mockJwt().jwt(builder -> builder.claim("scope", "edit_catalogue")))
+                .post()
+                .uri("/catalogue-api/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("title", title))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Product.class)
+                .returnResult()
+                .getResponseBody()
+                .getId();
+    }
+
+    private void insertProducts() {
+        this.databaseClient.sql("""
+                        insert into catalogue.t_product(id, c_title, c_details)
+                        select i, 'Товар №' || i, 'Описание товара №' || i
+                        from generate_series(1, 3) i""")
+                .then()
+                .block();
+    }
+}
@@ -0,0 +1,5 @@
+insert into catalogue.t_product (id, c_title, c_details)
+select i, 'Товар №' || i, 'Описание товара №' || i
+from generate_series(5, 20000) as i;
+
+analyze catalogue.t_product;
@@ -2,8 +2,11 @@ package ru.zinin.customer;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import ru.zinin.customer.config.CustomerRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(CustomerRuntimeHints.class)
 public class CustomerApplication {
 
     public static void main(String[] args) {
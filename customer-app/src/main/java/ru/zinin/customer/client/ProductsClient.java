@@ -4,9 +4,13 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.zinin.customer.entity.Product;
 
+import java.util.List;
+
 public interface ProductsClient {
 
     Flux<Product> findAllProducts(String filter);
 
+    Flux<Product> findProductsByIds(List<Integer> ids);
+
     Mono<Product> findProduct(Integer productId);
 }
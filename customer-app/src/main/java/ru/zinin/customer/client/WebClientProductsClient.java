@@ -7,17 +7,45 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.zinin.customer.entity.Product;
 
+import java.util.List;
+import java.util.Optional;
+
 @RequiredArgsConstructor
 public class WebClientProductsClient implements ProductsClient {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int PAGE_LIMIT = 200;
+
+    // как ProductsRestController.MAX_IDS_COUNT в catalogue-service
+    private static final int MAX_IDS_COUNT = 1000;
+
+    private static final int MAX_CONCURRENT_IDS_REQUESTS = 4;
+
     private final WebClient webClient;
 
     @Override
     public Flux<Product> findAllProducts(String filter) {
-        return this.webClient.get()
-                .uri("/catalogue-api/products?filter={filter}", filter)
-                .retrieve()
-                .bodyToFlux(Product.class);
+        // следующая страница запрашивается только тогда, когда подписчик дочитал предыдущую
+        return this.findProductsPage(filter, null)
+                .expand(page -> page.nextCursor() == null
+                        ? Mono.empty()
+                        : this.findProductsPage(filter, page.nextCursor()))
+                .concatMapIterable(ProductsPage::products);
+    }
+
+    @Override
+    public Flux<Product> findProductsByIds(List<Integer> ids) {
+        // каталог принимает не больше MAX_IDS_COUNT идентификаторов за запрос, пачки запрашиваются параллельно,
+        // а товары отдаются в порядке ids
+        return Flux.fromIterable(ids)
+                .buffer(MAX_IDS_COUNT)
+                .flatMapSequential(chunk -> this.webClient.post()
+                        .uri("/catalogue-api/products/by-ids")
+                        .bodyValue(chunk)
+                        .retrieve()
+                        .bodyToMono(ProductsByIds.class)
+                        .flatMapIterable(ProductsByIds::products), MAX_CONCURRENT_IDS_REQUESTS);
     }
 
     @Override
@@ -28,4 +56,26 @@ public class WebClientProductsClient implements ProductsClient {
                 .bodyToMono(Product.class)
                 .onErrorComplete(WebClientResponseException.NotFound.class);
     }
+
+    private Mono<ProductsPage> findProductsPage(String filter, String after) {
+        return this.webClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/catalogue-api/products")
+                        .queryParamIfPresent("filter", Optional.ofNullable(filter))
+                        .queryParamIfPresent("after", Optional.ofNullable(after))
+                        .queryParam("limit", PAGE_LIMIT)
+                        // в списке нужны только названия и начало описания
+                        .queryParam("view", "summary")
+                        .build())
+                .retrieve()
+                .toEntityList(Product.class)
+                .map(entity -> new ProductsPage(
+                        entity.getBody() == null ? List.of() : entity.getBody(),
+                        entity.getHeaders().getFirst(NEXT_CURSOR_HEADER)));
+    }
+
+    private record ProductsPage(List<Product> products, String nextCursor) {
+    }
+
+    private record ProductsByIds(List<Product> products, List<Integer> missingIds) {
+    }
 }
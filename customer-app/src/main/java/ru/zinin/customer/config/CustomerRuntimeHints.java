@@ -0,0 +1,24 @@
+package ru.zinin.customer.config;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import ru.zinin.customer.client.payload.NewFavouriteProductPayload;
+import ru.zinin.customer.controller.payload.NewProductReviewPayload;
+import ru.zinin.customer.entity.FavouriteProduct;
+import ru.zinin.customer.entity.Product;
+import ru.zinin.customer.entity.ProductReview;
+
+// подсказки для native-image: записи, которые WebClient передаёт сервисам,
+// а Thymeleaf и привязка форм читают через рефлексию
+public class CustomerRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        this.bindingRegistrar.registerReflectionHints(hints.reflection(),
+                Product.class, FavouriteProduct.class, ProductReview.class, NewFavouriteProductPayload.class,
+                ru.zinin.customer.client.payload.NewProductReviewPayload.class, NewProductReviewPayload.class);
+    }
+}
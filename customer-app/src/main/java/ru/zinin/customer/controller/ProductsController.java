@@ -11,6 +11,8 @@ import ru.zinin.customer.client.FavouriteProductsClient;
 import ru.zinin.customer.client.ProductsClient;
 import ru.zinin.customer.entity.FavouriteProduct;
 
+import java.util.Locale;
+
 @Controller
 @RequiredArgsConstructor
 @RequestMapping("customer/products")
@@ -40,8 +42,10 @@ public class ProductsController {
         return this.favouriteProductsClient.findFavouriteProducts()
                 .map(FavouriteProduct::productId)
                 .collectList()
-                .flatMap(favouriteProducts -> this.productsClient.findAllProducts(filter)
-                        .filter(product -> favouriteProducts.contains(product.id()))
+                // запрашиваем только избранные товары и фильтруем их на месте, а не выгружаем весь каталог
+                .flatMap(favouriteProducts -> this.productsClient.findProductsByIds(favouriteProducts)
+                        .filter(product -> filter == null || product.title().toLowerCase(Locale.ROOT)
+                                .contains(filter.toLowerCase(Locale.ROOT)))
                         .collectList()
                         .doOnNext(products -> model.addAttribute("products", products)))
                 .thenReturn("customer/products/favourites");
@@ -10,7 +10,11 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockUser;
 
 @SpringBootTest
@@ -59,7 +63,39 @@ class ProductsControllerIT {
                 .expectStatus().isOk();
 
         verify(getRequestedFor(urlPathMatching("/catalogue-api/products"))
-                .withQueryParam("filter", equalTo("фильтр")));
+                .withQueryParam("filter", equalTo("фильтр"))
+                .withQueryParam("view", equalTo("summary")));
+    }
+
+    @Test
+    void getProductsListPage_CatalogueReturnsSeveralPages_RequestsAllPages() {
+        // given
+        stubFor(get(urlPathMatching("/catalogue-api/products"))
+                .withQueryParam("filter", equalTo("страницы"))
+                .withQueryParam("after", absent())
+                .willReturn(okJson("""
+                        [
+                            {"id": 1, "title": "Товар №1", "details": "Описание товара №1"}
+                        ]""").withHeader("X-Next-Cursor", "aWQ6MQ")));
+        stubFor(get(urlPathMatching("/catalogue-api/products"))
+                .withQueryParam("filter", equalTo("страницы"))
+                .withQueryParam("after", equalTo("aWQ6MQ"))
+                .willReturn(okJson("""
+                        [
+                            {"id": 2, "title": "Товар №2", "details": "Описание товара №2"}
+                        ]""")));
+
+        // when
+        this.webTestClient
+                .mutateWith(mockUser())
+                .get()
+                .uri("/customer/products/list?filter=страницы")
+                .exchange()
+                // then
+                .expectStatus().isOk();
+
+        verify(2, getRequestedFor(urlPathMatching("/catalogue-api/products"))
+                .withQueryParam("filter", equalTo("страницы")));
     }
 
     @Test
@@ -94,6 +130,16 @@ class ProductsControllerIT {
                             }
                         ]""")
                         .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)));
+        stubFor(post(urlPathMatching("/catalogue-api/products/by-ids"))
+                .withRequestBody(equalToJson("[1, 3]"))
+                .willReturn(okJson("""
+                        {
+                            "products": [
+                                {"id": 1, "title": "Отфильтрованный товар №1", "details": "Описание отфильтрованного товара №1"},
+                                {"id": 3, "title": "Товар №3", "details": "Описание товара №3"}
+                            ],
+                            "missingIds": []
+                        }""")));
         //when
         this.webTestClient
                 .mutateWith(mockUser())
@@ -101,13 +147,62 @@ class ProductsControllerIT {
                 .uri("/customer/products/favourites?filter=фильтр")
                 .exchange()
                 //then
-                .expectStatus().isOk();
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> {
+                    assertTrue(body.contains("Отфильтрованный товар №1"));
+                    assertFalse(body.contains("Товар №3"));
+                });
 
-        verify(getRequestedFor(urlPathMatching("/catalogue-api/products"))
-                .withQueryParam("filter", equalTo("фильтр")));
+        verify(postRequestedFor(urlPathMatching("/catalogue-api/products/by-ids"))
+                .withRequestBody(equalToJson("[1, 3]")));
+        verify(0, getRequestedFor(urlPathMatching("/catalogue-api/products")));
         verify(getRequestedFor(urlPathMatching("/feedback-api/favourite-products")));
     }
 
+    @Test
+    void getFavouriteProductsList_MoreThanThousandFavourites_RequestsProductsInChunks() {
+        //given
+        stubFor(get(urlPathMatching("/feedback-api/favourite-products"))
+                .willReturn(okJson(IntStream.rangeClosed(1, 1001)
+                        .mapToObj("{\"productId\": %d}"::formatted)
+                        .collect(Collectors.joining(",", "[", "]")))));
+        stubFor(post(urlPathMatching("/catalogue-api/products/by-ids"))
+                .willReturn(okJson("""
+                        {
+                            "products": [],
+                            "missingIds": []
+                        }""")));
+        stubFor(post(urlPathMatching("/catalogue-api/products/by-ids"))
+                .withRequestBody(equalToJson("[1001]"))
+                .willReturn(okJson("""
+                        {
+                            "products": [
+                                {"id": 1001, "title": "Товар №1001", "details": "Описание товара №1001"}
+                            ],
+                            "missingIds": []
+                        }""")));
+
+        //when
+        this.webTestClient
+                .mutateWith(mockUser())
+                .get()
+                .uri("/customer/products/favourites")
+                .exchange()
+                //then
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertTrue(body.contains("Товар №1001")));
+
+        verify(2, postRequestedFor(urlPathMatching("/catalogue-api/products/by-ids")));
+        verify(postRequestedFor(urlPathMatching("/catalogue-api/products/by-ids"))
+                .withRequestBody(equalToJson(IntStream.rangeClosed(1, 1000)
+                        .mapToObj(Integer::toString)
+                        .collect(Collectors.joining(",", "[", "]")))));
+        verify(postRequestedFor(urlPathMatching("/catalogue-api/products/by-ids"))
+                .withRequestBody(equalToJson("[1001]")));
+    }
+
     @Test
     void getFavouriteProductsList_UserIsNotAuthenticated_RedirectToLoginPage() {
         //given
@@ -66,28 +66,52 @@ class ProductsControllerTest {
 
         doReturn(Flux.fromIterable(List.of(
                 new Product(1, "Отфильтрованный товар №1", "Описание отфильтрованного товара №1"),
-                new Product(2, "Отфильтрованный товар №2", "Описание отфильтрованного товара №2"),
-                new Product(3, "Отфильтрованный товар №3", "Описание отфильтрованного товара №3")
-        ))).when(this.productsClient).findAllProducts("фильтр");
+                new Product(3, "Товар №3", "Описание товара №3")
+        ))).when(this.productsClient).findProductsByIds(List.of(1, 3));
 
         doReturn(Flux.fromIterable(List.of(
                 new FavouriteProduct(UUID.fromString("a16f0218-cbaf-11ee-9e6c-6b0fa3631587"), 1),
                 new FavouriteProduct(UUID.fromString("a42ff37c-cbaf-11ee-8b1d-cb00912914b5"), 3)
         ))).when(this.favouriteProductsClient).findFavouriteProducts();
         //when
-        StepVerifier.create(this.controller.getFavouriteProductsPage(model, "фильтр"))
+        StepVerifier.create(this.controller.getFavouriteProductsPage(model, "Фильтр"))
                 //then
                 .expectNext("customer/products/favourites")
                 .verifyComplete();
 
-        assertEquals("фильтр", model.getAttribute("filter"));
+        assertEquals("Фильтр", model.getAttribute("filter"));
         assertEquals(List.of(
-                new Product(1, "Отфильтрованный товар №1", "Описание отфильтрованного товара №1"),
-                new Product(3, "Отфильтрованный товар №3", "Описание отфильтрованного товара №3")
+                new Product(1, "Отфильтрованный товар №1", "Описание отфильтрованного товара №1")
         ), model.getAttribute("products"));
 
-        verify(this.productsClient).findAllProducts("фильтр");
+        verify(this.productsClient).findProductsByIds(List.of(1, 3));
         verify(this.favouriteProductsClient).findFavouriteProducts();
         verifyNoMoreInteractions(this.productsClient, this.favouriteProductsClient);
     }
-}
\ No newline at end of file
+
+    @Test
+    void getFavouriteProductsPage_FilterIsNull_ReturnsAllFavouriteProducts() {
+        //given
+        var model = new ConcurrentModel();
+
+        doReturn(Flux.fromIterable(List.of(
+                new Product(3, "Товар №3", "Описание товара №3"),
+                new Product(1, "Товар №1", "Описание товара №1")
+        ))).when(this.productsClient).findProductsByIds(List.of(3, 1));
+
+        doReturn(Flux.fromIterable(List.of(
+                new FavouriteProduct(UUID.fromString("a42ff37c-cbaf-11ee-8b1d-cb00912914b5"), 3),
+                new FavouriteProduct(UUID.fromString("a16f0218-cbaf-11ee-9e6c-6b0fa3631587"), 1)
+        ))).when(this.favouriteProductsClient).findFavouriteProducts();
+        //when
+        StepVerifier.create(this.controller.getFavouriteProductsPage(model, null))
+                //then
+                .expectNext("customer/products/favourites")
+                .verifyComplete();
+
+        assertEquals(List.of(
+                new Product(3, "Товар №3", "Описание товара №3"),
+                new Product(1, "Товар №1", "Описание товара №1")
+        ), model.getAttribute("products"));
+    }
+}
@@ -7,8 +7,11 @@ import io.swagger.v3.oas.annotations.security.OAuthScope;
 import io.swagger.v3.oas.annotations.security.SecurityScheme;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import ru.zinin.feedback.config.FeedbackRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(FeedbackRuntimeHints.class)
 @SecurityScheme(
         name = "keycloak",
         type = SecuritySchemeType.OAUTH2,
@@ -0,0 +1,106 @@
+package ru.zinin.feedback.config;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jose.util.ResourceRetriever;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URL;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// копия ru.zinin.catalogue.config.BackgroundJwkSetSource, тесты у обеих копий одинаковые
+// ключи Keycloak загружаются и обновляются в фоне: поток запроса проверяет подпись по ключам в памяти
+// и никогда не ждёт ответа Keycloak
+@Slf4j
+public class BackgroundJwkSetSource implements JWKSource<SecurityContext>, AutoCloseable {
+
+    static final int JWK_SET_SIZE_LIMIT = 50 * 1024;
+
+    private final URL jwkSetUrl;
+
+    private final ResourceRetriever resourceRetriever;
+
+    private final Duration refreshInterval;
+
+    private final long minRefreshIntervalNanos;
+
+    private final AtomicLong lastRefreshRequestedAt;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("jwk-set-refresh").daemon().factory());
+
+    private volatile JWKSet jwkSet = new JWKSet();
+
+    public BackgroundJwkSetSource(URL jwkSetUrl, Duration refreshInterval, Duration minRefreshInterval,
+                                  Duration timeout) {
+        this(jwkSetUrl, new DefaultResourceRetriever((int) timeout.toMillis(), (int) timeout.toMillis(),
+                JWK_SET_SIZE_LIMIT), refreshInterval, minRefreshInterval);
+    }
+
+    BackgroundJwkSetSource(URL jwkSetUrl, ResourceRetriever resourceRetriever, Duration refreshInterval,
+                           Duration minRefreshInterval) {
+        this.jwkSetUrl = jwkSetUrl;
+        this.resourceRetriever = resourceRetriever;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshIntervalNanos = minRefreshInterval.toNanos();
+        this.lastRefreshRequestedAt = new AtomicLong(System.nanoTime() - this.minRefreshIntervalNanos);
+    }
+
+    // при failFast ключи загружаются в потоке запуска, и недоступный Keycloak останавливает запуск сервиса
+    public void start(boolean failFast) throws IOException, ParseException {
+        if (failFast) {
+            this.refresh();
+        } else {
+            this.scheduler.execute(this::refreshQuietly);
+        }
+        this.scheduler.scheduleWithFixedDelay(this::refreshQuietly, this.refreshInterval.toMillis(),
+                this.refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        List<JWK> keys = jwkSelector.select(this.jwkSet);
+        if (keys.isEmpty()) {
+            this.requestRefresh();
+        }
+        return keys;
+    }
+
+    @Override
+    public void close() {
+        this.scheduler.shutdownNow();
+    }
+
+    void refresh() throws IOException, ParseException {
+        this.jwkSet = JWKSet.parse(this.resourceRetriever.retrieveResource(this.jwkSetUrl).getContent());
+    }
+
+    // неизвестный kid означает смену ключей в Keycloak: внеочередная загрузка, но не чаще minRefreshInterval
+    private void requestRefresh() {
+        long now = System.nanoTime();
+        long lastRequestedAt = this.lastRefreshRequestedAt.get();
+        if (now - lastRequestedAt >= this.minRefreshIntervalNanos
+            && this.lastRefreshRequestedAt.compareAndSet(lastRequestedAt, now)) {
+            this.scheduler.execute(this::refreshQuietly);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            this.refresh();
+        } catch (IOException | ParseException | RuntimeException exception) {
+            log.warn("Could not refresh JWK set from {}", this.jwkSetUrl, exception);
+        }
+    }
+}
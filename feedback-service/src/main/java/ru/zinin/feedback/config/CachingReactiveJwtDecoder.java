@@ -0,0 +1,78 @@
+package ru.zinin.feedback.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+// повторяет ru.zinin.catalogue.config.CachingJwtDecoder: общего модуля у сервисов нет, исправления вносятся в обе копии
+// один и тот же токен приходит с каждым запросом клиента: подпись проверяется один раз,
+// дальше проверенный токен берётся из кэша по хэшу до наступления exp
+public class CachingReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+
+    private final Cache<String, Jwt> validatedTokens;
+
+    public CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, long maximumSize) {
+        this.delegate = delegate;
+        this.validatedTokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ExpiresAt())
+                .build();
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) throws JwtException {
+        String tokenHash = hash(token);
+        Jwt jwt = this.validatedTokens.getIfPresent(tokenHash);
+        if (jwt != null) {
+            return Mono.just(jwt);
+        }
+        return this.delegate.decode(token)
+                .doOnNext(decoded -> {
+                    // токен без exp проверяется при каждом запросе
+                    if (decoded.getExpiresAt() != null) {
+                        this.validatedTokens.put(tokenHash, decoded);
+                    }
+                });
+    }
+
+    // в кэше хранится хэш, а не сам токен
+    static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static final class ExpiresAt implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            return Math.max(0, TimeUnit.MILLISECONDS.toNanos(
+                    jwt.getExpiresAt().toEpochMilli() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return this.expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.zinin.feedback.config;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.OAuthFlow;
+import io.swagger.v3.oas.annotations.security.OAuthFlows;
+import io.swagger.v3.oas.annotations.security.OAuthScope;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.security.SecurityScheme;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import ru.zinin.feedback.controller.payload.NewFavouriteProductPayload;
+import ru.zinin.feedback.controller.payload.NewProductReviewPayload;
+import ru.zinin.feedback.entity.FavouriteProduct;
+import ru.zinin.feedback.entity.ProductReview;
+
+// подсказки для native-image: то, что читается рефлексией и не выводится AOT из определений бинов
+public class FeedbackRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // документы MongoDB с Lombok: конвертер Spring Data заполняет поля через конструктор и сеттеры
+        for (var document : new Class<?>[]{FavouriteProduct.class, ProductReview.class}) {
+            hints.reflection().registerType(document, MemberCategory.DECLARED_FIELDS,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+
+        this.bindingRegistrar.registerReflectionHints(hints.reflection(),
+                FavouriteProduct.class, ProductReview.class, NewFavouriteProductPayload.class,
+                NewProductReviewPayload.class);
+
+        // атрибуты аннотаций springdoc читаются при построении /v3/api-docs
+        for (var annotation : new Class<?>[]{SecurityScheme.class, OAuthFlows.class, OAuthFlow.class,
+                OAuthScope.class, Operation.class, SecurityRequirement.class}) {
+            hints.reflection().registerType(annotation, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+    }
+}
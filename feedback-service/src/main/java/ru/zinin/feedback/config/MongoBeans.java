@@ -0,0 +1,31 @@
+package ru.zinin.feedback.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import ru.zinin.feedback.entity.FavouriteProduct;
+import ru.zinin.feedback.entity.ProductReview;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class MongoBeans {
+
+    // spring.data.mongodb.auto-index-creation создаёт индексы синхронно при инициализации репозиториев
+    // и задерживает запуск на время построения, поэтому индексы создаются отдельно
+    @Bean(destroyMethod = "close")
+    public MongoIndexReconciler mongoIndexReconciler(
+            ReactiveMongoTemplate mongoTemplate,
+            @Value("${feedback.mongodb.index-build-progress-interval:10s}") Duration progressInterval,
+            // false - в обучающем запуске CDS (профиль cds-training), который не должен менять базу
+            @Value("${feedback.mongodb.reconcile-indexes-on-startup:true}") boolean reconcileOnStartup) {
+        var indexReconciler = new MongoIndexReconciler(mongoTemplate,
+                List.of(FavouriteProduct.class, ProductReview.class), progressInterval);
+        if (reconcileOnStartup) {
+            indexReconciler.start();
+        }
+        return indexReconciler;
+    }
+}
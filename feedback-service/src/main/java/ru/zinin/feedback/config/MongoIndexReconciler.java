@@ -0,0 +1,144 @@
+package ru.zinin.feedback.config;
+
+import com.mongodb.client.model.Filters;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// индексы из @CompoundIndex/@Indexed создаются при запуске без ожидания: сервис готов принимать запросы,
+// пока MongoDB строит индекс на большой коллекции, а ход построения пишется в журнал
+@Slf4j
+public class MongoIndexReconciler implements AutoCloseable {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final IndexResolver indexResolver;
+
+    private final List<Class<?>> documentTypes;
+
+    private final Duration progressInterval;
+
+    private volatile Disposable reconciliation;
+
+    public MongoIndexReconciler(ReactiveMongoTemplate mongoTemplate, List<Class<?>> documentTypes,
+                                Duration progressInterval) {
+        this.mongoTemplate = mongoTemplate;
+        this.indexResolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        this.documentTypes = documentTypes;
+        this.progressInterval = progressInterval;
+    }
+
+    public void start() {
+        this.reconciliation = this.reconcile().subscribe();
+    }
+
+    @Override
+    public void close() {
+        if (this.reconciliation != null) {
+            this.reconciliation.dispose();
+        }
+    }
+
+    // индексы строятся по одному: одновременное построение нескольких индексов сильнее нагружает базу
+    public Mono<Void> reconcile() {
+        return Flux.fromIterable(this.documentTypes)
+                .concatMap(this::reconcile)
+                .then();
+    }
+
+    private Mono<Void> reconcile(Class<?> documentType) {
+        String collection = this.mongoTemplate.getCollectionName(documentType);
+        return this.mongoTemplate.indexOps(collection).getIndexInfo()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toSet())
+                .flatMapMany(existingIndexes -> this.missingIndexes(documentType, existingIndexes))
+                .concatMap(definition -> this.createIndex(collection, definition))
+                .then();
+    }
+
+    // существующий индекс с тем же именем, но другими полями не пересоздаётся: MongoDB вернёт ошибку при его
+    // создании, а удалять индекс на работающей базе автоматически небезопасно
+    private Flux<IndexDefinition> missingIndexes(Class<?> documentType, Set<String> existingIndexes) {
+        return Flux.fromIterable(this.indexResolver.resolveIndexFor(documentType))
+                .cast(IndexDefinition.class)
+                .filter(definition -> !existingIndexes.contains(indexName(definition)));
+    }
+
+    private Mono<Void> createIndex(String collection, IndexDefinition definition) {
+        String name = indexName(definition);
+        long startedAt = System.nanoTime();
+        log.info("Building index {} on {}", name, collection);
+
+        Disposable progress = Flux.interval(this.progressInterval)
+                .concatMap(tick -> this.indexBuildProgress(collection))
+                .subscribe(message -> log.info("Building index {} on {}: {}", name, collection, message));
+
+        return this.removeDuplicates(collection, definition)
+                .then(this.mongoTemplate.indexOps(collection).ensureIndex(definition))
+                .doOnSuccess(created -> log.info("Index {} on {} built in {}", name, collection,
+                        Duration.ofNanos(System.nanoTime() - startedAt)))
+                .doOnError(exception -> log.error("Could not build index {} on {}", name, collection, exception))
+                // без индекса запросы выполняются медленнее, но верно, поэтому сервис продолжает работу
+                .onErrorComplete()
+                .doFinally(signal -> progress.dispose())
+                .then();
+    }
+
+    // документы, записанные до появления уникального индекса, могут повторять его ключ, и тогда индекс не построится;
+    // из повторов остаётся один документ: для избранного они означают одну и ту же запись
+    private Mono<Void> removeDuplicates(String collection, IndexDefinition definition) {
+        if (!definition.getIndexOptions().getBoolean("unique", false)) {
+            return Mono.empty();
+        }
+
+        Document key = new Document();
+        definition.getIndexKeys().keySet().forEach(field -> key.append(field, "$" + field));
+        List<Document> pipeline = List.of(
+                new Document("$group", new Document("_id", key)
+                        .append("ids", new Document("$push", "$_id"))
+                        .append("count", new Document("$sum", 1))),
+                new Document("$match", new Document("count", new Document("$gt", 1))));
+
+        return this.mongoTemplate.getCollection(collection)
+                .flatMap(mongoCollection -> Flux.from(mongoCollection.aggregate(pipeline).allowDiskUse(true))
+                        .map(group -> group.getList("ids", Object.class))
+                        .concatMap(ids -> Mono.from(mongoCollection.deleteMany(
+                                Filters.in("_id", ids.subList(1, ids.size())))))
+                        .reduce(0L, (deleted, result) -> deleted + result.getDeletedCount()))
+                .doOnNext(deleted -> {
+                    if (deleted > 0) {
+                        log.warn("Removed {} documents duplicating unique index {} on {}",
+                                deleted, indexName(definition), collection);
+                    }
+                })
+                .then();
+    }
+
+    // currentOp требует прав clusterMonitor, без них ход построения просто не выводится
+    private Flux<String> indexBuildProgress(String collection) {
+        return this.mongoTemplate.getMongoDatabaseFactory().getMongoDatabase("admin")
+                .flatMap(database -> Mono.from(database.runCommand(new Document("currentOp", true)
+                        .append("command.createIndexes", collection))))
+                .flatMapIterable(result -> result.getList("inprog", Document.class, List.of()))
+                .mapNotNull(operation -> operation.getString("msg"))
+                .onErrorResume(exception -> {
+                    log.debug("Could not read index build progress on {}", collection, exception);
+                    return Flux.empty();
+                });
+    }
+
+    private static String indexName(IndexDefinition definition) {
+        return definition.getIndexOptions().getString("name");
+    }
+}
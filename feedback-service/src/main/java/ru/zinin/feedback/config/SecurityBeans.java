@@ -1,15 +1,59 @@
 package ru.zinin.feedback.config;
 
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Flux;
+
+import java.net.URL;
+import java.time.Duration;
 
 @Configuration
 public class SecurityBeans {
 
+    // Keycloak по умолчанию публикует ключи по этому пути относительно issuer-uri
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty("spring.security.oauth2.resourceserver.jwt.issuer-uri")
+    public BackgroundJwkSetSource jwkSetSource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:"
+                   + "${spring.security.oauth2.resourceserver.jwt.issuer-uri}/protocol/openid-connect/certs}")
+            URL jwkSetUri,
+            @Value("${feedback.security.jwt.jwk-set-refresh-interval:5m}") Duration refreshInterval,
+            @Value("${feedback.security.jwt.jwk-set-min-refresh-interval:30s}") Duration minRefreshInterval,
+            @Value("${feedback.security.jwt.jwk-set-timeout:5s}") Duration timeout,
+            @Value("${feedback.security.jwt.fail-fast:false}") boolean failFast) throws Exception {
+        var jwkSetSource = new BackgroundJwkSetSource(jwkSetUri, refreshInterval, minRefreshInterval, timeout);
+        jwkSetSource.start(failFast);
+        return jwkSetSource;
+    }
+
+    // ключи уже в памяти, поэтому проверка подписи не блокирует поток обработки запросов
+    @Bean
+    @ConditionalOnProperty("spring.security.oauth2.resourceserver.jwt.issuer-uri")
+    public ReactiveJwtDecoder reactiveJwtDecoder(
+            BackgroundJwkSetSource jwkSetSource,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri,
+            @Value("${feedback.security.jwt.cache-maximum-size:10000}") long cacheMaximumSize) {
+        var jwtDecoder = NimbusReactiveJwtDecoder
+                .withJwkSource(signedJwt -> Flux.fromIterable(jwkSetSource.get(
+                        new JWKSelector(JWKMatcher.forJWSHeader(signedJwt.getHeader())), null)))
+                .jwsAlgorithm(SignatureAlgorithm.RS256)
+                .build();
+        jwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return new CachingReactiveJwtDecoder(jwtDecoder, cacheMaximumSize);
+    }
+
     @Bean
     public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
         return http
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.UUID;
@@ -12,6 +13,8 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document("favourite_product")
+// userId первым: по нему же ищется список избранного пользователя
+@CompoundIndex(name = "user_id_product_id", def = "{'userId': 1, 'productId': 1}", unique = true)
 public class FavouriteProduct {
 
     @Id
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.UUID;
@@ -12,6 +13,8 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document("product_review")
+// отзывы ищутся по productId; _id вторым полем - для постраничной выборки отзывов товара без сортировки в памяти
+@CompoundIndex(name = "product_id_id", def = "{'productId': 1, '_id': 1}")
 public class ProductReview {
 
     @Id
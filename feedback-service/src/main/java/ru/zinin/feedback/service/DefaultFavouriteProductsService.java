@@ -1,6 +1,7 @@
 package ru.zinin.feedback.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -17,7 +18,10 @@ public class DefaultFavouriteProductsService implements FavouriteProductsService
 
     @Override
     public Mono<FavouriteProduct> addProductToFavourites(Integer productId, String userId) {
-        return this.favouriteProductRepository.save(new FavouriteProduct(UUID.randomUUID(), productId, userId));
+        // уникальный индекс {userId, productId}: повторное добавление возвращает уже избранный товар
+        return this.favouriteProductRepository.save(new FavouriteProduct(UUID.randomUUID(), productId, userId))
+                .onErrorResume(DuplicateKeyException.class, exception ->
+                        this.favouriteProductRepository.findByProductIdAndUserId(productId, userId));
     }
 
     @Override
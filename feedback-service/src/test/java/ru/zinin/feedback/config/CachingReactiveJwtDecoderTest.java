@@ -0,0 +1,94 @@
+package ru.zinin.feedback.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingReactiveJwtDecoderTest {
+
+    @Mock
+    ReactiveJwtDecoder delegate;
+
+    @Test
+    void decode_TokenWasValidated_ReturnsCachedJwt() {
+        //given
+        var decoder = new CachingReactiveJwtDecoder(this.delegate, 10);
+        var jwt = jwt(Instant.now().plus(5, ChronoUnit.MINUTES));
+        doReturn(Mono.just(jwt)).when(this.delegate).decode("token");
+        decoder.decode("token").block();
+
+        //when
+        StepVerifier.create(decoder.decode("token"))
+                //then
+                .expectNext(jwt)
+                .verifyComplete();
+        verify(this.delegate, times(1)).decode("token");
+    }
+
+    @Test
+    void decode_TokenHasExpired_ValidatesTokenAgain() {
+        //given
+        var decoder = new CachingReactiveJwtDecoder(this.delegate, 10);
+        doReturn(Mono.just(jwt(Instant.now().minus(1, ChronoUnit.SECONDS)))).when(this.delegate).decode("token");
+        decoder.decode("token").block();
+
+        //when
+        decoder.decode("token").block();
+
+        //then
+        verify(this.delegate, times(2)).decode("token");
+    }
+
+    @Test
+    void decode_TokenHasNoExpiration_ValidatesTokenEveryTime() {
+        //given
+        var decoder = new CachingReactiveJwtDecoder(this.delegate, 10);
+        doReturn(Mono.just(Jwt.withTokenValue("token").header("alg", "RS256").subject("user").build()))
+                .when(this.delegate).decode("token");
+        decoder.decode("token").block();
+
+        //when
+        decoder.decode("token").block();
+
+        //then
+        verify(this.delegate, times(2)).decode("token");
+    }
+
+    @Test
+    void decode_TokenIsInvalid_ReturnsErrorAndDoesNotCache() {
+        //given
+        var decoder = new CachingReactiveJwtDecoder(this.delegate, 10);
+        doReturn(Mono.error(new BadJwtException("Invalid signature"))).when(this.delegate).decode("token");
+
+        //when
+        StepVerifier.create(decoder.decode("token"))
+                //then
+                .expectError(BadJwtException.class)
+                .verify();
+        StepVerifier.create(decoder.decode("token"))
+                .expectError(BadJwtException.class)
+                .verify();
+        verify(this.delegate, times(2)).decode("token");
+    }
+
+    static Jwt jwt(Instant expiresAt) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("user")
+                .issuedAt(Instant.now().minus(1, ChronoUnit.MINUTES))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+package ru.zinin.feedback.config;
+
+import io.swagger.v3.oas.annotations.security.SecurityScheme;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import ru.zinin.feedback.controller.payload.NewProductReviewPayload;
+import ru.zinin.feedback.entity.ProductReview;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeedbackRuntimeHintsTest {
+
+    @Test
+    void registerHints_RegistersDocumentsRecordsAndSpringdocAnnotations() {
+        //given
+        var hints = new RuntimeHints();
+
+        //when
+        new FeedbackRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        //then
+        var reflection = RuntimeHintsPredicates.reflection();
+        assertTrue(reflection.onType(ProductReview.class).withMemberCategories(MemberCategory.DECLARED_FIELDS,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        assertTrue(reflection.onMethod(ProductReview.class, "setReview").test(hints));
+        assertTrue(reflection.onMethod(NewProductReviewPayload.class, "rating").test(hints));
+        assertTrue(reflection.onType(SecurityScheme.class).test(hints));
+    }
+}
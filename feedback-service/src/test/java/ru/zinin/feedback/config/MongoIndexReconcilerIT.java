@@ -0,0 +1,91 @@
+package ru.zinin.feedback.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import reactor.test.StepVerifier;
+import ru.zinin.feedback.entity.FavouriteProduct;
+import ru.zinin.feedback.entity.ProductReview;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class MongoIndexReconcilerIT {
+
+    @Autowired
+    MongoIndexReconciler mongoIndexReconciler;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Test
+    void reconcile_CreatesDeclaredIndexes() {
+        //given
+
+        //when
+        this.mongoIndexReconciler.reconcile().block();
+
+        //then
+        List<IndexInfo> favouriteProductIndexes = this.reactiveMongoTemplate.indexOps(FavouriteProduct.class)
+                .getIndexInfo().collectList().block();
+        assertNotNull(favouriteProductIndexes);
+        assertTrue(favouriteProductIndexes.stream().anyMatch(index -> index.getName().equals("user_id_product_id")
+                                                                      && index.isUnique()));
+
+        List<IndexInfo> productReviewIndexes = this.reactiveMongoTemplate.indexOps(ProductReview.class)
+                .getIndexInfo().collectList().block();
+        assertNotNull(productReviewIndexes);
+        assertTrue(productReviewIndexes.stream().anyMatch(index -> index.getName().equals("product_id_id")));
+    }
+
+    @Test
+    void reconcile_FavouriteProductsAreDuplicatedBeforeIndexIsBuilt_KeepsOneAndCreatesUniqueIndex() {
+        //given
+        this.mongoIndexReconciler.reconcile().block();
+        this.reactiveMongoTemplate.indexOps(FavouriteProduct.class).dropIndex("user_id_product_id").block();
+        this.reactiveMongoTemplate.insertAll(List.of(
+                new FavouriteProduct(UUID.randomUUID(), 1, "92f806b4-9984-4d40-8abe-c6e0c8436a2a"),
+                new FavouriteProduct(UUID.randomUUID(), 1, "92f806b4-9984-4d40-8abe-c6e0c8436a2a"),
+                new FavouriteProduct(UUID.randomUUID(), 1, "92f806b4-9984-4d40-8abe-c6e0c8436a2a"),
+                new FavouriteProduct(UUID.randomUUID(), 2, "92f806b4-9984-4d40-8abe-c6e0c8436a2a"))).blockLast();
+
+        //when
+        this.mongoIndexReconciler.reconcile().block();
+
+        //then
+        List<IndexInfo> favouriteProductIndexes = this.reactiveMongoTemplate.indexOps(FavouriteProduct.class)
+                .getIndexInfo().collectList().block();
+        assertNotNull(favouriteProductIndexes);
+        assertTrue(favouriteProductIndexes.stream().anyMatch(index -> index.getName().equals("user_id_product_id")
+                                                                      && index.isUnique()));
+        List<FavouriteProduct> favouriteProducts = this.reactiveMongoTemplate.findAll(FavouriteProduct.class)
+                .collectList().block();
+        assertNotNull(favouriteProducts);
+        assertEquals(List.of(1, 2), favouriteProducts.stream().map(FavouriteProduct::getProductId).sorted().toList());
+
+        this.reactiveMongoTemplate.remove(FavouriteProduct.class).all().block();
+    }
+
+    @Test
+    void reconcile_FavouriteProductIsDuplicated_RejectsDuplicate() {
+        //given
+        this.mongoIndexReconciler.reconcile().block();
+        this.reactiveMongoTemplate.insert(new FavouriteProduct(UUID.randomUUID(), 1,
+                "92f806b4-9984-4d40-8abe-c6e0c8436a2a")).block();
+
+        //when
+        StepVerifier.create(this.reactiveMongoTemplate.insert(new FavouriteProduct(UUID.randomUUID(), 1,
+                        "92f806b4-9984-4d40-8abe-c6e0c8436a2a")))
+                //then
+                .expectError(DuplicateKeyException.class)
+                .verify();
+
+        this.reactiveMongoTemplate.remove(FavouriteProduct.class).all().block();
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -43,6 +44,22 @@ class DefaultFavouriteProductsServiceTest {
                 favouriteProduct.getUserId().equals("a4f8b2ef-046d-4f11-b035-a4fc5fe39735") && favouriteProduct.getId() != null));
     }
 
+    @Test
+    void addProductToFavourites_ProductIsAlreadyFavourite_ReturnsExistingFavouriteProduct() {
+        //given
+        doReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error")))
+                .when(this.favouriteProductRepository).save(any());
+        doReturn(Mono.just(new FavouriteProduct(UUID.fromString("fe87eef6-cbd7-11ee-aeb6-275dac91de02"),
+                1, "a4f8b2ef-046d-4f11-b035-a4fc5fe39735")))
+                .when(this.favouriteProductRepository).findByProductIdAndUserId(1, "a4f8b2ef-046d-4f11-b035-a4fc5fe39735");
+        //when
+        StepVerifier.create(this.service.addProductToFavourites(1, "a4f8b2ef-046d-4f11-b035-a4fc5fe39735"))
+                //then
+                .expectNext(new FavouriteProduct(UUID.fromString("fe87eef6-cbd7-11ee-aeb6-275dac91de02"),
+                        1, "a4f8b2ef-046d-4f11-b035-a4fc5fe39735"))
+                .verifyComplete();
+    }
+
     @Test
     void removeProductFromFavourites_ReturnsEmptyMono() {
         //given
@@ -2,8 +2,11 @@ package ru.zinin.manager;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import ru.zinin.manager.config.ManagerRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(ManagerRuntimeHints.class)
 public class ManagerApplication {
     public static void main(String[] args) {
         SpringApplication.run(ManagerApplication.class, args);
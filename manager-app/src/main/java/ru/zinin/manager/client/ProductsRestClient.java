@@ -1,13 +1,13 @@
 package ru.zinin.manager.client;
 
 import ru.zinin.manager.entity.Product;
+import ru.zinin.manager.entity.ProductsPage;
 
-import java.util.List;
 import java.util.Optional;
 
 public interface ProductsRestClient {
 
-    List<Product> findAllProducts(String filter);
+    ProductsPage findAllProducts(String filter, String after, Integer limit);
 
     Product createProduct(String title, String details);
 
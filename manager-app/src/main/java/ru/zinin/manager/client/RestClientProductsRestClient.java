@@ -4,11 +4,13 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
 import ru.zinin.manager.controller.payload.NewProductPayload;
 import ru.zinin.manager.controller.payload.UpdateProductPayload;
 import ru.zinin.manager.entity.Product;
+import ru.zinin.manager.entity.ProductsPage;
 
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -20,15 +22,26 @@ public class RestClientProductsRestClient implements ProductsRestClient {
     private static final ParameterizedTypeReference<List<Product>> PRODUCTS_TYPE_REFERENCE =
             new ParameterizedTypeReference<>() {};
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final RestClient restClient;
 
+    // одна страница за запрос: каталог может быть слишком большим, чтобы загружать его целиком
     @Override
-    public List<Product> findAllProducts(String filter) {
-        return this.restClient
+    public ProductsPage findAllProducts(String filter, String after, Integer limit) {
+        ResponseEntity<List<Product>> page = this.restClient
                 .get()
-                .uri("/catalogue-api/products?filter={filter}", filter)
+                .uri(uriBuilder -> uriBuilder.path("/catalogue-api/products")
+                        .queryParamIfPresent("filter", Optional.ofNullable(filter))
+                        .queryParamIfPresent("after", Optional.ofNullable(after))
+                        .queryParamIfPresent("limit", Optional.ofNullable(limit))
+                        // в списке нужны только названия товаров
+                        .queryParam("view", "summary")
+                        .build())
                 .retrieve()
-                .body(PRODUCTS_TYPE_REFERENCE);
+                .toEntity(PRODUCTS_TYPE_REFERENCE);
+        return new ProductsPage(page.getBody() != null ? page.getBody() : List.of(),
+                page.getHeaders().getFirst(NEXT_CURSOR_HEADER));
     }
 
     @Override
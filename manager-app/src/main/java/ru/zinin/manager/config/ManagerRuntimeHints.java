@@ -0,0 +1,21 @@
+package ru.zinin.manager.config;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import ru.zinin.manager.controller.payload.NewProductPayload;
+import ru.zinin.manager.controller.payload.UpdateProductPayload;
+import ru.zinin.manager.entity.Product;
+
+// подсказки для native-image: записи, которые RestClient читает из ответов каталога,
+// а Thymeleaf и привязка форм - через рефлексию
+public class ManagerRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        this.bindingRegistrar.registerReflectionHints(hints.reflection(),
+                Product.class, NewProductPayload.class, UpdateProductPayload.class);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.zinin.manager.config;
+
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+// копия такого же класса в catalogue-service (ru.zinin.catalogue.config.VirtualThreadBeans): общего модуля у сервисов нет, изменения вносятся в обе
+@Slf4j
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadBeans {
+
+    @Bean(destroyMethod = "close")
+    public RecordingStream virtualThreadPinnedRecordingStream(
+            @Value("${selmag.virtual-threads.pinned-threshold:20ms}") Duration pinnedThreshold) {
+        // виртуальный поток, заблокированный внутри synchronized или native-вызова, удерживает поток-носитель,
+        // поэтому такие места нужно находить и переводить на ReentrantLock
+        var recordingStream = new RecordingStream();
+        recordingStream.enable("jdk.VirtualThreadPinned")
+                .withThreshold(pinnedThreshold)
+                .withStackTrace();
+        recordingStream.onEvent("jdk.VirtualThreadPinned", event -> log.warn("Virtual thread {} pinned for {} ms:\n\t{}",
+                event.getThread() == null ? null : event.getThread().getJavaName(),
+                event.getDuration().toMillis(),
+                event.getStackTrace() == null ? "" : event.getStackTrace().getFrames().stream()
+                        .map(frame -> "%s.%s:%d".formatted(frame.getMethod().getType().getName(),
+                                frame.getMethod().getName(), frame.getLineNumber()))
+                        .collect(Collectors.joining("\n\t"))));
+        recordingStream.startAsync();
+        return recordingStream;
+    }
+}
@@ -11,6 +11,7 @@ import ru.zinin.manager.client.BadRequestException;
 import ru.zinin.manager.client.ProductsRestClient;
 import ru.zinin.manager.controller.payload.NewProductPayload;
 import ru.zinin.manager.entity.Product;
+import ru.zinin.manager.entity.ProductsPage;
 
 import java.net.http.HttpResponse;
 import java.security.Principal;
@@ -24,9 +25,14 @@ public class ProductsController {
     private final ProductsRestClient productsRestClient;
 
     @GetMapping("list")
-    public String getAllProducts(Model model, @RequestParam(value = "filter", required = false) String filter) {
-        model.addAttribute("products", this.productsRestClient.findAllProducts(filter));
+    public String getAllProducts(Model model, @RequestParam(value = "filter", required = false) String filter,
+                                 @RequestParam(value = "after", required = false) String after,
+                                 @RequestParam(value = "limit", required = false) Integer limit) {
+        ProductsPage page = this.productsRestClient.findAllProducts(filter, after, limit);
+        model.addAttribute("products", page.products());
+        model.addAttribute("nextCursor", page.nextCursor());
         model.addAttribute("filter", filter);
+        model.addAttribute("limit", limit);
         return "catalogue/products/list";
     }
 
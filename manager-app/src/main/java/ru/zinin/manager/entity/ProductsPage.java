@@ -0,0 +1,10 @@
+package ru.zinin.manager.entity;
+
+import java.util.List;
+
+// nextCursor - непрозрачный курсор каталога для запроса следующей страницы, null на последней странице
+public record ProductsPage(
+        List<Product> products,
+        String nextCursor
+) {
+}
@@ -1,10 +1,12 @@
 package ru.zinin.manager.config;
 
 import jakarta.annotation.Priority;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
@@ -29,9 +31,12 @@ public class TestingBeans {
     @Bean
     @Primary
     public RestClientProductsRestClient testRestClientProductsRestClient(
-            @Value("${selmag.services.catalogue.uri:http://localhost:54321}") String catalogueBaseUrl) {
-        return new RestClientProductsRestClient(RestClient.builder()
-                .baseUrl(catalogueBaseUrl)
-                .build());
+            @Value("${selmag.services.catalogue.uri:http://localhost:54321}") String catalogueBaseUrl,
+            // тест может подменить HTTP-клиент своей конфигурацией, остальные используют клиент по умолчанию
+            ObjectProvider<ClientHttpRequestFactory> requestFactory) {
+        RestClient.Builder builder = RestClient.builder()
+                .baseUrl(catalogueBaseUrl);
+        requestFactory.ifAvailable(builder::requestFactory);
+        return new RestClientProductsRestClient(builder.build());
     }
 }
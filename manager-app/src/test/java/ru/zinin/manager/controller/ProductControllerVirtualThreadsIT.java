@@ -0,0 +1,150 @@
+package ru.zinin.manager.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// проверяется механизм, а не время: запросы обрабатываются на виртуальных потоках, и пока каталог отвечает
+// медленно, одновременно обрабатывается больше запросов, чем потоков в стандартном пуле Tomcat
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.threads.virtual.enabled=true")
+class ProductControllerVirtualThreadsIT {
+
+    // стандартный пул Tomcat на платформенных потоках
+    static final int PLATFORM_THREADS = 200;
+
+    static final int CONCURRENT_REQUESTS = 2 * PLATFORM_THREADS;
+
+    @RegisterExtension
+    static WireMockExtension catalogue = WireMockExtension.newInstance()
+            .options(wireMockConfig().port(54321).containerThreads(CONCURRENT_REQUESTS + 100))
+            .build();
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ConcurrentRequestsFilter concurrentRequestsFilter;
+
+    @Test
+    void getProduct_SlowCatalogue_HandlesMoreConcurrentRequestsThanPlatformThreadPoolOnVirtualThreads()
+            throws Exception {
+        //given
+        // задержка заведомо больше времени, за которое клиент успевает отправить все запросы
+        catalogue.stubFor(WireMock.get("/catalogue-api/products/1")
+                .willReturn(WireMock.okJson("""
+                        {
+                            "id": 1,
+                            "title": "Товар",
+                            "details": "Описание товара"
+                        }""").withFixedDelay(2000)));
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:%d/catalogue/products/1".formatted(this.port)))
+                .GET()
+                .build();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor();
+             var httpClient = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(executor)
+                     .build()) {
+            //when
+            var responses = executor.invokeAll(IntStream.range(0, CONCURRENT_REQUESTS)
+                    .mapToObj(i -> (Callable<Integer>) () ->
+                            httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode())
+                    .toList());
+
+            //then
+            for (Future<Integer> response : responses) {
+                assertEquals(200, response.get());
+            }
+            assertFalse(this.concurrentRequestsFilter.platformThreadSeen.get());
+            assertTrue(this.concurrentRequestsFilter.peak.get() > PLATFORM_THREADS,
+                    "Peak concurrency was %d".formatted(this.concurrentRequestsFilter.peak.get()));
+        }
+    }
+
+    static class ConcurrentRequestsFilter extends OncePerRequestFilter {
+
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        final AtomicInteger peak = new AtomicInteger();
+
+        final AtomicBoolean platformThreadSeen = new AtomicBoolean();
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        FilterChain filterChain) throws ServletException, IOException {
+            if (!Thread.currentThread().isVirtual()) {
+                this.platformThreadSeen.set(true);
+            }
+            this.peak.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                this.inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class VirtualThreadsTestBeans {
+
+        @Bean
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        public ConcurrentRequestsFilter concurrentRequestsFilter() {
+            return new ConcurrentRequestsFilter();
+        }
+
+        // WireMock принимает h2c и ограничивает число параллельных потоков в одном соединении,
+        // поэтому клиент каталога в этом тесте открывает отдельное соединение HTTP/1.1 на каждый запрос
+        @Bean
+        public ClientHttpRequestFactory http11RequestFactory() {
+            return new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .build());
+        }
+
+        @Bean
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        public SecurityFilterChain productPageSecurityFilterChain(HttpSecurity http) throws Exception {
+            return http
+                    .securityMatcher("/catalogue/products/*")
+                    .authorizeHttpRequests(authorizeHttpRequest -> authorizeHttpRequest.anyRequest().permitAll())
+                    .build();
+        }
+    }
+}
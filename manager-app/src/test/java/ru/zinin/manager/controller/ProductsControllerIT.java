@@ -15,6 +15,7 @@ import ru.zinin.manager.entity.Product;
 
 import java.util.List;
 
+import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
@@ -56,7 +57,68 @@ class ProductsControllerIT {
                         ))
                 );
         WireMock.verify(WireMock.getRequestedFor(WireMock.urlPathMatching("/catalogue-api/products"))
-                .withQueryParam("filter", WireMock.equalTo("товар")));
+                .withQueryParam("filter", WireMock.equalTo("товар"))
+                .withQueryParam("view", WireMock.equalTo("summary")));
+    }
+
+    @Test
+    void getAllProducts_CatalogueReturnsSeveralPages_ReturnsOnePageWithLinkToNext() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue/products/list")
+                .queryParam("filter", "товар")
+                .queryParam("limit", "1")
+                .with(user("j.dewar").roles("MANAGER"));
+
+        WireMock.stubFor(WireMock.get(WireMock.urlPathMatching("/catalogue-api/products"))
+                .withQueryParam("after", WireMock.absent())
+                .willReturn(WireMock.ok("""
+                                [
+                                    {"id": 1, "title": "Товар №1", "details": "Описание товара №1"}
+                                ]
+                                """).withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withHeader("X-Next-Cursor", "aWQ6MQ")));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        view().name("catalogue/products/list"),
+                        model().attribute("products", List.of(
+                                new Product(1, "Товар №1", "Описание товара №1")
+                        )),
+                        model().attribute("nextCursor", "aWQ6MQ"),
+                        content().string(containsString("<input type=\"hidden\" name=\"after\" value=\"aWQ6MQ\">"))
+                );
+        WireMock.verify(1, WireMock.getRequestedFor(WireMock.urlPathMatching("/catalogue-api/products"))
+                .withQueryParam("limit", WireMock.equalTo("1")));
+    }
+
+    @Test
+    void getAllProducts_CursorIsSpecified_RequestsPageAfterIt() throws Exception {
+        //given
+        var requestBuilder = MockMvcRequestBuilders.get("/catalogue/products/list")
+                .queryParam("after", "aWQ6MQ")
+                .with(user("j.dewar").roles("MANAGER"));
+
+        WireMock.stubFor(WireMock.get(WireMock.urlPathMatching("/catalogue-api/products"))
+                .withQueryParam("after", WireMock.equalTo("aWQ6MQ"))
+                .willReturn(WireMock.ok("""
+                                [
+                                    {"id": 2, "title": "Товар №2", "details": "Описание товара №2"}
+                                ]
+                                """).withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)));
+        //when
+        this.mockMvc.perform(requestBuilder)
+                //then
+                .andExpectAll(
+                        status().isOk(),
+                        view().name("catalogue/products/list"),
+                        model().attribute("products", List.of(
+                                new Product(2, "Товар №2", "Описание товара №2")
+                        )),
+                        model().attribute("nextCursor", nullValue()),
+                        content().string(not(containsString("Следующая страница")))
+                );
     }
 
     @Test
@@ -12,6 +12,7 @@ import ru.zinin.manager.client.BadRequestException;
 import ru.zinin.manager.client.ProductsRestClient;
 import ru.zinin.manager.controller.payload.NewProductPayload;
 import ru.zinin.manager.entity.Product;
+import ru.zinin.manager.entity.ProductsPage;
 
 import java.util.List;
 import java.util.stream.IntStream;
@@ -91,15 +92,18 @@ class ProductsControllerTest {
         var products = IntStream.range(1, 4)
                 .mapToObj(i -> new Product(i, "Товар №%d".formatted(i), "Описание товара №%d".formatted(i)))
                 .toList();
-        doReturn(products).when(this.productsRestClient).findAllProducts(filter);
+        doReturn(new ProductsPage(products, "aWQ6Mw")).when(this.productsRestClient)
+                .findAllProducts(filter, "aWQ6MA", 3);
 
         //when
-        var result = this.controller.getAllProducts(model, filter);
+        var result = this.controller.getAllProducts(model, filter, "aWQ6MA", 3);
 
         //then
 
         assertEquals("catalogue/products/list", result);
         assertEquals(filter, model.getAttribute("filter"));
         assertEquals(products, model.getAttribute("products"));
+        assertEquals("aWQ6Mw", model.getAttribute("nextCursor"));
+        assertEquals(3, model.getAttribute("limit"));
     }
 }
\ No newline at end of file